@@ -0,0 +1,48 @@
+package com.kwgroup.sopdocument.config;
+
+import com.kwgroup.sopdocument.service.RequestLatencyMonitor;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+/**
+ * Measures how long API requests take (see {@link RequestLatencyMonitor}).
+ *
+ * Only short JSON requests are timed. File transfers (downloads, views,
+ * thumbnails, uploads) take as long as the client needs to send or receive
+ * the bytes, however idle the server is, and would throttle the indexer for
+ * no reason.
+ */
+@Component
+@RequiredArgsConstructor
+public class RequestLatencyFilter extends OncePerRequestFilter {
+
+    private static final Pattern FILE_TRANSFERS = Pattern.compile(
+            "/api/sops/(download|view|upload|uploads)(/.*)?|/api/sops/[^/]+/thumbnail");
+
+    private final RequestLatencyMonitor requestLatencyMonitor;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        return !uri.startsWith("/api/") || FILE_TRANSFERS.matcher(uri).matches();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            requestLatencyMonitor.record(System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.kwgroup.sopdocument.controller;
+
+import org.springframework.http.HttpRange;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * How to answer a GET for a file of known length, given its Range and
+ * If-Range headers: the whole file, one or more byte ranges (206) or 416.
+ * Each range is an inclusive [start, end] pair already clamped to the file.
+ */
+record ByteRangeRequest(Outcome outcome, List<long[]> ranges) {
+
+    enum Outcome {
+        FULL,
+        PARTIAL,
+        UNSATISFIABLE
+    }
+
+    private static final ByteRangeRequest FULL = new ByteRangeRequest(Outcome.FULL, List.of());
+    private static final ByteRangeRequest UNSATISFIABLE = new ByteRangeRequest(Outcome.UNSATISFIABLE, List.of());
+
+    /**
+     * @param etag         the representation's strong ETag (quoted), or null
+     * @param lastModified epoch millis of the representation, or -1
+     */
+    static ByteRangeRequest evaluate(String range, String ifRange, String etag, long lastModified, long length) {
+        if (range == null || range.isBlank()) {
+            return FULL;
+        }
+        // a stale If-Range means the client's partial copy is of another version
+        if (ifRange != null && !ifRangeMatches(ifRange.trim(), etag, lastModified)) {
+            return FULL;
+        }
+
+        List<HttpRange> requested;
+        try {
+            requested = HttpRange.parseRanges(range);
+        } catch (IllegalArgumentException e) {
+            // malformed or too many ranges: ignore the header
+            return FULL;
+        }
+
+        List<long[]> ranges = new ArrayList<>(requested.size());
+        long total = 0;
+        for (HttpRange r : requested) {
+            long start;
+            long end;
+            try {
+                start = r.getRangeStart(length);
+                end = r.getRangeEnd(length);
+            } catch (IllegalArgumentException e) {
+                // starts past the end of the file
+                continue;
+            }
+            if (start > end) {
+                continue;
+            }
+            ranges.add(new long[] { start, end });
+            total += end - start + 1;
+        }
+        if (ranges.isEmpty()) {
+            return UNSATISFIABLE;
+        }
+        // overlapping ranges adding up to more than the file: cheaper to send it once
+        if (total > length) {
+            return FULL;
+        }
+        return new ByteRangeRequest(Outcome.PARTIAL, List.copyOf(ranges));
+    }
+
+    /**
+     * If-Range holds either an entity tag (strong comparison only) or an HTTP
+     * date that must equal Last-Modified to the second.
+     */
+    private static boolean ifRangeMatches(String ifRange, String etag, long lastModified) {
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return etag != null && !ifRange.startsWith("W/") && ifRange.equals(etag);
+        }
+        if (lastModified < 0) {
+            return false;
+        }
+        try {
+            long seconds = ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+            return seconds == lastModified / 1000;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.kwgroup.sopdocument.controller;
+
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.MediaType;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Streaming reader of a multipart/form-data body: parts are read one after
+ * the other straight from the request, so a file part can be written to its
+ * destination without being buffered by the container first. A part's body
+ * must be consumed (or is skipped) before the next part is read.
+ */
+final class MultipartReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_HEADER_BYTES = 16 * 1024;
+
+    /**
+     * One part: its headers (lower-case names) and its body.
+     */
+    static final class Part {
+
+        private final Map<String, String> headers;
+        private final InputStream body;
+
+        private Part(Map<String, String> headers, InputStream body) {
+            this.headers = headers;
+            this.body = body;
+        }
+
+        String header(String name) {
+            return headers.get(name.toLowerCase(Locale.ROOT));
+        }
+
+        String name() {
+            return disposition().getName();
+        }
+
+        /**
+         * @return the client's file name, or null for a plain field
+         */
+        String filename() {
+            return disposition().getFilename();
+        }
+
+        InputStream body() {
+            return body;
+        }
+
+        /**
+         * The body of a text field.
+         *
+         * @throws IllegalArgumentException if it is longer than {@code maxBytes}
+         */
+        String text(int maxBytes) throws IOException {
+            byte[] bytes = body.readNBytes(maxBytes + 1);
+            if (bytes.length > maxBytes) {
+                throw new IllegalArgumentException("Field '" + name() + "' is too long");
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private ContentDisposition disposition() {
+            String value = header("Content-Disposition");
+            return value == null ? ContentDisposition.empty() : ContentDisposition.parse(value);
+        }
+    }
+
+    private final InputStream in;
+    // CRLF "--" boundary: ends every part body
+    private final byte[] delimiter;
+    private final byte[] buffer;
+    private int pos;
+    private int limit;
+    private boolean eof;
+    private boolean started;
+    private boolean finished;
+    private PartInputStream current;
+
+    MultipartReader(InputStream in, String boundary) {
+        this.in = in;
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        this.buffer = new byte[Math.max(BUFFER_SIZE, delimiter.length * 2)];
+    }
+
+    /**
+     * @throws IllegalArgumentException if the content type is not
+     *                                  multipart/form-data with a boundary
+     */
+    static String boundaryOf(String contentType) {
+        MediaType type = contentType == null ? null : MediaType.parseMediaType(contentType);
+        if (type == null || !MediaType.MULTIPART_FORM_DATA.includes(type) || type.getParameter("boundary") == null) {
+            throw new IllegalArgumentException("Expected multipart/form-data with a boundary");
+        }
+        String boundary = type.getParameter("boundary");
+        return boundary.length() > 1 && boundary.startsWith("\"") && boundary.endsWith("\"")
+                ? boundary.substring(1, boundary.length() - 1)
+                : boundary;
+    }
+
+    /**
+     * Skip the rest of the current part and read the next part's headers.
+     *
+     * @return the next part, or null after the closing boundary
+     */
+    Part next() throws IOException {
+        if (finished) {
+            return null;
+        }
+        if (current != null) {
+            current.transferTo(OutputStream.nullOutputStream());
+        } else if (!started) {
+            skipPreamble();
+        }
+        started = true;
+
+        // after a boundary: "--" closes the body, otherwise the line ends
+        if (!fill(2)) {
+            throw new EOFException("Multipart body ended after a boundary");
+        }
+        if (buffer[pos] == '-' && buffer[pos + 1] == '-') {
+            finished = true;
+            current = null;
+            return null;
+        }
+        if (!readLine().isBlank()) {
+            throw new IOException("Malformed multipart boundary line");
+        }
+
+        Map<String, String> headers = new LinkedHashMap<>();
+        int headerBytes = 0;
+        for (String line = readLine(); !line.isEmpty(); line = readLine()) {
+            headerBytes += line.length() + 2;
+            if (headerBytes > MAX_HEADER_BYTES) {
+                throw new IOException("Multipart part headers too large");
+            }
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT),
+                        line.substring(colon + 1).trim());
+            }
+        }
+        current = new PartInputStream();
+        return new Part(headers, current);
+    }
+
+    /**
+     * The first boundary may open the body without a preceding CRLF;
+     * anything before it is ignored.
+     */
+    private void skipPreamble() throws IOException {
+        int openingLength = delimiter.length - 2;
+        if (fill(openingLength) && startsWith(pos, delimiter, 2)) {
+            pos += openingLength;
+            return;
+        }
+        new PartInputStream().transferTo(OutputStream.nullOutputStream());
+    }
+
+    /**
+     * Body of one part: ends right before the next delimiter, which it consumes.
+     */
+    private final class PartInputStream extends InputStream {
+
+        private boolean done;
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (done) {
+                return -1;
+            }
+            if (len == 0) {
+                return 0;
+            }
+            int available = bodyBytesAvailable();
+            if (available == 0) {
+                // delimiter at pos: the part ends here
+                pos += delimiter.length;
+                done = true;
+                return -1;
+            }
+            int n = Math.min(available, len);
+            System.arraycopy(buffer, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+    }
+
+    /**
+     * Bytes from {@code pos} that certainly belong to the current part body;
+     * 0 when the delimiter starts at {@code pos}.
+     */
+    private int bodyBytesAvailable() throws IOException {
+        while (true) {
+            int found = indexOfDelimiter();
+            if (found >= 0) {
+                return found - pos;
+            }
+            // a delimiter may start in the last delimiter.length - 1 bytes
+            int safe = limit - pos - (delimiter.length - 1);
+            if (safe > 0) {
+                return safe;
+            }
+            if (eof) {
+                throw new EOFException("Multipart body ended inside a part");
+            }
+            readMore();
+        }
+    }
+
+    private int indexOfDelimiter() {
+        byte first = delimiter[0];
+        for (int i = pos; i <= limit - delimiter.length; i++) {
+            if (buffer[i] == first && startsWith(i, delimiter, 0)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean startsWith(int at, byte[] prefix, int prefixFrom) {
+        if (limit - at < prefix.length - prefixFrom) {
+            return false;
+        }
+        for (int i = prefixFrom; i < prefix.length; i++) {
+            if (buffer[at + i - prefixFrom] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String readLine() throws IOException {
+        while (true) {
+            for (int i = pos; i + 1 < limit; i++) {
+                if (buffer[i] == '\r' && buffer[i + 1] == '\n') {
+                    String line = new String(buffer, pos, i - pos, StandardCharsets.UTF_8);
+                    pos = i + 2;
+                    return line;
+                }
+            }
+            if (limit - pos >= MAX_HEADER_BYTES) {
+                throw new IOException("Multipart header line too long");
+            }
+            if (eof) {
+                throw new EOFException("Multipart body ended inside the part headers");
+            }
+            readMore();
+        }
+    }
+
+    /**
+     * @return false if the body ends before {@code n} bytes are buffered
+     */
+    private boolean fill(int n) throws IOException {
+        while (limit - pos < n) {
+            if (eof) {
+                return false;
+            }
+            readMore();
+        }
+        return true;
+    }
+
+    private void readMore() throws IOException {
+        if (pos > 0) {
+            System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        int read = in.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            eof = true;
+        } else {
+            limit += read;
+        }
+    }
+}
@@ -1,11 +1,18 @@
 package com.kwgroup.sopdocument.controller;
 
+import com.kwgroup.sopdocument.dto.BulkUploadResponse;
 import com.kwgroup.sopdocument.dto.SopEntryRequest;
 import com.kwgroup.sopdocument.dto.SopEntryResponse;
+import com.kwgroup.sopdocument.dto.UploadSessionResponse;
+import com.kwgroup.sopdocument.model.UploadSession;
+import com.kwgroup.sopdocument.service.BulkUploadService;
+import com.kwgroup.sopdocument.service.ResumableUploadService;
 import com.kwgroup.sopdocument.service.SopEntryService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -13,14 +20,26 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.net.URI;
+import java.util.Locale;
+
 @RestController
 @RequestMapping("/api/sops")
 @RequiredArgsConstructor
 @Slf4j
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = { SopEntryController.UPLOAD_OFFSET_HEADER, HttpHeaders.LOCATION })
 public class SopEntryController {
 
+    // text fields of the streaming upload
+    private static final int MAX_FIELD_BYTES = 1024;
+
+    // bytes of a resumable upload received so far
+    static final String UPLOAD_OFFSET_HEADER = "Upload-Offset";
+
     private final SopEntryService sopEntryService;
+    private final ResumableUploadService resumableUploadService;
+    private final BulkUploadService bulkUploadService;
 
     /**
      * Accepts multipart/form-data with:
@@ -51,6 +70,182 @@ public class SopEntryController {
         return ResponseEntity.status(HttpStatus.CREATED).body(saved);
     }
 
+    /**
+     * Same as {@code /upload}, but the multipart body is read as it arrives:
+     * the file part is streamed straight into the brand's base path and
+     * hashed on the way, instead of being buffered by the container first.
+     * The fields must precede the file part. Relies on lazy multipart
+     * resolution (spring.servlet.multipart.resolve-lazily): nothing may read
+     * request parameters before the body is parsed here.
+     *
+     * Example curl:
+     * curl -X POST http://localhost:8080/api/sops/upload/stream \
+     * -F "fileCategory=github" -F "brand=knitwell" -F "uploadedBy=alice" \
+     * -F "file=@/path/to/testing_app_now.pdf"
+     */
+    @PostMapping(value = "/upload/stream", consumes = MediaType.MULTIPART_FORM_DATA_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<SopEntryResponse> uploadNewSopStreaming(HttpServletRequest request) throws IOException {
+        SopEntryRequest req = new SopEntryRequest();
+
+        MultipartReader reader = new MultipartReader(request.getInputStream(),
+                MultipartReader.boundaryOf(request.getContentType()));
+        SopEntryResponse saved = null;
+        for (MultipartReader.Part part = reader.next(); part != null; part = reader.next()) {
+            String name = part.name();
+            if ("file".equals(name) && saved == null) {
+                saved = sopEntryService.save(req, part.filename(), part.body());
+            } else if ("fileCategory".equals(name)) {
+                req.setFileCategory(part.text(MAX_FIELD_BYTES));
+            } else if ("brand".equals(name)) {
+                req.setBrand(part.text(MAX_FIELD_BYTES));
+            } else if ("uploadedBy".equals(name)) {
+                req.setUploadedBy(part.text(MAX_FIELD_BYTES));
+            }
+        }
+        if (saved == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Uploaded file is missing or empty");
+        }
+        return ResponseEntity.status(HttpStatus.CREATED).body(saved);
+    }
+
+    /**
+     * Bulk upload of many SOPs of one brand and category: any number of
+     * "files" parts, each a document or a ZIP of documents, streamed like
+     * {@code /upload/stream} (the fields must precede the files). Responds
+     * with the outcome of every file and the throughput; one summary
+     * notification is sent.
+     *
+     * Example curl:
+     * curl -X POST http://localhost:8080/api/sops/upload/bulk \
+     * -F "fileCategory=github" -F "brand=knitwell" -F "uploadedBy=alice" \
+     * -F "files=@/path/to/library.zip"
+     */
+    @PostMapping(value = "/upload/bulk", consumes = MediaType.MULTIPART_FORM_DATA_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BulkUploadResponse> uploadBulk(HttpServletRequest request) throws IOException {
+        SopEntryRequest req = new SopEntryRequest();
+
+        MultipartReader reader = new MultipartReader(request.getInputStream(),
+                MultipartReader.boundaryOf(request.getContentType()));
+        BulkUploadService.Batch batch = null;
+        try {
+            for (MultipartReader.Part part = reader.next(); part != null; part = reader.next()) {
+                String name = part.name();
+                if (("files".equals(name) || "file".equals(name)) && part.filename() != null) {
+                    if (batch == null) {
+                        batch = bulkUploadService.begin(req);
+                    }
+                    if (isZip(part)) {
+                        batch.addArchive(part.body());
+                    } else {
+                        batch.add(part.filename(), part.body());
+                    }
+                } else if ("fileCategory".equals(name)) {
+                    req.setFileCategory(part.text(MAX_FIELD_BYTES));
+                } else if ("brand".equals(name)) {
+                    req.setBrand(part.text(MAX_FIELD_BYTES));
+                } else if ("uploadedBy".equals(name)) {
+                    req.setUploadedBy(part.text(MAX_FIELD_BYTES));
+                }
+            }
+            if (batch == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No files uploaded");
+            }
+            return ResponseEntity.ok(bulkUploadService.ingest(batch));
+        } finally {
+            if (batch != null) {
+                batch.close();
+            }
+        }
+    }
+
+    private static boolean isZip(MultipartReader.Part part) {
+        String contentType = part.header(HttpHeaders.CONTENT_TYPE);
+        return part.filename().toLowerCase(Locale.ROOT).endsWith(".zip")
+                || (contentType != null && contentType.toLowerCase(Locale.ROOT).contains("zip"));
+    }
+
+    /**
+     * Resumable upload, step 1: open a session with the SOP metadata. The
+     * response carries the session (Location) and the offset to send from.
+     *
+     * Example curl:
+     * curl -X POST "http://localhost:8080/api/sops/uploads?fileName=big.pdf&fileCategory=github&brand=knitwell&uploadedBy=alice&totalSize=104857600"
+     */
+    @PostMapping(value = "/uploads", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<UploadSessionResponse> createUpload(
+            @RequestParam String fileName,
+            @RequestParam String fileCategory,
+            @RequestParam String brand,
+            @RequestParam String uploadedBy,
+            @RequestParam(required = false) Long totalSize) {
+        SopEntryRequest req = new SopEntryRequest();
+        req.setFileCategory(fileCategory);
+        req.setBrand(brand);
+        req.setUploadedBy(uploadedBy);
+        UploadSession session = resumableUploadService.create(req, fileName, totalSize);
+        return ResponseEntity.created(URI.create("/api/sops/uploads/" + session.getId()))
+                .header(UPLOAD_OFFSET_HEADER, String.valueOf(session.getBytesReceived()))
+                .body(resumableUploadService.toDto(session));
+    }
+
+    /**
+     * Resumable upload: where to continue after a dropped connection.
+     */
+    @GetMapping(value = "/uploads/{uploadId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<UploadSessionResponse> getUpload(@PathVariable String uploadId) {
+        return resumableUploadService.find(uploadId)
+                .map(session -> ResponseEntity.ok()
+                        .header(UPLOAD_OFFSET_HEADER, String.valueOf(session.getBytesReceived()))
+                        .body(resumableUploadService.toDto(session)))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Resumable upload, step 2 (repeated): append the raw request body at
+     * {@code offset}, which must be the current Upload-Offset; otherwise 409
+     * with the offset to resume from. The chunk is on disk once this returns.
+     *
+     * Example curl:
+     * curl -X PUT "http://localhost:8080/api/sops/uploads/{uploadId}?offset=0" \
+     * -H "Content-Type: application/octet-stream" --data-binary @chunk-000
+     */
+    @PutMapping(value = "/uploads/{uploadId}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<UploadSessionResponse> appendUploadChunk(
+            @PathVariable String uploadId,
+            @RequestParam long offset,
+            HttpServletRequest request) throws IOException {
+        UploadSession session;
+        try {
+            session = resumableUploadService.append(uploadId, offset, request.getInputStream());
+        } catch (ResumableUploadService.OffsetMismatchException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .header(UPLOAD_OFFSET_HEADER, String.valueOf(e.getSession().getBytesReceived()))
+                    .body(resumableUploadService.toDto(e.getSession()));
+        }
+        return ResponseEntity.ok()
+                .header(UPLOAD_OFFSET_HEADER, String.valueOf(session.getBytesReceived()))
+                .body(resumableUploadService.toDto(session));
+    }
+
+    /**
+     * Resumable upload, step 3: save the assembled file as {@code /upload}
+     * would and close the session.
+     */
+    @PostMapping(value = "/uploads/{uploadId}/finish", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<SopEntryResponse> finishUpload(@PathVariable String uploadId) {
+        SopEntryResponse saved = resumableUploadService.finish(uploadId);
+        return ResponseEntity.status(HttpStatus.CREATED).body(saved);
+    }
+
+    @DeleteMapping("/uploads/{uploadId}")
+    public ResponseEntity<Void> abortUpload(@PathVariable String uploadId) {
+        resumableUploadService.abort(uploadId);
+        return ResponseEntity.noContent().build();
+    }
+
     @PutMapping(value = "/{id}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<SopEntryResponse> updateSop(
             @PathVariable String id,
@@ -1,64 +1,172 @@
 package com.kwgroup.sopdocument.controller;
 
+import com.kwgroup.sopdocument.dto.IndexingProgress;
 import com.kwgroup.sopdocument.dto.SopEntryResponse;
+import com.kwgroup.sopdocument.dto.SopSearchResult;
+import com.kwgroup.sopdocument.dto.SopSuggestions;
 import com.kwgroup.sopdocument.mapper.SopMapper;
-import com.kwgroup.sopdocument.model.SopEntry;
+import com.kwgroup.sopdocument.repository.ListCursor;
 import com.kwgroup.sopdocument.repository.SopEntryRepository;
+import com.kwgroup.sopdocument.service.BulkIndexService;
+import com.kwgroup.sopdocument.service.PdfFileService;
 import com.kwgroup.sopdocument.service.PdfSearchService;
+import com.kwgroup.sopdocument.service.SopCatalogService;
+import com.kwgroup.sopdocument.service.SuggestionService;
+import com.kwgroup.sopdocument.service.ThumbnailService;
+import com.kwgroup.sopdocument.service.WebViewPdfService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.util.DisconnectedClientHelper;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/sops")
 @RequiredArgsConstructor
 @Slf4j
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = { SopEntryQueryController.NEXT_CURSOR_HEADER, HttpHeaders.ACCEPT_RANGES,
+        HttpHeaders.CONTENT_RANGE })
 public class SopEntryQueryController {
 
-    private final SopEntryRepository sopEntryRepository;
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int MAX_RANKED_RESULTS = 100;
+    private static final int MAX_SUGGESTIONS = 50;
+    private static final int THUMBNAIL_RETRY_SECONDS = 5;
+
+    private final SopCatalogService sopCatalogService;
     private final SopMapper sopMapper;
     private final PdfSearchService pdfSearchService;
+    private final SuggestionService suggestionService;
+    private final BulkIndexService bulkIndexService;
+    private final PdfFileService pdfFileService;
+    private final WebViewPdfService webViewPdfService;
+    private final ThumbnailService thumbnailService;
 
     /**
-     * Return all SOP entries as JSON.
+     * Return one page of SOP entries as JSON, filtered and ordered from the
+     * in-memory catalog. When more entries follow, the X-Next-Cursor header carries the
+     * token to pass as {@code cursor} for the next page. Answers 304 while
+     * the catalog is unchanged since the client's copy (If-None-Match /
+     * If-Modified-Since).
+     * Example: GET /api/sops?brand=knitwell&category=production&sort=fileName&limit=50
      */
     @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<List<SopEntryResponse>> listAll() {
-        List<SopEntryResponse> all = sopEntryRepository.findAll().stream()
+    public ResponseEntity<List<SopEntryResponse>> listAll(
+            @RequestParam(name = "brand", required = false) String brand,
+            @RequestParam(name = "category", required = false) String category,
+            @RequestParam(name = "sort", defaultValue = "modifiedAt") String sort,
+            @RequestParam(name = "limit", defaultValue = "100") int limit,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            WebRequest request) {
+
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        ListCursor.Sort order = ListCursor.Sort.fromKey(sort);
+        ListCursor after = cursor == null || cursor.isBlank() ? null : ListCursor.decode(cursor, order);
+
+        // also sets ETag and Last-Modified on the response
+        if (request.checkNotModified(sopCatalogService.etag(), sopCatalogService.lastModified())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
+
+        // one extra row tells whether another page follows
+        List<SopEntryRepository.SopEntryView> page = sopCatalogService.page(
+                normalizeFilter(brand), normalizeFilter(category), order, after, limit + 1);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().cacheControl(CacheControl.noCache());
+        if (page.size() > limit) {
+            page = page.subList(0, limit);
+            response.header(NEXT_CURSOR_HEADER, ListCursor.after(order, page.get(limit - 1)).encode());
+        }
+        return response.body(page.stream()
                 .map(sopMapper::toDto)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(all);
+                .collect(Collectors.toList()));
     }
 
     /**
      * Return single SOP entry metadata by id.
      */
     @GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<SopEntryResponse> getById(@PathVariable String id) {
-        return sopEntryRepository.findById(id)
-                .map(entry -> ResponseEntity.ok(sopMapper.toDto(entry)))
+    public ResponseEntity<SopEntryResponse> getById(@PathVariable String id, WebRequest request) {
+        Optional<SopEntryRepository.SopEntryView> found = sopCatalogService.find(id);
+        if (found.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        SopEntryRepository.SopEntryView entry = found.get();
+        if (request.checkNotModified(metadataEtag(entry), toEpochMillis(entry.getModifiedAt()))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(sopMapper.toDto(entry));
+    }
+
+    /**
+     * PNG of the SOP's first page, a few KB instead of the whole PDF.
+     * Answers 503 with Retry-After while a thumbnail that was not rendered at
+     * upload is still being rendered.
+     * Example: GET /api/sops/{id}/thumbnail?size=small (small, medium, large)
+     */
+    @GetMapping(value = "/{id}/thumbnail", produces = MediaType.IMAGE_PNG_VALUE)
+    public ResponseEntity<Resource> thumbnail(@PathVariable String id,
+            @RequestParam(name = "size", defaultValue = "medium") String size, WebRequest request) {
+        ThumbnailService.Size thumbnailSize = ThumbnailService.Size.fromKey(size);
+        Optional<SopEntryRepository.SopEntryView> found = sopCatalogService.find(id);
+        if (found.isEmpty() || found.get().getContentHash() == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        SopEntryRepository.SopEntryView entry = found.get();
+        String etag = "\"" + entry.getContentHash() + "-" + thumbnailSize.width() + "\"";
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
+
+        Optional<Path> thumbnail;
+        try {
+            thumbnail = thumbnailService.thumbnail(entry.getFilePath(), entry.getContentHash(), thumbnailSize);
+        } catch (ThumbnailService.ThumbnailUnavailableException e) {
+            log.debug("Thumbnail of {} unavailable: {}", id, e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(THUMBNAIL_RETRY_SECONDS))
+                    .build();
+        }
+        return thumbnail
+                .<ResponseEntity<Resource>>map(path -> ResponseEntity.ok()
+                        .cacheControl(CacheControl.noCache())
+                        .contentType(MediaType.IMAGE_PNG)
+                        .body(new FileSystemResource(path)))
                 .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).build());
     }
 
     /**
-     * Download the PDF (force download).
+     * Download the PDF (force download). Honours Range / If-Range like
+     * {@code /view/{id}}.
      */
     @GetMapping(value = { "/download/{id}", "/download/{id}/{filename}" })
-    public ResponseEntity<Object> downloadPdf(@PathVariable String id) {
-        return sopEntryRepository.findById(id)
-                .<ResponseEntity<Object>>map(entry -> servePdfResource(entry, true))
-                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).body("SOP Entry not found"));
+    public ResponseEntity<Object> downloadPdf(@PathVariable String id, WebRequest request,
+            HttpServletRequest servletRequest, HttpServletResponse servletResponse) {
+        // not Optional.map: a response already written comes back as null
+        Optional<SopEntryRepository.SopEntryView> entry = sopCatalogService.find(id);
+        if (entry.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("SOP Entry not found");
+        }
+        return servePdfResource(entry.get(), true, false, request, servletRequest, servletResponse);
     }
 
     /**
@@ -66,12 +174,20 @@ public class SopEntryQueryController {
      * Example: GET /api/sops/view/{id}
      * Example: GET /api/sops/view/{id}/some-file-name.pdf (better for browser
      * title)
+     * Supports byte ranges (Range, multi-range and If-Range) so PDF.js-style
+     * viewers can fetch the xref and the pages they need first.
+     * Serves the compacted web view copy when one has been built; pass
+     * {@code original=true} for the uploaded file.
      */
     @GetMapping(value = { "/view/{id}", "/view/{id}/{filename}" })
-    public ResponseEntity<Object> viewPdfInline(@PathVariable String id) {
-        return sopEntryRepository.findById(id)
-                .<ResponseEntity<Object>>map(entry -> servePdfResource(entry, false))
-                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).body("SOP Entry not found"));
+    public ResponseEntity<Object> viewPdfInline(@PathVariable String id,
+            @RequestParam(name = "original", defaultValue = "false") boolean original, WebRequest request,
+            HttpServletRequest servletRequest, HttpServletResponse servletResponse) {
+        Optional<SopEntryRepository.SopEntryView> entry = sopCatalogService.find(id);
+        if (entry.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("SOP Entry not found");
+        }
+        return servePdfResource(entry.get(), false, !original, request, servletRequest, servletResponse);
     }
 
     /**
@@ -101,33 +217,87 @@ public class SopEntryQueryController {
         return ResponseEntity.ok(results);
     }
 
+    /**
+     * Relevance-ranked search with score and highlighted snippets.
+     * Example: GET /api/sops/search/ranked?q=store+returns&brand=knitwell&limit=20
+     */
+    @GetMapping(value = "/search/ranked", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<SopSearchResult>> rankedSearch(
+            @RequestParam(name = "q", required = true) String query,
+            @RequestParam(name = "brand", required = false) String brand,
+            @RequestParam(name = "category", required = false) String category,
+            @RequestParam(name = "limit", defaultValue = "20") int limit) {
+
+        if (query == null || query.isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (limit < 1 || limit > MAX_RANKED_RESULTS) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_RANKED_RESULTS);
+        }
+
+        return ResponseEntity.ok(pdfSearchService.rankedSearch(query, brand, category, limit));
+    }
+
+    /**
+     * Autocomplete for the search box: indexed content terms and file names
+     * starting with the prefix, most frequent first.
+     * Example: GET /api/sops/suggest?prefix=ret&limit=10
+     */
+    @GetMapping(value = "/suggest", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<SopSuggestions> suggest(
+            @RequestParam(name = "prefix", required = true) String prefix,
+            @RequestParam(name = "limit", defaultValue = "10") int limit) {
+
+        if (limit < 1 || limit > MAX_SUGGESTIONS) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_SUGGESTIONS);
+        }
+
+        return ResponseEntity.ok(suggestionService.suggest(prefix, limit));
+    }
+
+    /**
+     * Progress of the background (re)indexing run: counts, throughput, ETA.
+     * Example: GET /api/sops/indexing/progress
+     */
+    @GetMapping(value = "/indexing/progress", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<IndexingProgress> indexingProgress() {
+        return ResponseEntity.ok(bulkIndexService.progress());
+    }
+
     /* ---------- helpers ---------- */
 
-    private ResponseEntity<Object> servePdfResource(SopEntry entry, boolean attachment) {
+    /**
+     * Errors, 304 and 416 answers are returned as entities. File
+     * bytes otherwise go straight to the servlet response through
+     * {@link PdfFileService} and null is returned (the response is complete).
+     */
+    private ResponseEntity<Object> servePdfResource(SopEntryRepository.SopEntryView entry, boolean attachment,
+            boolean preferWebView, WebRequest request, HttpServletRequest servletRequest,
+            HttpServletResponse servletResponse) {
         String filePath = entry.getFilePath();
         if (filePath == null || filePath.isBlank()) {
             log.warn("Entry {} has empty filePath", entry.getId());
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Entry has empty filePath");
         }
+        Optional<Path> webView = preferWebView
+                ? webViewPdfService.webViewOf(filePath, entry.getContentHash())
+                : Optional.empty();
+        String etag = webView.isPresent() ? webViewEtag(entry) : pdfEtag(entry);
+        // the client's copy is current: answer from the catalog without touching the file
+        if (request.checkNotModified(etag, toEpochMillis(entry.getModifiedAt()))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
 
         try {
-            // Safety: resolve & normalize
-            Path path = Paths.get(filePath).normalize();
-            Path absolutePath = path.toAbsolutePath();
-
-            if (!Files.exists(path)) {
-                log.warn("File does not exist: {}", absolutePath);
-                return ResponseEntity.status(HttpStatus.NOT_FOUND).body("File not found at path: " + absolutePath);
-            }
-            if (!Files.isReadable(path) || Files.isDirectory(path)) {
-                log.warn("File is not readable or is directory: {}", absolutePath);
-                return ResponseEntity.status(HttpStatus.NOT_FOUND).body("File is not readable or is directory");
+            // one (cached) stat instead of exists / isReadable / isDirectory / size
+            String servedPath = webView.map(Path::toString).orElse(filePath);
+            Optional<PdfFileService.PdfFile> found = pdfFileService.stat(servedPath, entry.getModifiedAt());
+            if (found.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body("File not found for entry " + entry.getId());
             }
-
-            Resource resource = new FileSystemResource(path.toFile());
-
-            // content length
-            long contentLength = Files.size(path);
+            PdfFileService.PdfFile file = found.get();
+            Path path = Paths.get(filePath);
+            long contentLength = file.size();
 
             // build headers to show inline
             String suggestedFileName = entry.getFileName();
@@ -149,19 +319,101 @@ public class SopEntryQueryController {
 
             String disposition = attachment ? "attachment" : "inline";
             headers.set(HttpHeaders.CONTENT_DISPOSITION, disposition + "; filename=\"" + suggestedFileName + "\"");
-            headers.setContentLength(contentLength);
+            headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+            headers.setCacheControl(CacheControl.noCache());
 
-            return new ResponseEntity<>(resource, headers, HttpStatus.OK);
+            ByteRangeRequest ranges = ByteRangeRequest.evaluate(request.getHeader(HttpHeaders.RANGE),
+                    request.getHeader(HttpHeaders.IF_RANGE), etag, toEpochMillis(entry.getModifiedAt()), contentLength);
+            long start = 0;
+            long count = contentLength;
+            HttpStatus status = HttpStatus.OK;
+            switch (ranges.outcome()) {
+                case UNSATISFIABLE:
+                    headers.set(HttpHeaders.CONTENT_RANGE, "bytes */" + contentLength);
+                    return new ResponseEntity<>(headers, HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+                case PARTIAL:
+                    if (ranges.ranges().size() > 1) {
+                        // rare: the parts carry the PDF type, the body is multipart/byteranges
+                        headers.remove(HttpHeaders.CONTENT_TYPE);
+                        writeHead(servletResponse, HttpStatus.PARTIAL_CONTENT, headers);
+                        pdfFileService.sendRanges(file, ranges.ranges(), MediaType.APPLICATION_PDF, servletRequest,
+                                servletResponse);
+                        return null;
+                    }
+                    long[] range = ranges.ranges().get(0);
+                    start = range[0];
+                    count = range[1] - range[0] + 1;
+                    headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + range[0] + "-" + range[1] + "/" + contentLength);
+                    status = HttpStatus.PARTIAL_CONTENT;
+                    break;
+                default:
+                    break;
+            }
+
+            writeHead(servletResponse, status, headers);
+            pdfFileService.send(file, start, count, servletRequest, servletResponse);
+            return null;
         } catch (IOException e) {
+            if (DisconnectedClientHelper.isClientDisconnectedException(e)) {
+                // the viewer was closed or the client seeked away mid-transfer
+                log.debug("Client stopped reading file of entry {}: {}", entry.getId(), e.getMessage());
+                return null;
+            }
+            if (servletResponse.isCommitted()) {
+                // status and part of the body are out; nothing left to answer with
+                log.warn("Error while serving file for entry {} after the response was committed: {}",
+                        entry.getId(), e.getMessage());
+                return null;
+            }
             log.error("Error while serving file for entry {}: {}", entry.getId(), e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Error serving file: " + e.getMessage());
         } catch (Exception e) {
             log.error("Unexpected error while serving file for entry {}: {}", entry.getId(), e.getMessage(), e);
+            if (servletResponse.isCommitted()) {
+                return null;
+            }
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Unexpected error: " + e.getMessage());
         }
     }
 
+    private static void writeHead(HttpServletResponse response, HttpStatus status, HttpHeaders headers) {
+        response.setStatus(status.value());
+        headers.forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+    }
+
+    /**
+     * Metadata changes with version and modifiedAt; the index status is
+     * updated separately, so it is part of the tag.
+     */
+    private static String metadataEtag(SopEntryRepository.SopEntryView entry) {
+        return "\"" + entry.getVersion() + "-" + toEpochMillis(entry.getModifiedAt()) + "-"
+                + entry.getIndexStatus() + "\"";
+    }
+
+    /**
+     * The file's SHA-256 and size; none for entries not hashed yet.
+     */
+    private static String pdfEtag(SopEntryRepository.SopEntryView entry) {
+        return entry.getContentHash() == null ? null
+                : "\"" + entry.getContentHash() + "-" + entry.getFileSize() + "\"";
+    }
+
+    /**
+     * The web view copy is a different representation of the same file.
+     */
+    private static String webViewEtag(SopEntryRepository.SopEntryView entry) {
+        return "\"" + entry.getContentHash() + "-web\"";
+    }
+
+    private static long toEpochMillis(LocalDateTime time) {
+        return time == null ? -1 : time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static String normalizeFilter(String value) {
+        return value == null || value.isBlank() ? null : value.trim().toLowerCase(Locale.ROOT);
+    }
+
     private static String getExtension(String filename) {
         if (filename == null)
             return "";
@@ -0,0 +1,46 @@
+package com.kwgroup.sopdocument.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class BulkUploadResponse {
+
+    public enum Status {
+        CREATED,
+        UPDATED,
+        // identical to the current version of the SOP
+        UNCHANGED,
+        // same name or same content as an earlier file of the batch
+        DUPLICATE,
+        FAILED
+    }
+
+    @Data
+    @Builder
+    public static class FileResult {
+        private String fileName;
+        private Status status;
+        private String id;
+        private String version;
+        // why the file was skipped or failed; extraction errors of saved files
+        private String message;
+    }
+
+    private int total;
+    private int created;
+    private int updated;
+    private int unchanged;
+    private int duplicates;
+    private int failed;
+
+    private long bytes;
+    private long elapsedMs;
+    private double filesPerSecond;
+    private double megabytesPerSecond;
+
+    private List<FileResult> files;
+}
@@ -0,0 +1,39 @@
+package com.kwgroup.sopdocument.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder(toBuilder = true)
+public class IndexingProgress {
+
+    public enum State {
+        IDLE, RUNNING, COMPLETED, FAILED
+    }
+
+    private State state;
+
+    // entries checked so far / entries in the database
+    private long processed;
+    private long total;
+
+    private long indexed;
+    private long upToDate;
+    private long failed;
+    // skipped: file quarantined after failed extractions
+    private long quarantined;
+
+    // current concurrency limit of the extraction pool
+    private int concurrency;
+
+    private double documentsPerSecond;
+    private Long etaSeconds;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime startedAt;
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime finishedAt;
+}
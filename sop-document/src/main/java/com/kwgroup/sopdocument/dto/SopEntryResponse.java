@@ -1,9 +1,12 @@
 package com.kwgroup.sopdocument.dto;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.kwgroup.sopdocument.model.IndexStatus;
 import lombok.Builder;
 import lombok.Data;
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Data
 @Builder
@@ -12,6 +15,7 @@ public class SopEntryResponse {
     private String fileName;
     private String filePath;
     private Long fileSize;
+    private String contentHash;
 
     private String fileCategory;
 
@@ -24,4 +28,10 @@ public class SopEntryResponse {
     private LocalDateTime modifiedAt;
 
     private String version;
+
+    private IndexStatus indexStatus;
+
+    // only set on content search results: 1-based pages containing the match
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<Integer> matchedPages;
 }
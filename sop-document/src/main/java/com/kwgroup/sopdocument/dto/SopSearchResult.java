@@ -0,0 +1,20 @@
+package com.kwgroup.sopdocument.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class SopSearchResult {
+    private SopEntryResponse sop;
+
+    private double score;
+
+    // 1-based page numbers the hits fall on
+    private List<Integer> pages;
+
+    // HTML-escaped text windows with matches wrapped in <mark>
+    private List<String> snippets;
+}
@@ -0,0 +1,17 @@
+package com.kwgroup.sopdocument.dto;
+
+import com.kwgroup.sopdocument.search.PrefixDictionary;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class SopSuggestions {
+    // content terms with their document frequency
+    private List<PrefixDictionary.Suggestion> terms;
+
+    // file names with the number of entries carrying that name
+    private List<PrefixDictionary.Suggestion> fileNames;
+}
@@ -0,0 +1,22 @@
+package com.kwgroup.sopdocument.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+public class UploadSessionResponse {
+    private String uploadId;
+    private String fileName;
+    private String brand;
+
+    // next chunk starts here
+    private long offset;
+    private Long totalSize;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime expiresAt;
+}
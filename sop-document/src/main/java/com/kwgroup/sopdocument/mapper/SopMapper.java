@@ -3,6 +3,7 @@ package com.kwgroup.sopdocument.mapper;
 import com.kwgroup.sopdocument.dto.SopEntryRequest;
 import com.kwgroup.sopdocument.dto.SopEntryResponse;
 import com.kwgroup.sopdocument.model.SopEntry;
+import com.kwgroup.sopdocument.repository.SopEntryRepository;
 import org.springframework.stereotype.Component;
 
 @Component
@@ -24,12 +25,31 @@ public class SopMapper {
                 .fileName(entry.getFileName())
                 .filePath(entry.getFilePath())
                 .fileSize(entry.getFileSize())
+                .contentHash(entry.getContentHash())
                 .fileCategory(entry.getFileCategory())
                 .brand(entry.getBrand())
                 .uploadedBy(entry.getUploadedBy())
                 .createdAt(entry.getCreatedAt())
                 .modifiedAt(entry.getModifiedAt())
                 .version(entry.getVersion())
+                .indexStatus(entry.getIndexStatus())
+                .build();
+    }
+
+    public SopEntryResponse toDto(SopEntryRepository.SopEntryView view) {
+        return SopEntryResponse.builder()
+                .id(view.getId())
+                .fileName(view.getFileName())
+                .filePath(view.getFilePath())
+                .fileSize(view.getFileSize())
+                .contentHash(view.getContentHash())
+                .fileCategory(view.getFileCategory())
+                .brand(view.getBrand())
+                .uploadedBy(view.getUploadedBy())
+                .createdAt(view.getCreatedAt())
+                .modifiedAt(view.getModifiedAt())
+                .version(view.getVersion())
+                .indexStatus(view.getIndexStatus())
                 .build();
     }
 }
\ No newline at end of file
@@ -0,0 +1,38 @@
+package com.kwgroup.sopdocument.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Failed text extractions of a SOP's file. Once {@code quarantined}, the file
+ * is not extracted again until it is replaced (different path or hash).
+ */
+@Entity
+@Table(name = "extraction_quarantine")
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Builder
+public class ExtractionQuarantine {
+
+    @Id
+    @Column(name = "sop_id")
+    private String sopId;
+
+    // file the failures refer to
+    private String filePath;
+    @Column(length = 64)
+    private String contentHash;
+
+    private int failures;
+    private boolean quarantined;
+
+    @Column(length = 1000)
+    private String lastError;
+    private LocalDateTime lastFailureAt;
+}
@@ -0,0 +1,41 @@
+package com.kwgroup.sopdocument.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Pending extraction and indexing of a SOP's file. At most one job per SOP:
+ * enqueueing again resets it and gives it a new {@code token}, so a worker
+ * that finishes an outdated run leaves the job in place.
+ */
+@Entity
+@Table(name = "index_jobs", indexes = @Index(name = "idx_index_jobs_not_before", columnList = "not_before"))
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Builder
+public class IndexJob {
+
+    @Id
+    @Column(name = "sop_id")
+    private String sopId;
+
+    @Column(length = 36)
+    private String token;
+
+    private int attempts;
+
+    // not run before this time (retry backoff)
+    @Column(name = "not_before")
+    private LocalDateTime notBefore;
+
+    private LocalDateTime enqueuedAt;
+
+    @Column(length = 1000)
+    private String lastError;
+}
@@ -0,0 +1,12 @@
+package com.kwgroup.sopdocument.model;
+
+/**
+ * Whether the content of a SOP's current file is searchable yet.
+ */
+public enum IndexStatus {
+    // an index job is queued or running
+    PENDING,
+    INDEXED,
+    // extraction kept failing; see ExtractionQuarantine
+    FAILED
+}
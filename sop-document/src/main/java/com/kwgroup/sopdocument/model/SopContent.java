@@ -0,0 +1,29 @@
+package com.kwgroup.sopdocument.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Extracted text of a SOP's PDF, kept out of {@code sop_documents} so that
+ * loading entries never reads it. Shares the id of its {@link SopEntry} and is
+ * only loaded where the text itself is needed (indexing, snippets).
+ */
+@Entity
+@Table(name = "sop_document_contents")
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Builder
+public class SopContent {
+
+    @Id
+    @Column(name = "sop_id")
+    private String sopId;
+
+    @Lob
+    @Column(columnDefinition = "TEXT")
+    private String content; // pages separated by IndexedDocument.PAGE_SEPARATOR
+}
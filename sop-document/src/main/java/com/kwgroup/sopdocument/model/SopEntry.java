@@ -7,8 +7,18 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
+/**
+ * A SOP document and its file. The extracted PDF text lives in
+ * {@link SopContent}.
+ */
 @Entity
-@Table(name = "sop_documents")
+@Table(name = "sop_documents", uniqueConstraints = {
+        // one entry per SOP; writes are serialized per SOP by DocumentLocks
+        @UniqueConstraint(name = "uk_sop_brand_file_name", columnNames = { "brand", "file_name" })
+}, indexes = {
+        // web views and thumbnails are shared by entries with the same content
+        @Index(name = "idx_sop_content_hash", columnList = "content_hash")
+})
 @AllArgsConstructor
 @NoArgsConstructor
 @Data
@@ -23,19 +33,22 @@ public class SopEntry {
     private String filePath;
     private long fileSize;
 
+    @Column(length = 64)
+    private String contentHash; // SHA-256 (hex) of the stored file
+
     private String fileCategory;
     private String brand;
 
-    @Lob
-    @Column(columnDefinition = "TEXT")
-    private String pdfContent;
-
     private String uploadedBy;
     private LocalDateTime createdAt;
     private LocalDateTime modifiedAt;
 
     private String version; // e.g., "v1", "v2", "v3"
 
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private IndexStatus indexStatus; // null for entries indexed before this was tracked
+
     @PrePersist
     public void onCreate() {
         this.createdAt = LocalDateTime.now();
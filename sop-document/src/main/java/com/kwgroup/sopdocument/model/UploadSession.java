@@ -0,0 +1,44 @@
+package com.kwgroup.sopdocument.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A resumable upload in progress: the SOP metadata given when it was opened
+ * and the bytes received so far, which are in {@code filePath} (a session
+ * file under the brand's base path). Bytes past {@code bytesReceived} in the
+ * file are from an unacknowledged chunk and are dropped.
+ */
+@Entity
+@Table(name = "upload_sessions", indexes = @Index(name = "idx_upload_sessions_updated", columnList = "updated_at"))
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Builder
+public class UploadSession {
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    // client's file name, as for a single-request upload
+    private String fileName;
+    private String fileCategory;
+    private String brand;
+    private String uploadedBy;
+
+    private String filePath;
+
+    // declared by the client; null if unknown
+    private Long totalSize;
+    private long bytesReceived;
+
+    private LocalDateTime createdAt;
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
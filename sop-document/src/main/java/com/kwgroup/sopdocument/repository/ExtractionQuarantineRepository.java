@@ -0,0 +1,11 @@
+package com.kwgroup.sopdocument.repository;
+
+import com.kwgroup.sopdocument.model.ExtractionQuarantine;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ExtractionQuarantineRepository extends JpaRepository<ExtractionQuarantine, String> {
+
+    long countByQuarantinedTrue();
+}
@@ -0,0 +1,30 @@
+package com.kwgroup.sopdocument.repository;
+
+import com.kwgroup.sopdocument.model.IndexJob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface IndexJobRepository extends JpaRepository<IndexJob, String> {
+
+    /**
+     * Jobs due to run, longest waiting first.
+     */
+    List<IndexJob> findByNotBeforeLessThanEqualOrderByNotBefore(LocalDateTime now, Pageable page);
+
+    /**
+     * Delete a job unless it was enqueued again since {@code token} was read.
+     *
+     * @return 1 if deleted, 0 if the job is newer (or gone)
+     */
+    @Modifying
+    @Query("DELETE FROM IndexJob j WHERE j.sopId = :sopId AND j.token = :token")
+    int deleteIfCurrent(@Param("sopId") String sopId, @Param("token") String token);
+}
@@ -0,0 +1,78 @@
+package com.kwgroup.sopdocument.repository;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position in a sorted SOP listing: the sort value and id of the last entry
+ * returned. Clients get it as an opaque token and send it back to fetch the
+ * next page (keyset pagination).
+ */
+public record ListCursor(Sort sort, String value, String id) {
+
+    /**
+     * Listing orders; each has a prebuilt ordering in the in-memory catalog
+     * (see SopCatalogService).
+     */
+    public enum Sort {
+        // newest first
+        MODIFIED_AT("modifiedAt"),
+        // A-Z
+        FILE_NAME("fileName");
+
+        private final String key;
+
+        Sort(String key) {
+            this.key = key;
+        }
+
+        public String key() {
+            return key;
+        }
+
+        public static Sort fromKey(String key) {
+            for (Sort sort : values()) {
+                if (sort.key.equals(key)) {
+                    return sort;
+                }
+            }
+            throw new IllegalArgumentException("Unsupported sort: " + key + " (use modifiedAt or fileName)");
+        }
+    }
+
+    public static ListCursor after(Sort sort, SopEntryRepository.SopEntryView last) {
+        String value = sort == Sort.MODIFIED_AT ? String.valueOf(last.getModifiedAt()) : last.getFileName();
+        return new ListCursor(sort, value, last.getId());
+    }
+
+    public String encode() {
+        String raw = sort.key + "\n" + value + "\n" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the token is malformed or was issued
+     *                                  for a different sort
+     */
+    public static ListCursor decode(String token, Sort expectedSort) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\n", -1);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        if (parts.length != 3 || !expectedSort.key.equals(parts[0])) {
+            throw new IllegalArgumentException("Invalid cursor for sort " + expectedSort.key);
+        }
+        if (expectedSort == Sort.MODIFIED_AT) {
+            try {
+                LocalDateTime.parse(parts[1]);
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+        return new ListCursor(expectedSort, parts[1], parts[2]);
+    }
+}
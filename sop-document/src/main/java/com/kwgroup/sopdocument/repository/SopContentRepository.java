@@ -0,0 +1,34 @@
+package com.kwgroup.sopdocument.repository;
+
+import com.kwgroup.sopdocument.model.SopContent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface SopContentRepository extends JpaRepository<SopContent, String> {
+
+    /**
+     * Ids of SOP entries whose PDF content matches (case-insensitive).
+     * Using native query for H2 compatibility with LOB/TEXT fields.
+     */
+    @Query(value = "SELECT c.sop_id FROM sop_document_contents c WHERE LOWER(c.content) LIKE :query", nativeQuery = true)
+    List<String> searchIds(@Param("query") String query);
+
+    /**
+     * Ids of SOP entries whose PDF content matches, filtered by brand.
+     */
+    @Query(value = "SELECT c.sop_id FROM sop_document_contents c JOIN sop_documents d ON d.id = c.sop_id "
+            + "WHERE LOWER(c.content) LIKE :query AND LOWER(d.brand) = LOWER(:brand)", nativeQuery = true)
+    List<String> searchIdsByBrand(@Param("query") String query, @Param("brand") String brand);
+
+    /**
+     * Ids of SOP entries whose PDF content matches, filtered by category.
+     */
+    @Query(value = "SELECT c.sop_id FROM sop_document_contents c JOIN sop_documents d ON d.id = c.sop_id "
+            + "WHERE LOWER(c.content) LIKE :query AND LOWER(d.file_category) = LOWER(:category)", nativeQuery = true)
+    List<String> searchIdsByCategory(@Param("query") String query, @Param("category") String category);
+}
@@ -1,36 +1,120 @@
 package com.kwgroup.sopdocument.repository;
 
+import com.kwgroup.sopdocument.model.IndexStatus;
 import com.kwgroup.sopdocument.model.SopEntry;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface SopEntryRepository extends JpaRepository<SopEntry, String> {
+
+    /**
+     * Fields identifying the indexed state of an entry, without its content.
+     */
+    interface FingerprintView {
+        String getId();
+
+        String getFilePath();
+
+        long getFileSize();
+
+        String getVersion();
+
+        String getBrand();
+
+        String getFileCategory();
+
+        // null for entries stored before uploads were hashed
+        String getContentHash();
+    }
+
+    /**
+     * Fields returned to clients; selected explicitly so list, get and search
+     * paths never load or manage entities.
+     */
+    interface SopEntryView {
+        String getId();
+
+        String getFileName();
+
+        String getFilePath();
+
+        long getFileSize();
+
+        String getContentHash();
+
+        String getFileCategory();
+
+        String getBrand();
+
+        String getUploadedBy();
+
+        LocalDateTime getCreatedAt();
+
+        LocalDateTime getModifiedAt();
+
+        String getVersion();
+
+        IndexStatus getIndexStatus();
+    }
+
+    String VIEW_SELECT = "SELECT e.id AS id, e.fileName AS fileName, e.filePath AS filePath, e.fileSize AS fileSize, "
+            + "e.contentHash AS contentHash, e.fileCategory AS fileCategory, e.brand AS brand, "
+            + "e.uploadedBy AS uploadedBy, e.createdAt AS createdAt, e.modifiedAt AS modifiedAt, "
+            + "e.version AS version, e.indexStatus AS indexStatus FROM SopEntry e";
+
+    @Query(VIEW_SELECT)
+    List<SopEntryView> findAllViews();
+
+    @Query(VIEW_SELECT + " WHERE e.id = :id")
+    Optional<SopEntryView> findViewById(@Param("id") String id);
+
+    @Query(VIEW_SELECT + " WHERE e.id IN :ids")
+    List<SopEntryView> findViewsByIdIn(@Param("ids") Collection<String> ids);
+
+    /**
+     * Set the index status without touching the entry otherwise (no
+     * modifiedAt update).
+     */
+    @Modifying
+    @Query("UPDATE SopEntry e SET e.indexStatus = :status WHERE e.id = :id")
+    int updateIndexStatus(@Param("id") String id, @Param("status") IndexStatus status);
+
     Optional<SopEntry> findByFileName(String dbFileName);
 
     Optional<SopEntry> findByFileNameAndBrand(String fileName, String brand);
 
+    List<SopEntry> findByBrandAndFileNameIn(String brand, Collection<String> fileNames);
+
     /**
-     * Search for SOP entries by PDF content (case-insensitive).
-     * Using native query for H2 compatibility with LOB/TEXT fields.
+     * Files of the entries with this content. Derived copies such as web
+     * views and thumbnails are keyed by content hash next to the file, so
+     * they are shared by the entries of the same hash in the same directory.
      */
-    @Query(value = "SELECT * FROM sop_documents WHERE LOWER(pdf_content) LIKE :query", nativeQuery = true)
-    List<SopEntry> searchByPdfContent(@Param("query") String query);
+    @Query("SELECT e.filePath FROM SopEntry e WHERE e.contentHash = :contentHash AND e.filePath IS NOT NULL")
+    List<String> findFilePathsByContentHash(@Param("contentHash") String contentHash);
 
     /**
-     * Search for SOP entries by PDF content and brand (case-insensitive).
+     * Next page of fingerprint fields in id order (keyset pagination: pass
+     * the last id of the previous page, or "" for the first page).
      */
-    @Query(value = "SELECT * FROM sop_documents WHERE LOWER(pdf_content) LIKE :query AND LOWER(brand) = LOWER(:brand)", nativeQuery = true)
-    List<SopEntry> searchByPdfContentAndBrand(@Param("query") String query, @Param("brand") String brand);
+    @Query("SELECT e.id AS id, e.filePath AS filePath, e.fileSize AS fileSize, e.version AS version, "
+            + "e.brand AS brand, e.fileCategory AS fileCategory, e.contentHash AS contentHash "
+            + "FROM SopEntry e WHERE e.id > :afterId ORDER BY e.id")
+    List<FingerprintView> findFingerprintsAfter(@Param("afterId") String afterId, Pageable page);
 
     /**
-     * Search for SOP entries by PDF content and category (case-insensitive).
+     * File names of all entries (used to build autocomplete suggestions).
      */
-    @Query(value = "SELECT * FROM sop_documents WHERE LOWER(pdf_content) LIKE :query AND LOWER(file_category) = LOWER(:category)", nativeQuery = true)
-    List<SopEntry> searchByPdfContentAndCategory(@Param("query") String query, @Param("category") String category);
+    @Query("SELECT e.fileName FROM SopEntry e")
+    List<String> findAllFileNames();
 }
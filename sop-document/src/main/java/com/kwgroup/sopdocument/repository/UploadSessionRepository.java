@@ -0,0 +1,17 @@
+package com.kwgroup.sopdocument.repository;
+
+import com.kwgroup.sopdocument.model.UploadSession;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+
+    /**
+     * Sessions without a chunk since {@code cutoff}.
+     */
+    List<UploadSession> findByUpdatedAtBefore(LocalDateTime cutoff);
+}
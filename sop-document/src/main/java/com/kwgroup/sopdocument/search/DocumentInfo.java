@@ -0,0 +1,13 @@
+package com.kwgroup.sopdocument.search;
+
+import java.util.Set;
+
+/**
+ * What the index currently knows about one document.
+ *
+ * @param brand    indexed brand (lower case)
+ * @param category indexed category (lower case)
+ * @param terms    distinct terms of the document
+ */
+public record DocumentInfo(String brand, String category, Set<String> terms) {
+}
@@ -0,0 +1,56 @@
+package com.kwgroup.sopdocument.search;
+
+/**
+ * Bounded Levenshtein distance.
+ */
+public final class EditDistance {
+
+    private EditDistance() {
+    }
+
+    /**
+     * Whether {@code a} and {@code b} are within {@code max} single-character
+     * edits (insert, delete, substitute) of each other. Only a band of width
+     * {@code 2 * max + 1} around the diagonal is evaluated.
+     */
+    public static boolean within(String a, String b, int max) {
+        int n = a.length();
+        int m = b.length();
+        if (Math.abs(n - m) > max) {
+            return false;
+        }
+
+        int big = max + 1;
+        int[] prev = new int[m + 1];
+        int[] curr = new int[m + 1];
+        for (int j = 0; j <= m; j++) {
+            prev[j] = j <= max ? j : big;
+        }
+
+        for (int i = 1; i <= n; i++) {
+            int from = Math.max(1, i - max);
+            int to = Math.min(m, i + max);
+            curr[0] = i <= max ? i : big;
+            if (from > 1) {
+                curr[from - 1] = big;
+            }
+            int rowMin = curr[0];
+            for (int j = from; j <= to; j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(prev[j] + 1, curr[j - 1] + 1), prev[j - 1] + cost);
+                curr[j] = Math.min(value, big);
+                rowMin = Math.min(rowMin, curr[j]);
+            }
+            if (to < m) {
+                curr[to + 1] = big;
+            }
+            if (rowMin > max) {
+                return false;
+            }
+            int[] tmp = prev;
+            prev = curr;
+            curr = tmp;
+        }
+        return prev[m] <= max;
+    }
+}
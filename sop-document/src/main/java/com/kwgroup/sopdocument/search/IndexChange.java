@@ -0,0 +1,30 @@
+package com.kwgroup.sopdocument.search;
+
+/**
+ * One change to the content index, as recorded in a {@link SegmentFile}.
+ * {@code fingerprint} identifies the state of the SOP entry the change was
+ * made from, so a restored index can be checked against the database.
+ */
+public sealed interface IndexChange {
+
+    String sopId();
+
+    /**
+     * Document added or replaced.
+     */
+    record Put(IndexedDocument document, long fingerprint) implements IndexChange {
+        @Override
+        public String sopId() {
+            return document.getSopId();
+        }
+    }
+
+    /**
+     * Brand / category changed without new content.
+     */
+    record Metadata(String sopId, String brand, String category, long fingerprint) implements IndexChange {
+    }
+
+    record Delete(String sopId) implements IndexChange {
+    }
+}
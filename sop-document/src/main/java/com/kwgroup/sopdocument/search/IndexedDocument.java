@@ -0,0 +1,143 @@
+package com.kwgroup.sopdocument.search;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tokenized form of one SOP document, ready to be added to the
+ * {@link InvertedIndex}.
+ *
+ * Extracted text separates pages with {@link #PAGE_SEPARATOR}; the start
+ * offset of every page is recorded so hits can be mapped to page numbers.
+ */
+public final class IndexedDocument {
+
+    public static final char PAGE_SEPARATOR = '\f';
+
+    private final String sopId;
+    private final String brand;
+    private final String category;
+    private final int length;
+    private final int[] pageStarts;
+    private final Map<String, Occurrences> terms;
+
+    private IndexedDocument(String sopId, String brand, String category, int length,
+            int[] pageStarts, Map<String, Occurrences> terms) {
+        this.sopId = sopId;
+        this.brand = brand;
+        this.category = category;
+        this.length = length;
+        this.pageStarts = pageStarts;
+        this.terms = terms;
+    }
+
+    /**
+     * Tokenize the given text into a document.
+     *
+     * @param sopId    id of the SOP entry
+     * @param brand    brand of the entry (lower case)
+     * @param category category of the entry (lower case)
+     * @param text     extracted PDF text
+     */
+    public static IndexedDocument of(String sopId, String brand, String category, String text) {
+        Map<String, Occurrences> terms = new LinkedHashMap<>();
+        int length = Tokenizer.tokenize(text, (term, position, offset) -> terms
+                .computeIfAbsent(term, t -> new Occurrences())
+                .add(position, offset));
+        return new IndexedDocument(sopId, brand, category, length, pageStarts(text), terms);
+    }
+
+    /**
+     * Rebuild a document from its stored form (see {@link SegmentFile}).
+     */
+    static IndexedDocument restore(String sopId, String brand, String category, int length,
+            int[] pageStarts, Map<String, Occurrences> terms) {
+        return new IndexedDocument(sopId, brand, category, length, pageStarts, terms);
+    }
+
+    /**
+     * Same document with different brand / category.
+     */
+    IndexedDocument withMetadata(String brand, String category) {
+        return new IndexedDocument(sopId, brand, category, length, pageStarts, terms);
+    }
+
+    private static int[] pageStarts(String text) {
+        int[] starts = new int[8];
+        int count = 1; // page 1 starts at offset 0
+        if (text != null) {
+            int idx = text.indexOf(PAGE_SEPARATOR);
+            while (idx >= 0) {
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                }
+                starts[count++] = idx + 1;
+                idx = text.indexOf(PAGE_SEPARATOR, idx + 1);
+            }
+        }
+        return Arrays.copyOf(starts, count);
+    }
+
+    public String getSopId() {
+        return sopId;
+    }
+
+    public String getBrand() {
+        return brand;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    /**
+     * @return number of tokens in the document
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return char offset at which each page starts (index 0 = page 1)
+     */
+    public int[] getPageStarts() {
+        return pageStarts.clone();
+    }
+
+    public Map<String, Occurrences> getTerms() {
+        return Collections.unmodifiableMap(terms);
+    }
+
+    /**
+     * Positions and char offsets of one term inside the document.
+     */
+    public static final class Occurrences {
+        private int[] positions = new int[2];
+        private int[] offsets = new int[2];
+        private int count;
+
+        void add(int position, int offset) {
+            if (count == positions.length) {
+                positions = Arrays.copyOf(positions, count * 2);
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            positions[count] = position;
+            offsets[count] = offset;
+            count++;
+        }
+
+        public int count() {
+            return count;
+        }
+
+        public int position(int i) {
+            return positions[i];
+        }
+
+        public int offset(int i) {
+            return offsets[i];
+        }
+    }
+}
@@ -0,0 +1,797 @@
+package com.kwgroup.sopdocument.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over extracted PDF text.
+ *
+ * Every SOP entry gets a dense doc number; each term maps to a
+ * {@link PostingList} of doc numbers with positions and offsets. Re-adding a
+ * document removes its old postings and adds new ones. Doc numbers of removed
+ * documents are reused (most recently freed first, so a re-added document
+ * usually gets its old number back), which keeps the per-doc arrays and full
+ * scans bounded by the number of live documents rather than by the number of
+ * updates ever made. A {@link TrigramIndex} over the term dictionary resolves
+ * partial words and typos to dictionary terms, and a {@link PrefixDictionary}
+ * snapshot of it serves autocomplete. With a refresh interval, a changed
+ * dictionary is rebuilt in the background at most once per interval and
+ * suggestions are served from the previous snapshot meanwhile, so a stream
+ * of index changes does not make every suggest() rebuild it.
+ *
+ * Reads take a shared lock, writes an exclusive one.
+ */
+public class InvertedIndex {
+
+    // BM25 parameters (standard defaults)
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int MAX_HIT_OFFSETS = 64;
+
+    // substring / typo expansion of query terms: all expansions match, the
+    // most frequent ones are scored
+    private static final int MAX_SCORED_EXPANSIONS = 256;
+    private static final int MIN_FUZZY_LENGTH = 4;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, PostingList> postings = new HashMap<>();
+    private final Map<String, Integer> docNumbers = new HashMap<>();
+    private final TrigramIndex trigramIndex = new TrigramIndex();
+
+    // snapshot for suggest(); null until first used
+    private volatile PrefixDictionary termDictionary;
+    private volatile boolean termDictionaryStale;
+    private volatile long termDictionaryBuiltAt;
+    private final AtomicBoolean termDictionaryRebuilding = new AtomicBoolean();
+    private final long termDictionaryRefreshNanos;
+
+    // per-doc data, indexed by doc number (null id = free slot)
+    private String[] docIds = new String[64];
+    private String[] brands = new String[64];
+    private String[] categories = new String[64];
+    private int[] lengths = new int[64];
+    private int[][] pageStarts = new int[64][];
+    private String[][] docTerms = new String[64][];
+    private int nextDoc;
+    // doc numbers of removed documents, reused before nextDoc grows
+    private int[] freeDocs = new int[16];
+    private int freeCount;
+    private long totalLength;
+
+    /**
+     * Index whose suggestions reflect every change (the term dictionary is
+     * rebuilt on the first suggest() after a change).
+     */
+    public InvertedIndex() {
+        this(0);
+    }
+
+    /**
+     * @param termDictionaryRefreshMillis how long suggestions may lag index
+     *                                    changes; 0 rebuilds on the first
+     *                                    suggest() after a change
+     */
+    public InvertedIndex(long termDictionaryRefreshMillis) {
+        this.termDictionaryRefreshNanos = TimeUnit.MILLISECONDS.toNanos(termDictionaryRefreshMillis);
+    }
+
+    /**
+     * Add (or replace) a document.
+     */
+    public void add(IndexedDocument document) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(document.getSopId());
+
+            int doc = freeCount > 0 ? freeDocs[--freeCount] : nextDoc++;
+            ensureDocCapacity(doc + 1);
+            docIds[doc] = document.getSopId();
+            brands[doc] = document.getBrand();
+            categories[doc] = document.getCategory();
+            lengths[doc] = document.getLength();
+            pageStarts[doc] = document.getPageStarts();
+            totalLength += document.getLength();
+
+            Map<String, IndexedDocument.Occurrences> terms = document.getTerms();
+            String[] termArray = terms.keySet().toArray(new String[0]);
+            docTerms[doc] = termArray;
+            for (String term : termArray) {
+                postings.computeIfAbsent(term, t -> {
+                    trigramIndex.addTerm(t);
+                    return new PostingList();
+                }).add(doc, terms.get(term));
+            }
+            docNumbers.put(document.getSopId(), doc);
+            termDictionaryStale = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a document.
+     *
+     * @return true if the document was indexed
+     */
+    public boolean remove(String sopId) {
+        lock.writeLock().lock();
+        try {
+            return removeInternal(sopId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Update brand / category of an indexed document without re-tokenizing it.
+     */
+    public void updateMetadata(String sopId, String brand, String category) {
+        lock.writeLock().lock();
+        try {
+            Integer doc = docNumbers.get(sopId);
+            if (doc != null) {
+                brands[doc] = brand;
+                categories[doc] = category;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean contains(String sopId) {
+        lock.readLock().lock();
+        try {
+            return docNumbers.containsKey(sopId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return indexed brand, category and terms of a document, if present
+     */
+    public Optional<DocumentInfo> docInfo(String sopId) {
+        lock.readLock().lock();
+        try {
+            Integer doc = docNumbers.get(sopId);
+            if (doc == null) {
+                return Optional.empty();
+            }
+            return Optional.of(new DocumentInfo(brands[doc], categories[doc], Set.of(docTerms[doc])));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of indexed documents
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docNumbers.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find documents matching a query written in the {@link QueryParser}
+     * language (AND / OR / NOT, quoted phrases, brand: / category: filters).
+     * Every query term also matches dictionary terms that contain it, and a
+     * term with no such match falls back to typo-tolerant matching.
+     *
+     * @param query    raw query text
+     * @param brand    optional brand filter (lower case), may be null
+     * @param category optional category filter (lower case), may be null
+     * @return hits (score 0) in index order, with the pages the matches fall on
+     */
+    public List<SearchHit> search(String query, String brand, String category) {
+        QueryNode node = QueryParser.parse(query);
+        if (node == null) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            Execution execution = new Execution();
+            List<SearchHit> results = new ArrayList<>();
+            for (int doc : execution.evaluate(node)) {
+                if (!matchesFilters(doc, brand, category)) {
+                    continue;
+                }
+                int[] offsets = execution.highlightOffsets(node, doc);
+                results.add(new SearchHit(docIds[doc], 0, offsets, pagesOf(doc, offsets)));
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rank the documents matching the query (same semantics as
+     * {@link #search}) with BM25 over the positive query terms and their
+     * expansions; every expansion contributes with its own idf. Of a term
+     * with very many expansions (e.g. a two-letter substring) only the
+     * {@value #MAX_SCORED_EXPANSIONS} in the most documents are scored; the
+     * documents of the others still match.
+     *
+     * @param query    raw query text
+     * @param brand    optional brand filter (lower case), may be null
+     * @param category optional category filter (lower case), may be null
+     * @param limit    maximum number of hits to return
+     * @return hits ordered by descending score
+     */
+    public List<SearchHit> rank(String query, String brand, String category, int limit) {
+        QueryNode node = QueryParser.parse(query);
+        if (node == null || limit <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            int docCount = docNumbers.size();
+            if (docCount == 0) {
+                return List.of();
+            }
+            double avgLength = Math.max(1.0, (double) totalLength / docCount);
+
+            Execution execution = new Execution();
+            int[] candidates = execution.evaluate(node);
+            List<PostingList> lists = execution.scoringLists(node);
+
+            double[] scores = new double[candidates.length];
+            for (PostingList list : lists) {
+                double idf = Math.log(1 + (docCount - list.size() + 0.5) / (list.size() + 0.5));
+                for (int c = 0; c < candidates.length; c++) {
+                    int doc = candidates[c];
+                    int idx = list.indexOf(doc);
+                    if (idx < 0) {
+                        continue;
+                    }
+                    int tf = list.freq(idx);
+                    double norm = K1 * (1 - B + B * lengths[doc] / avgLength);
+                    scores[c] += idf * (tf * (K1 + 1)) / (tf + norm);
+                }
+            }
+
+            // min-heap (by candidate index) of the best 'limit' docs
+            PriorityQueue<Integer> top = new PriorityQueue<>(
+                    Comparator.<Integer>comparingDouble(c -> scores[c]).thenComparing(c -> -c));
+            for (int c = 0; c < candidates.length; c++) {
+                if (!matchesFilters(candidates[c], brand, category)) {
+                    continue;
+                }
+                top.offer(c);
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+
+            SearchHit[] hits = new SearchHit[top.size()];
+            for (int i = hits.length - 1; i >= 0; i--) {
+                int c = top.poll();
+                int doc = candidates[c];
+                int[] offsets = execution.highlightOffsets(node, doc);
+                hits[i] = new SearchHit(docIds[doc], scores[c], offsets, pagesOf(doc, offsets));
+            }
+            return List.of(hits);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Complete a term prefix from the term dictionary.
+     *
+     * @param prefix lower-case term prefix
+     * @param limit  maximum number of suggestions
+     * @return terms starting with the prefix, by descending document frequency
+     */
+    public List<PrefixDictionary.Suggestion> suggest(String prefix, int limit) {
+        PrefixDictionary dictionary = termDictionary;
+        if (dictionary == null || (termDictionaryStale && termDictionaryRefreshNanos <= 0)) {
+            dictionary = rebuildTermDictionary();
+        } else if (termDictionaryStale && System.nanoTime() - termDictionaryBuiltAt >= termDictionaryRefreshNanos
+                && termDictionaryRebuilding.compareAndSet(false, true)) {
+            CompletableFuture.runAsync(() -> {
+                try {
+                    rebuildTermDictionary();
+                } finally {
+                    termDictionaryRebuilding.set(false);
+                }
+            });
+        }
+        return dictionary.complete(prefix, limit);
+    }
+
+    private PrefixDictionary rebuildTermDictionary() {
+        Map<String, Integer> frequencies;
+        lock.readLock().lock();
+        try {
+            // changes from here on leave the new snapshot stale again
+            termDictionaryStale = false;
+            frequencies = new HashMap<>(postings.size() * 2);
+            postings.forEach((term, list) -> frequencies.put(term, list.size()));
+        } finally {
+            lock.readLock().unlock();
+        }
+        PrefixDictionary dictionary = PrefixDictionary.ofTerms(frequencies);
+        termDictionary = dictionary;
+        termDictionaryBuiltAt = System.nanoTime();
+        return dictionary;
+    }
+
+    /**
+     * Whether a query term can expand to the given dictionary term, either as
+     * a substring or as a typo. Used to decide which cached results a changed
+     * document may affect.
+     */
+    public static boolean mayExpandTo(String queryTerm, String term) {
+        return term.contains(queryTerm)
+                || (queryTerm.length() >= MIN_FUZZY_LENGTH && EditDistance.within(queryTerm, term, maxEdits(queryTerm)));
+    }
+
+    private static int maxEdits(String term) {
+        return term.length() >= 6 ? 2 : 1;
+    }
+
+    /* ---------- internals (callers hold the lock) ---------- */
+
+    /**
+     * Posting lists a query term stands for: every dictionary term containing
+     * it (found through the trigram index), or - if there is none - terms
+     * within a small edit distance.
+     */
+    private PostingList[] expand(String term) {
+        // not capped: a truncated expansion would silently drop matches
+        List<String> matches = trigramIndex.containing(term, Integer.MAX_VALUE);
+        if (matches.isEmpty() && term.length() >= MIN_FUZZY_LENGTH) {
+            matches = trigramIndex.similar(term, maxEdits(term), Integer.MAX_VALUE);
+        }
+        PostingList[] lists = new PostingList[matches.size()];
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = postings.get(matches.get(i));
+        }
+        return lists;
+    }
+
+    /**
+     * Evaluation of one parsed query against the index. Term expansions are
+     * resolved once per query node and reused for matching, scoring and
+     * highlighting.
+     */
+    private final class Execution {
+
+        private final Map<QueryNode.Terms, List<PostingList[]>> slotsByNode = new IdentityHashMap<>();
+
+        /**
+         * Sorted doc numbers matching the node.
+         */
+        int[] evaluate(QueryNode node) {
+            if (node instanceof QueryNode.Terms terms) {
+                return evaluateTerms(terms);
+            }
+            if (node instanceof QueryNode.Field field) {
+                return docsWithField(field);
+            }
+            if (node instanceof QueryNode.Not not) {
+                return difference(allDocs(), evaluate(not.clause()));
+            }
+            if (node instanceof QueryNode.Or or) {
+                int[] result = new int[0];
+                for (QueryNode clause : or.clauses()) {
+                    result = union(result, evaluate(clause));
+                }
+                return result;
+            }
+            return evaluateAnd((QueryNode.And) node);
+        }
+
+        /**
+         * Intersect positive clauses in order of estimated cost (smallest
+         * first), apply field clauses as filters on the survivors, then
+         * subtract the negated clauses.
+         */
+        private int[] evaluateAnd(QueryNode.And and) {
+            List<QueryNode> positive = new ArrayList<>();
+            List<QueryNode> negative = new ArrayList<>();
+            for (QueryNode clause : and.clauses()) {
+                if (clause instanceof QueryNode.Not not) {
+                    negative.add(not.clause());
+                } else {
+                    positive.add(clause);
+                }
+            }
+            positive.sort(Comparator.comparingLong(this::estimate));
+
+            int[] result = positive.isEmpty() ? allDocs() : evaluate(positive.get(0));
+            for (int i = 1; i < positive.size() && result.length > 0; i++) {
+                QueryNode clause = positive.get(i);
+                if (clause instanceof QueryNode.Field field) {
+                    result = filterByField(result, field);
+                } else {
+                    result = intersect(result, evaluate(clause));
+                }
+            }
+            for (int i = 0; i < negative.size() && result.length > 0; i++) {
+                result = difference(result, evaluate(negative.get(i)));
+            }
+            return result;
+        }
+
+        private int[] evaluateTerms(QueryNode.Terms node) {
+            List<PostingList[]> slots = slots(node);
+            if (slots.isEmpty()) {
+                return new int[0];
+            }
+            int[] docs = InvertedIndex.intersect(slots);
+            if (slots.size() == 1) {
+                return docs;
+            }
+            int kept = 0;
+            for (int doc : docs) {
+                if (phraseOffsets(slots, doc).length > 0) {
+                    docs[kept++] = doc;
+                }
+            }
+            return Arrays.copyOf(docs, kept);
+        }
+
+        /**
+         * Upper bound of matching docs, used to order AND clauses.
+         */
+        private long estimate(QueryNode node) {
+            if (node instanceof QueryNode.Terms terms) {
+                long min = Long.MAX_VALUE;
+                for (PostingList[] slot : slots(terms)) {
+                    long size = 0;
+                    for (PostingList list : slot) {
+                        size += list.size();
+                    }
+                    min = Math.min(min, size);
+                }
+                return min == Long.MAX_VALUE ? 0 : min;
+            }
+            if (node instanceof QueryNode.And and) {
+                return and.clauses().stream().filter(c -> !(c instanceof QueryNode.Not))
+                        .mapToLong(this::estimate).min().orElse(docNumbers.size());
+            }
+            if (node instanceof QueryNode.Or or) {
+                return or.clauses().stream().mapToLong(this::estimate).sum();
+            }
+            // fields and negations are applied as filters after the selective clauses
+            return Long.MAX_VALUE;
+        }
+
+        /**
+         * Expanded posting lists for every term of the node; empty if any
+         * term has no match at all.
+         */
+        private List<PostingList[]> slots(QueryNode.Terms node) {
+            return slotsByNode.computeIfAbsent(node, n -> {
+                List<PostingList[]> slots = new ArrayList<>(n.terms().size());
+                for (String term : n.terms()) {
+                    PostingList[] slot = expand(term);
+                    if (slot.length == 0) {
+                        return List.of();
+                    }
+                    slots.add(slot);
+                }
+                return slots;
+            });
+        }
+
+        /**
+         * Distinct posting lists of all positive (not negated) terms, at most
+         * {@value #MAX_SCORED_EXPANSIONS} per term, by descending document
+         * frequency.
+         */
+        List<PostingList> scoringLists(QueryNode node) {
+            List<PostingList> lists = new ArrayList<>();
+            for (QueryNode.Terms terms : positiveTerms(node, new ArrayList<>())) {
+                for (PostingList[] slot : slots(terms)) {
+                    if (slot.length > MAX_SCORED_EXPANSIONS) {
+                        slot = slot.clone();
+                        Arrays.sort(slot, Comparator.comparingInt(PostingList::size).reversed());
+                        slot = Arrays.copyOf(slot, MAX_SCORED_EXPANSIONS);
+                    }
+                    for (PostingList list : slot) {
+                        if (!lists.contains(list)) {
+                            lists.add(list);
+                        }
+                    }
+                }
+            }
+            return lists;
+        }
+
+        /**
+         * Char offsets (ascending, capped) of the positive terms and phrases
+         * in a doc, used for snippets and page numbers.
+         */
+        int[] highlightOffsets(QueryNode node, int doc) {
+            int[] offsets = new int[MAX_HIT_OFFSETS];
+            int count = 0;
+            for (QueryNode.Terms terms : positiveTerms(node, new ArrayList<>())) {
+                List<PostingList[]> slots = slots(terms);
+                if (slots.isEmpty()) {
+                    continue;
+                }
+                for (int offset : phraseOffsets(slots, doc)) {
+                    if (count == MAX_HIT_OFFSETS) {
+                        break;
+                    }
+                    offsets[count++] = offset;
+                }
+            }
+            int[] result = Arrays.copyOf(offsets, count);
+            Arrays.sort(result);
+            return result;
+        }
+
+        private List<QueryNode.Terms> positiveTerms(QueryNode node, List<QueryNode.Terms> out) {
+            if (node instanceof QueryNode.Terms terms) {
+                out.add(terms);
+            } else if (node instanceof QueryNode.And and) {
+                and.clauses().forEach(c -> positiveTerms(c, out));
+            } else if (node instanceof QueryNode.Or or) {
+                or.clauses().forEach(c -> positiveTerms(c, out));
+            }
+            return out;
+        }
+
+        private int[] allDocs() {
+            int[] docs = new int[docNumbers.size()];
+            int n = 0;
+            for (int doc = 0; doc < nextDoc; doc++) {
+                if (docIds[doc] != null) {
+                    docs[n++] = doc;
+                }
+            }
+            return Arrays.copyOf(docs, n);
+        }
+
+        private int[] docsWithField(QueryNode.Field field) {
+            return filterByField(allDocs(), field);
+        }
+
+        private int[] filterByField(int[] docs, QueryNode.Field field) {
+            String[] values = "brand".equals(field.name()) ? brands : categories;
+            int kept = 0;
+            int[] result = new int[docs.length];
+            for (int doc : docs) {
+                if (field.value().equals(values[doc])) {
+                    result[kept++] = doc;
+                }
+            }
+            return Arrays.copyOf(result, kept);
+        }
+    }
+
+    /* ---------- sorted int set operations ---------- */
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] small = a.length <= b.length ? a : b;
+        int[] large = small == a ? b : a;
+        int[] result = new int[small.length];
+        int n = 0;
+        for (int doc : small) {
+            if (Arrays.binarySearch(large, doc) >= 0) {
+                result[n++] = doc;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    private static int[] union(int[] a, int[] b) {
+        int[] result = new int[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.length || j < b.length) {
+            int next;
+            if (j >= b.length || (i < a.length && a[i] <= b[j])) {
+                next = a[i++];
+            } else {
+                next = b[j++];
+            }
+            if (n == 0 || result[n - 1] != next) {
+                result[n++] = next;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    private static int[] difference(int[] a, int[] b) {
+        int[] result = new int[a.length];
+        int n = 0;
+        for (int doc : a) {
+            if (Arrays.binarySearch(b, doc) < 0) {
+                result[n++] = doc;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    private boolean removeInternal(String sopId) {
+        Integer doc = docNumbers.remove(sopId);
+        if (doc == null) {
+            return false;
+        }
+        termDictionaryStale = true;
+        for (String term : docTerms[doc]) {
+            PostingList list = postings.get(term);
+            if (list != null) {
+                list.remove(doc);
+                if (list.size() == 0) {
+                    postings.remove(term);
+                    trigramIndex.removeTerm(term);
+                }
+            }
+        }
+        totalLength -= lengths[doc];
+        docIds[doc] = null;
+        brands[doc] = null;
+        categories[doc] = null;
+        lengths[doc] = 0;
+        pageStarts[doc] = null;
+        docTerms[doc] = null;
+        if (freeCount == freeDocs.length) {
+            freeDocs = Arrays.copyOf(freeDocs, freeCount * 2);
+        }
+        freeDocs[freeCount++] = doc;
+        return true;
+    }
+
+    /**
+     * Sorted, distinct docs of all posting lists of a slot.
+     */
+    private static int[] docsOf(PostingList[] slot) {
+        if (slot.length == 1) {
+            int[] docs = new int[slot[0].size()];
+            for (int i = 0; i < docs.length; i++) {
+                docs[i] = slot[0].doc(i);
+            }
+            return docs;
+        }
+        int total = 0;
+        for (PostingList list : slot) {
+            total += list.size();
+        }
+        int[] docs = new int[total];
+        int n = 0;
+        for (PostingList list : slot) {
+            for (int i = 0; i < list.size(); i++) {
+                docs[n++] = list.doc(i);
+            }
+        }
+        Arrays.sort(docs);
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (distinct == 0 || docs[distinct - 1] != docs[i]) {
+                docs[distinct++] = docs[i];
+            }
+        }
+        return Arrays.copyOf(docs, distinct);
+    }
+
+    /**
+     * Intersect the doc sets of all slots, smallest first, probing the larger
+     * sets by binary search.
+     */
+    private static int[] intersect(List<PostingList[]> slots) {
+        List<int[]> sets = new ArrayList<>(slots.size());
+        for (PostingList[] slot : slots) {
+            sets.add(docsOf(slot));
+        }
+        sets.sort(Comparator.comparingInt(set -> set.length));
+
+        int[] candidates = sets.get(0).clone();
+        int count = candidates.length;
+        for (int l = 1; l < sets.size() && count > 0; l++) {
+            int[] other = sets.get(l);
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                if (Arrays.binarySearch(other, candidates[i]) >= 0) {
+                    candidates[kept++] = candidates[i];
+                }
+            }
+            count = kept;
+        }
+        return Arrays.copyOf(candidates, count);
+    }
+
+    /**
+     * Char offsets at which the slots occur as a phrase in the doc (for a
+     * single slot: every occurrence), capped at {@link #MAX_HIT_OFFSETS}.
+     */
+    private static int[] phraseOffsets(List<PostingList[]> slots, int doc) {
+        // (position, offset) of every occurrence of the first slot, by position
+        long[] starts = new long[0];
+        int n = 0;
+        for (PostingList list : slots.get(0)) {
+            int idx = list.indexOf(doc);
+            if (idx < 0) {
+                continue;
+            }
+            starts = Arrays.copyOf(starts, n + list.freq(idx));
+            for (int o = 0; o < list.freq(idx); o++) {
+                starts[n++] = ((long) list.position(idx, o) << 32) | list.offset(idx, o);
+            }
+        }
+        Arrays.sort(starts, 0, n);
+
+        int[] offsets = new int[Math.min(n, MAX_HIT_OFFSETS)];
+        int count = 0;
+        for (int s = 0; s < n && count < offsets.length; s++) {
+            int start = (int) (starts[s] >>> 32);
+            boolean match = true;
+            for (int i = 1; i < slots.size() && match; i++) {
+                match = hasPosition(slots.get(i), doc, start + i);
+            }
+            if (match) {
+                offsets[count++] = (int) starts[s];
+            }
+        }
+        return Arrays.copyOf(offsets, count);
+    }
+
+    private static boolean hasPosition(PostingList[] slot, int doc, int position) {
+        for (PostingList list : slot) {
+            int idx = list.indexOf(doc);
+            if (idx >= 0 && list.hasPosition(idx, position)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Map ascending char offsets to distinct 1-based page numbers.
+     */
+    private int[] pagesOf(int doc, int[] offsets) {
+        int[] starts = pageStarts[doc];
+        int[] pages = new int[offsets.length];
+        int count = 0;
+        for (int offset : offsets) {
+            int idx = Arrays.binarySearch(starts, offset);
+            int page = idx >= 0 ? idx + 1 : -idx - 1;
+            if (count == 0 || pages[count - 1] != page) {
+                pages[count++] = page;
+            }
+        }
+        return Arrays.copyOf(pages, count);
+    }
+
+    private boolean matchesFilters(int doc, String brand, String category) {
+        return (brand == null || brand.equalsIgnoreCase(brands[doc]))
+                && (category == null || category.equalsIgnoreCase(categories[doc]));
+    }
+
+    private void ensureDocCapacity(int required) {
+        if (required > docIds.length) {
+            int newLength = Math.max(required, docIds.length * 2);
+            docIds = Arrays.copyOf(docIds, newLength);
+            brands = Arrays.copyOf(brands, newLength);
+            categories = Arrays.copyOf(categories, newLength);
+            lengths = Arrays.copyOf(lengths, newLength);
+            pageStarts = Arrays.copyOf(pageStarts, newLength);
+            docTerms = Arrays.copyOf(docTerms, newLength);
+        }
+    }
+}
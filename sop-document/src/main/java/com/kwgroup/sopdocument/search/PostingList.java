@@ -0,0 +1,143 @@
+package com.kwgroup.sopdocument.search;
+
+import java.util.Arrays;
+
+/**
+ * Postings of a single term, stored in parallel primitive arrays.
+ *
+ * {@code docs} is sorted ascending. New doc numbers are handed out in
+ * increasing order, so adding a document is usually an append; reused doc
+ * numbers of removed documents are inserted in place. Positions and char
+ * offsets of every occurrence are kept in flat arrays; {@code posStarts[i]}
+ * points to the first occurrence of posting {@code i}.
+ *
+ * Not thread-safe; guarded by the owning {@link InvertedIndex}.
+ */
+final class PostingList {
+
+    private int[] docs = new int[2];
+    private int[] freqs = new int[2];
+    private int[] posStarts = new int[2];
+    private int size;
+
+    private int[] positions = new int[4];
+    private int[] offsets = new int[4];
+    private int occurrenceCount;
+
+    /**
+     * Add the posting of a doc that is not in the list yet, keeping
+     * {@code docs} sorted.
+     */
+    void add(int doc, IndexedDocument.Occurrences occurrences) {
+        int idx = size > 0 && docs[size - 1] >= doc ? indexOf(doc) : -(size + 1);
+        if (idx >= 0) {
+            throw new IllegalStateException("Doc " + doc + " is already in the posting list");
+        }
+        idx = -(idx + 1);
+        if (size == docs.length) {
+            int newLength = size * 2;
+            docs = Arrays.copyOf(docs, newLength);
+            freqs = Arrays.copyOf(freqs, newLength);
+            posStarts = Arrays.copyOf(posStarts, newLength);
+        }
+
+        int freq = occurrences.count();
+        int start = idx < size ? posStarts[idx] : occurrenceCount;
+        ensureOccurrenceCapacity(occurrenceCount + freq);
+        int tail = occurrenceCount - start;
+        System.arraycopy(positions, start, positions, start + freq, tail);
+        System.arraycopy(offsets, start, offsets, start + freq, tail);
+        for (int i = 0; i < freq; i++) {
+            positions[start + i] = occurrences.position(i);
+            offsets[start + i] = occurrences.offset(i);
+        }
+        occurrenceCount += freq;
+
+        int moved = size - idx;
+        System.arraycopy(docs, idx, docs, idx + 1, moved);
+        System.arraycopy(freqs, idx, freqs, idx + 1, moved);
+        System.arraycopy(posStarts, idx, posStarts, idx + 1, moved);
+        docs[idx] = doc;
+        freqs[idx] = freq;
+        posStarts[idx] = start;
+        size++;
+        for (int i = idx + 1; i < size; i++) {
+            posStarts[i] += freq;
+        }
+    }
+
+    /**
+     * Remove the posting of the given doc.
+     *
+     * @return true if the doc was present
+     */
+    boolean remove(int doc) {
+        int idx = indexOf(doc);
+        if (idx < 0) {
+            return false;
+        }
+
+        int freq = freqs[idx];
+        int start = posStarts[idx];
+        int tail = occurrenceCount - (start + freq);
+        System.arraycopy(positions, start + freq, positions, start, tail);
+        System.arraycopy(offsets, start + freq, offsets, start, tail);
+        occurrenceCount -= freq;
+
+        int moved = size - idx - 1;
+        System.arraycopy(docs, idx + 1, docs, idx, moved);
+        System.arraycopy(freqs, idx + 1, freqs, idx, moved);
+        System.arraycopy(posStarts, idx + 1, posStarts, idx, moved);
+        size--;
+        for (int i = idx; i < size; i++) {
+            posStarts[i] -= freq;
+        }
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int doc(int i) {
+        return docs[i];
+    }
+
+    int freq(int i) {
+        return freqs[i];
+    }
+
+    int position(int i, int occurrence) {
+        return positions[posStarts[i] + occurrence];
+    }
+
+    int offset(int i, int occurrence) {
+        return offsets[posStarts[i] + occurrence];
+    }
+
+    /**
+     * Binary search for the posting index of a doc.
+     *
+     * @return posting index, or a negative value if absent
+     */
+    int indexOf(int doc) {
+        return Arrays.binarySearch(docs, 0, size, doc);
+    }
+
+    /**
+     * Whether the posting at {@code i} has an occurrence at {@code position}.
+     * Positions inside a posting are ascending, so this is a binary search.
+     */
+    boolean hasPosition(int i, int position) {
+        int start = posStarts[i];
+        return Arrays.binarySearch(positions, start, start + freqs[i], position) >= 0;
+    }
+
+    private void ensureOccurrenceCapacity(int required) {
+        if (required > positions.length) {
+            int newLength = Math.max(required, positions.length * 2);
+            positions = Arrays.copyOf(positions, newLength);
+            offsets = Arrays.copyOf(offsets, newLength);
+        }
+    }
+}
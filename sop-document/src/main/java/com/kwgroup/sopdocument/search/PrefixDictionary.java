@@ -0,0 +1,200 @@
+package com.kwgroup.sopdocument.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Immutable prefix-completion dictionary.
+ *
+ * Every suggestion text is reachable through one or more lower-case keys
+ * (the text itself, or each word start of it). Keys are kept in one sorted
+ * array, so the keys sharing a prefix form a contiguous range found by
+ * binary search; the best suggestions of that range are picked by weight.
+ * Ranges of one- and two-character prefixes are the largest, so their top
+ * suggestions are precomputed when the dictionary is built.
+ */
+public final class PrefixDictionary {
+
+    public static final PrefixDictionary EMPTY = new PrefixDictionary(new String[0], new int[0], new String[0], new int[0]);
+
+    private static final int PRECOMPUTED_PREFIX_LENGTH = 2;
+    private static final int PRECOMPUTED_LIMIT = 32;
+
+    private final String[] keys;
+    private final int[] keyTexts;
+    private final String[] texts;
+    private final int[] weights;
+    private final Map<String, int[]> precomputed = new HashMap<>();
+
+    private PrefixDictionary(String[] keys, int[] keyTexts, String[] texts, int[] weights) {
+        this.keys = keys;
+        this.keyTexts = keyTexts;
+        this.texts = texts;
+        this.weights = weights;
+        precompute();
+    }
+
+    /**
+     * A completion and its weight (e.g. document frequency).
+     */
+    public record Suggestion(String text, int count) {
+    }
+
+    /**
+     * Dictionary where each text is its own (single) key.
+     *
+     * @param weights suggestion text (already lower case) to weight
+     */
+    public static PrefixDictionary ofTerms(Map<String, Integer> weights) {
+        return build(weights, false);
+    }
+
+    /**
+     * Dictionary where a text can be completed from the start of any of its
+     * words, e.g. "Store Opening.pdf" from "sto" as well as from "open".
+     *
+     * @param weights suggestion text to weight
+     */
+    public static PrefixDictionary ofPhrases(Map<String, Integer> weights) {
+        return build(weights, true);
+    }
+
+    private static PrefixDictionary build(Map<String, Integer> weightsByText, boolean wordStarts) {
+        String[] texts = new String[weightsByText.size()];
+        int[] weights = new int[texts.length];
+        List<String> keyList = new ArrayList<>();
+        List<Integer> keyTextList = new ArrayList<>();
+
+        int t = 0;
+        for (Map.Entry<String, Integer> e : weightsByText.entrySet()) {
+            texts[t] = e.getKey();
+            weights[t] = e.getValue();
+            String lower = e.getKey().toLowerCase(Locale.ROOT);
+            for (int start = 0; start < lower.length(); start++) {
+                boolean wordStart = Character.isLetterOrDigit(lower.charAt(start))
+                        && (start == 0 || !Character.isLetterOrDigit(lower.charAt(start - 1)));
+                if (start == 0 || (wordStarts && wordStart)) {
+                    keyList.add(lower.substring(start));
+                    keyTextList.add(t);
+                }
+                if (!wordStarts) {
+                    break;
+                }
+            }
+            t++;
+        }
+
+        Integer[] order = new Integer[keyList.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparing(keyList::get));
+        String[] keys = new String[order.length];
+        int[] keyTexts = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            keys[i] = keyList.get(order[i]);
+            keyTexts[i] = keyTextList.get(order[i]);
+        }
+        return new PrefixDictionary(keys, keyTexts, texts, weights);
+    }
+
+    /**
+     * @return number of distinct suggestion texts
+     */
+    public int size() {
+        return texts.length;
+    }
+
+    /**
+     * Best completions of a prefix, by descending weight then text.
+     *
+     * @param prefix case-insensitive prefix
+     * @param limit  maximum number of suggestions
+     */
+    public List<Suggestion> complete(String prefix, int limit) {
+        if (prefix == null || prefix.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        String lower = prefix.toLowerCase(Locale.ROOT);
+        int[] best = lower.length() <= PRECOMPUTED_PREFIX_LENGTH && limit <= PRECOMPUTED_LIMIT
+                ? precomputed.get(lower)
+                : null;
+        if (best == null) {
+            best = topInRange(lower, lowerBound(lower), limit);
+        }
+
+        int count = Math.min(limit, best.length);
+        List<Suggestion> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(new Suggestion(texts[best[i]], weights[best[i]]));
+        }
+        return result;
+    }
+
+    private void precompute() {
+        for (int i = 0; i < keys.length; i++) {
+            for (int length = 1; length <= PRECOMPUTED_PREFIX_LENGTH && length <= keys[i].length(); length++) {
+                String prefix = keys[i].substring(0, length);
+                if (!precomputed.containsKey(prefix)) {
+                    // keys are sorted, so the first key with this prefix starts its range
+                    precomputed.put(prefix, topInRange(prefix, i, PRECOMPUTED_LIMIT));
+                }
+            }
+        }
+    }
+
+    /**
+     * Text indexes of the best {@code limit} texts among the keys starting
+     * with {@code prefix}, beginning at key {@code from}.
+     */
+    private int[] topInRange(String prefix, int from, int limit) {
+        Comparator<Integer> byRank = Comparator.<Integer>comparingInt(t -> weights[t])
+                .thenComparing(t -> texts[t], Comparator.reverseOrder());
+        PriorityQueue<Integer> top = new PriorityQueue<>(byRank);
+        boolean[] seen = null;
+        for (int i = from; i < keys.length && keys[i].startsWith(prefix); i++) {
+            int text = keyTexts[i];
+            if (texts.length != keys.length) {
+                // several keys per text: report each text once
+                if (seen == null) {
+                    seen = new boolean[texts.length];
+                }
+                if (seen[text]) {
+                    continue;
+                }
+                seen[text] = true;
+            }
+            top.offer(text);
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+
+        int[] result = new int[top.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = top.poll();
+        }
+        return result;
+    }
+
+    private int lowerBound(String prefix) {
+        // first key >= prefix (keys may repeat, so no Arrays.binarySearch)
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid].compareTo(prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,32 @@
+package com.kwgroup.sopdocument.search;
+
+import java.util.List;
+
+/**
+ * Parsed content search query (see {@link QueryParser}).
+ */
+public sealed interface QueryNode {
+
+    /**
+     * One or more terms. {@code phrase} requires them to be consecutive; a
+     * bare word that tokenizes into several terms (e.g. "e-mail") is a phrase
+     * too.
+     */
+    record Terms(List<String> terms, boolean phrase) implements QueryNode {
+    }
+
+    /**
+     * {@code brand:value} or {@code category:value} filter.
+     */
+    record Field(String name, String value) implements QueryNode {
+    }
+
+    record And(List<QueryNode> clauses) implements QueryNode {
+    }
+
+    record Or(List<QueryNode> clauses) implements QueryNode {
+    }
+
+    record Not(QueryNode clause) implements QueryNode {
+    }
+}
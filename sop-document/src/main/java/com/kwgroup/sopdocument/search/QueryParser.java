@@ -0,0 +1,210 @@
+package com.kwgroup.sopdocument.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Parser for the content search query language.
+ *
+ * <pre>
+ * query   := or
+ * or      := and ( "OR" and )*
+ * and     := unary ( ["AND"] unary )*        (adjacent clauses are AND-ed)
+ * unary   := ("NOT" | "-") unary | primary
+ * primary := "(" or ")" | field ":" value | "\"" phrase "\"" | word
+ * field   := brand | category
+ * </pre>
+ *
+ * Operators must be upper case; lower-case "and" / "or" are ordinary words.
+ * The parser is lenient: unbalanced quotes or parentheses are closed
+ * implicitly and unknown fields are searched as text.
+ */
+public final class QueryParser {
+
+    public static final Set<String> FIELDS = Set.of("brand", "category");
+
+    private final List<Token> tokens;
+    private int pos;
+
+    private QueryParser(List<Token> tokens) {
+        this.tokens = tokens;
+    }
+
+    /**
+     * @param query raw query text
+     * @return parsed query, or null if it contains no searchable clause
+     */
+    public static QueryNode parse(String query) {
+        if (query == null || query.isBlank()) {
+            return null;
+        }
+        QueryParser parser = new QueryParser(lex(query));
+        QueryNode node = parser.parseOr();
+        // stray ")" - skip it and keep AND-ing what follows
+        while (parser.pos < parser.tokens.size()) {
+            parser.pos++;
+            QueryNode rest = parser.parseOr();
+            node = node == null ? rest : rest == null ? node : new QueryNode.And(List.of(node, rest));
+        }
+        return node;
+    }
+
+    /* ---------- grammar ---------- */
+
+    private QueryNode parseOr() {
+        List<QueryNode> clauses = new ArrayList<>();
+        addIfPresent(clauses, parseAnd());
+        while (peekOperator("OR")) {
+            pos++;
+            addIfPresent(clauses, parseAnd());
+        }
+        return combine(clauses, false);
+    }
+
+    private QueryNode parseAnd() {
+        List<QueryNode> clauses = new ArrayList<>();
+        while (pos < tokens.size()) {
+            Token token = tokens.get(pos);
+            if (token.type == TokenType.RPAREN || peekOperator("OR")) {
+                break;
+            }
+            if (peekOperator("AND")) {
+                pos++;
+                continue;
+            }
+            addIfPresent(clauses, parseUnary());
+        }
+        return combine(clauses, true);
+    }
+
+    private QueryNode parseUnary() {
+        if (peekOperator("NOT") || peekType(TokenType.MINUS)) {
+            pos++;
+            QueryNode clause = parseUnary();
+            return clause == null ? null : new QueryNode.Not(clause);
+        }
+        return parsePrimary();
+    }
+
+    private QueryNode parsePrimary() {
+        if (pos >= tokens.size()) {
+            return null;
+        }
+        Token token = tokens.get(pos++);
+        switch (token.type) {
+            case LPAREN -> {
+                QueryNode inner = parseOr();
+                if (peekType(TokenType.RPAREN)) {
+                    pos++;
+                }
+                return inner;
+            }
+            case FIELD -> {
+                String value = token.value.trim().toLowerCase(Locale.ROOT);
+                return value.isEmpty() ? null : new QueryNode.Field(token.field, value);
+            }
+            case PHRASE -> {
+                return terms(token.value, true);
+            }
+            default -> {
+                return terms(token.value, false);
+            }
+        }
+    }
+
+    private static QueryNode terms(String text, boolean phrase) {
+        List<String> terms = Tokenizer.terms(text);
+        if (terms.isEmpty()) {
+            return null;
+        }
+        return new QueryNode.Terms(terms, phrase || terms.size() > 1);
+    }
+
+    private static QueryNode combine(List<QueryNode> clauses, boolean and) {
+        if (clauses.isEmpty()) {
+            return null;
+        }
+        if (clauses.size() == 1) {
+            return clauses.get(0);
+        }
+        return and ? new QueryNode.And(List.copyOf(clauses)) : new QueryNode.Or(List.copyOf(clauses));
+    }
+
+    private static void addIfPresent(List<QueryNode> clauses, QueryNode node) {
+        if (node != null) {
+            clauses.add(node);
+        }
+    }
+
+    private boolean peekOperator(String operator) {
+        return pos < tokens.size()
+                && tokens.get(pos).type == TokenType.WORD
+                && tokens.get(pos).value.equals(operator);
+    }
+
+    private boolean peekType(TokenType type) {
+        return pos < tokens.size() && tokens.get(pos).type == type;
+    }
+
+    /* ---------- lexer ---------- */
+
+    private enum TokenType {
+        WORD, PHRASE, FIELD, LPAREN, RPAREN, MINUS
+    }
+
+    private record Token(TokenType type, String value, String field) {
+        Token(TokenType type, String value) {
+            this(type, value, null);
+        }
+    }
+
+    private static List<Token> lex(String query) {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        int n = query.length();
+        while (i < n) {
+            char c = query.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(') {
+                tokens.add(new Token(TokenType.LPAREN, "("));
+                i++;
+            } else if (c == ')') {
+                tokens.add(new Token(TokenType.RPAREN, ")"));
+                i++;
+            } else if (c == '-' && i + 1 < n && !Character.isWhitespace(query.charAt(i + 1))) {
+                tokens.add(new Token(TokenType.MINUS, "-"));
+                i++;
+            } else if (c == '"') {
+                int end = query.indexOf('"', i + 1);
+                end = end < 0 ? n : end;
+                tokens.add(new Token(TokenType.PHRASE, query.substring(i + 1, end)));
+                i = end + 1;
+            } else {
+                int start = i;
+                while (i < n && !Character.isWhitespace(query.charAt(i))
+                        && "()\"".indexOf(query.charAt(i)) < 0) {
+                    i++;
+                }
+                String word = query.substring(start, i);
+                int colon = word.indexOf(':');
+                String field = colon > 0 ? word.substring(0, colon).toLowerCase(Locale.ROOT) : null;
+                if (field != null && FIELDS.contains(field)) {
+                    String value = word.substring(colon + 1);
+                    if (value.isEmpty() && i < n && query.charAt(i) == '"') {
+                        int end = query.indexOf('"', i + 1);
+                        end = end < 0 ? n : end;
+                        value = query.substring(i + 1, end);
+                        i = end + 1;
+                    }
+                    tokens.add(new Token(TokenType.FIELD, value, field));
+                } else {
+                    tokens.add(new Token(TokenType.WORD, word));
+                }
+            }
+        }
+        return tokens;
+    }
+}
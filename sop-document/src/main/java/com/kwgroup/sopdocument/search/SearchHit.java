@@ -0,0 +1,37 @@
+package com.kwgroup.sopdocument.search;
+
+/**
+ * A search hit: SOP id, score (0 for unranked searches), the char offsets of
+ * the matched terms inside the extracted text and the 1-based pages they fall
+ * on (both ascending).
+ */
+public final class SearchHit {
+
+    private final String sopId;
+    private final double score;
+    private final int[] hitOffsets;
+    private final int[] pages;
+
+    SearchHit(String sopId, double score, int[] hitOffsets, int[] pages) {
+        this.sopId = sopId;
+        this.score = score;
+        this.hitOffsets = hitOffsets;
+        this.pages = pages;
+    }
+
+    public String getSopId() {
+        return sopId;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public int[] getHitOffsets() {
+        return hitOffsets.clone();
+    }
+
+    public int[] getPages() {
+        return pages.clone();
+    }
+}
@@ -0,0 +1,309 @@
+package com.kwgroup.sopdocument.search;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Binary format of an immutable index segment.
+ *
+ * <pre>
+ * header  := magic:int  formatVersion:byte  flags:byte  generation:long  count:int
+ * record  := PUT doc | METADATA id brand category fingerprint:long | DELETE id
+ * doc     := id brand category fingerprint:long length:varint pages terms
+ * pages   := count:varint  (start delta:varint)*
+ * terms   := count:varint  (term occurrences:varint (position delta:varint)* (offset delta:varint)*)*
+ * trailer := crc32 of everything before:long
+ * </pre>
+ *
+ * Strings are a varint byte length followed by UTF-8; nullable strings store
+ * length + 1 with 0 meaning null. A segment flagged {@code full} holds the
+ * complete index as of its generation and supersedes all older segments.
+ *
+ * Files are written to a temporary name, forced to disk and atomically
+ * renamed, so a reader never sees a partial segment. They are read into a
+ * heap buffer rather than mapped: they are decoded completely anyway, and
+ * Windows refuses to delete or replace a file while a mapping of it is live.
+ */
+final class SegmentFile {
+
+    private static final int MAGIC = 0x534F5049; // "SOPI"
+    private static final byte FORMAT_VERSION = 1;
+    private static final byte FLAG_FULL = 1;
+    private static final int HEADER_SIZE = 4 + 1 + 1 + 8 + 4;
+    private static final int TRAILER_SIZE = 8;
+
+    private static final byte PUT = 1;
+    private static final byte METADATA = 2;
+    private static final byte DELETE = 3;
+
+    private SegmentFile() {
+    }
+
+    /**
+     * Decoded segment.
+     */
+    record Segment(long generation, boolean full, List<IndexChange> changes) {
+    }
+
+    static void write(Path target, long generation, boolean full, List<IndexChange> changes) throws IOException {
+        Encoder out = new Encoder();
+        out.writeInt(MAGIC);
+        out.writeByte(FORMAT_VERSION);
+        out.writeByte(full ? FLAG_FULL : 0);
+        out.writeLong(generation);
+        out.writeInt(changes.size());
+        for (IndexChange change : changes) {
+            if (change instanceof IndexChange.Put put) {
+                out.writeByte(PUT);
+                writeDocument(out, put.document(), put.fingerprint());
+            } else if (change instanceof IndexChange.Metadata metadata) {
+                out.writeByte(METADATA);
+                out.writeString(metadata.sopId());
+                out.writeNullableString(metadata.brand());
+                out.writeNullableString(metadata.category());
+                out.writeLong(metadata.fingerprint());
+            } else {
+                out.writeByte(DELETE);
+                out.writeString(change.sopId());
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(out.bytes, 0, out.size);
+        out.writeLong(crc.getValue());
+
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(out.bytes, 0, out.size);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    static Segment read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + TRAILER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Invalid segment size " + size + ": " + path);
+            }
+            ByteBuffer data = ByteBuffer.allocate((int) size);
+            while (data.hasRemaining()) {
+                if (channel.read(data) < 0) {
+                    throw new IOException("Segment shrank while reading: " + path);
+                }
+            }
+            data.flip();
+
+            ByteBuffer body = data.duplicate().limit((int) size - TRAILER_SIZE);
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            if (crc.getValue() != data.getLong((int) size - TRAILER_SIZE)) {
+                throw new IOException("Checksum mismatch in segment: " + path);
+            }
+
+            ByteBuffer in = data.duplicate().limit((int) size - TRAILER_SIZE);
+            if (in.getInt() != MAGIC || in.get() != FORMAT_VERSION) {
+                throw new IOException("Not a segment file (or unsupported version): " + path);
+            }
+            boolean full = (in.get() & FLAG_FULL) != 0;
+            long generation = in.getLong();
+            int count = in.getInt();
+
+            List<IndexChange> changes = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                byte type = in.get();
+                switch (type) {
+                    case PUT -> changes.add(readDocument(in));
+                    case METADATA -> changes.add(new IndexChange.Metadata(readString(in),
+                            readNullableString(in), readNullableString(in), in.getLong()));
+                    case DELETE -> changes.add(new IndexChange.Delete(readString(in)));
+                    default -> throw new IOException("Unknown record type " + type + " in segment: " + path);
+                }
+            }
+            return new Segment(generation, full, changes);
+        } catch (RuntimeException e) {
+            // BufferUnderflowException etc. on a malformed body
+            throw new IOException("Malformed segment: " + path, e);
+        }
+    }
+
+    /* ---------- documents ---------- */
+
+    private static void writeDocument(Encoder out, IndexedDocument document, long fingerprint) {
+        out.writeString(document.getSopId());
+        out.writeNullableString(document.getBrand());
+        out.writeNullableString(document.getCategory());
+        out.writeLong(fingerprint);
+        out.writeVarInt(document.getLength());
+
+        int[] pageStarts = document.getPageStarts();
+        out.writeVarInt(pageStarts.length);
+        int previous = 0;
+        for (int start : pageStarts) {
+            out.writeVarInt(start - previous);
+            previous = start;
+        }
+
+        Map<String, IndexedDocument.Occurrences> terms = document.getTerms();
+        out.writeVarInt(terms.size());
+        for (Map.Entry<String, IndexedDocument.Occurrences> e : terms.entrySet()) {
+            IndexedDocument.Occurrences occurrences = e.getValue();
+            out.writeString(e.getKey());
+            out.writeVarInt(occurrences.count());
+            previous = 0;
+            for (int i = 0; i < occurrences.count(); i++) {
+                out.writeVarInt(occurrences.position(i) - previous);
+                previous = occurrences.position(i);
+            }
+            previous = 0;
+            for (int i = 0; i < occurrences.count(); i++) {
+                out.writeVarInt(occurrences.offset(i) - previous);
+                previous = occurrences.offset(i);
+            }
+        }
+    }
+
+    private static IndexChange.Put readDocument(ByteBuffer in) {
+        String sopId = readString(in);
+        String brand = readNullableString(in);
+        String category = readNullableString(in);
+        long fingerprint = in.getLong();
+        int length = readVarInt(in);
+
+        int[] pageStarts = new int[readVarInt(in)];
+        int previous = 0;
+        for (int i = 0; i < pageStarts.length; i++) {
+            previous += readVarInt(in);
+            pageStarts[i] = previous;
+        }
+
+        int termCount = readVarInt(in);
+        Map<String, IndexedDocument.Occurrences> terms = new LinkedHashMap<>(termCount * 2);
+        for (int t = 0; t < termCount; t++) {
+            String term = readString(in);
+            int count = readVarInt(in);
+            int[] positions = new int[count];
+            previous = 0;
+            for (int i = 0; i < count; i++) {
+                previous += readVarInt(in);
+                positions[i] = previous;
+            }
+            IndexedDocument.Occurrences occurrences = new IndexedDocument.Occurrences();
+            previous = 0;
+            for (int i = 0; i < count; i++) {
+                previous += readVarInt(in);
+                occurrences.add(positions[i], previous);
+            }
+            terms.put(term, occurrences);
+        }
+        return new IndexChange.Put(
+                IndexedDocument.restore(sopId, brand, category, length, pageStarts, terms), fingerprint);
+    }
+
+    /* ---------- primitives ---------- */
+
+    private static int readVarInt(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed varint");
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String readNullableString(ByteBuffer in) {
+        int length = readVarInt(in);
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length - 1];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Growable big-endian byte buffer.
+     */
+    private static final class Encoder {
+        private byte[] bytes = new byte[4096];
+        private int size;
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+
+        void writeByte(int value) {
+            ensure(1);
+            bytes[size++] = (byte) value;
+        }
+
+        void writeInt(int value) {
+            ensure(4);
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                bytes[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeVarInt(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void writeString(String value) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(utf8.length);
+            ensure(utf8.length);
+            System.arraycopy(utf8, 0, bytes, size, utf8.length);
+            size += utf8.length;
+        }
+
+        void writeNullableString(String value) {
+            if (value == null) {
+                writeVarInt(0);
+                return;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(utf8.length + 1);
+            ensure(utf8.length);
+            System.arraycopy(utf8, 0, bytes, size, utf8.length);
+            size += utf8.length;
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.kwgroup.sopdocument.search;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Directory of immutable {@link SegmentFile}s persisting the content index.
+ *
+ * Every flush of index changes becomes a new segment with the next
+ * generation number. Replaying the segments in generation order yields the
+ * current documents. {@link #mergeTier(int)} keeps the number of segments
+ * small without rewriting the whole index: it folds a run of adjacent,
+ * similarly sized segments into one, so each change is rewritten only about
+ * once per size tier. {@link #merge()} folds all of them into a single
+ * {@code full} segment (compaction). A full segment supersedes everything
+ * older, so a crash between writing it and deleting its inputs is harmless.
+ *
+ * All methods are synchronized; appends and merges never run concurrently.
+ */
+public final class SegmentStore {
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d{19})\\.idx");
+    // segments below this size are all in the lowest tier
+    private static final long TIER_FLOOR_BYTES = 1 << 20;
+
+    private final Path directory;
+    private long nextGeneration = 1;
+
+    public SegmentStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Replay all segments. Also removes leftovers of interrupted writes and
+     * segments made obsolete by a newer full segment.
+     *
+     * @return latest state of every stored document, by SOP id
+     */
+    public synchronized Map<String, StoredDocument> load() throws IOException {
+        Files.createDirectories(directory);
+        deleteTemporaryFiles();
+
+        List<Path> segments = segmentPaths();
+        if (!segments.isEmpty()) {
+            nextGeneration = generationOf(segments.get(segments.size() - 1)) + 1;
+        }
+        Map<String, StoredDocument> documents = new LinkedHashMap<>();
+        replay(segments, documents);
+        return documents;
+    }
+
+    /**
+     * Persist a batch of changes as a new segment.
+     */
+    public synchronized void append(List<IndexChange> changes) throws IOException {
+        if (changes.isEmpty()) {
+            return;
+        }
+        Files.createDirectories(directory);
+        long generation = nextGeneration++;
+        SegmentFile.write(pathOf(generation), generation, false, changes);
+    }
+
+    /**
+     * Merge all segments into one full segment and delete the inputs.
+     *
+     * @return number of documents in the merged segment, or -1 if there was
+     *         nothing to merge
+     */
+    public synchronized int merge() throws IOException {
+        List<Path> segments = segmentPaths();
+        if (segments.size() < 2) {
+            return -1;
+        }
+        Map<String, StoredDocument> documents = new LinkedHashMap<>();
+        replay(segments, documents);
+
+        List<IndexChange> puts = new ArrayList<>(documents.size());
+        for (StoredDocument stored : documents.values()) {
+            puts.add(new IndexChange.Put(stored.document(), stored.fingerprint()));
+        }
+        long generation = nextGeneration++;
+        SegmentFile.write(pathOf(generation), generation, true, puts);
+        for (Path segment : segments) {
+            Files.deleteIfExists(segment);
+        }
+        return documents.size();
+    }
+
+    /**
+     * Merge the newest run of at least {@code mergeFactor} adjacent segments
+     * in the same size tier (tier {@code n} holds segments up to
+     * {@code mergeFactor^n} times {@value #TIER_FLOOR_BYTES} bytes) into one.
+     * Older and larger segments are left alone.
+     *
+     * The merged segment takes the generation of the newest input, so replay
+     * order is kept. It is only {@code full} if an input was: otherwise
+     * deletes are kept, as they may remove documents of older segments. If
+     * the process dies before the older inputs are deleted, their changes
+     * are simply replayed twice.
+     *
+     * @return number of segments merged, 0 if no tier had enough
+     */
+    public synchronized int mergeTier(int mergeFactor) throws IOException {
+        if (mergeFactor < 2 || !Files.isDirectory(directory)) {
+            return 0;
+        }
+        List<Path> segments = segmentPaths();
+        int end = segments.size();
+        while (end >= mergeFactor) {
+            int tier = tierOf(segments.get(end - 1), mergeFactor);
+            int start = end - 1;
+            while (start > 0 && tierOf(segments.get(start - 1), mergeFactor) == tier) {
+                start--;
+            }
+            if (end - start >= mergeFactor) {
+                mergeRun(segments.subList(start, end));
+                return end - start;
+            }
+            end = start;
+        }
+        return 0;
+    }
+
+    /**
+     * Delete all segments (e.g. after one turned out to be unreadable).
+     */
+    public synchronized void clear() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        deleteTemporaryFiles();
+        for (Path segment : segmentPaths()) {
+            Files.deleteIfExists(segment);
+        }
+    }
+
+    public synchronized int segmentCount() throws IOException {
+        return Files.isDirectory(directory) ? segmentPaths().size() : 0;
+    }
+
+    /* ---------- internals ---------- */
+
+    /**
+     * Apply the given segments (sorted by generation) to {@code documents},
+     * starting from the newest full segment.
+     */
+    private void replay(List<Path> segments, Map<String, StoredDocument> documents) throws IOException {
+        List<SegmentFile.Segment> decoded = new ArrayList<>(segments.size());
+        int start = 0;
+        for (Path path : segments) {
+            SegmentFile.Segment segment = SegmentFile.read(path);
+            if (segment.full()) {
+                start = decoded.size();
+            }
+            decoded.add(segment);
+        }
+        for (int i = 0; i < start; i++) {
+            Files.deleteIfExists(segments.get(i));
+        }
+
+        for (SegmentFile.Segment segment : decoded.subList(start, decoded.size())) {
+            for (IndexChange change : segment.changes()) {
+                apply(change, documents);
+            }
+        }
+    }
+
+    private void mergeRun(List<Path> run) throws IOException {
+        Path newest = run.get(run.size() - 1);
+        long generation = generationOf(newest);
+        List<SegmentFile.Segment> decoded = new ArrayList<>(run.size());
+        for (Path path : run) {
+            decoded.add(SegmentFile.read(path));
+        }
+
+        boolean full = false;
+        Map<String, IndexChange> folded = new LinkedHashMap<>();
+        for (SegmentFile.Segment segment : decoded) {
+            if (segment.full()) {
+                full = true;
+                folded.clear();
+            }
+            for (IndexChange change : segment.changes()) {
+                fold(change, folded);
+            }
+        }
+        List<IndexChange> changes = new ArrayList<>(folded.values());
+        if (full) {
+            // nothing older left to delete or update
+            changes.removeIf(change -> !(change instanceof IndexChange.Put));
+        }
+        SegmentFile.write(newest, generation, full, changes);
+        for (Path segment : run.subList(0, run.size() - 1)) {
+            Files.deleteIfExists(segment);
+        }
+    }
+
+    /**
+     * Reduce {@code change} and the earlier changes of the same document to
+     * one change with the same effect.
+     */
+    private static void fold(IndexChange change, Map<String, IndexChange> folded) {
+        if (change instanceof IndexChange.Metadata metadata) {
+            IndexChange previous = folded.get(metadata.sopId());
+            if (previous instanceof IndexChange.Put put) {
+                folded.put(metadata.sopId(), new IndexChange.Put(
+                        put.document().withMetadata(metadata.brand(), metadata.category()), metadata.fingerprint()));
+            } else if (!(previous instanceof IndexChange.Delete)) {
+                // later metadata replaces earlier metadata entirely
+                folded.put(metadata.sopId(), metadata);
+            }
+        } else {
+            // re-insert so iteration order follows the latest change
+            folded.remove(change.sopId());
+            folded.put(change.sopId(), change);
+        }
+    }
+
+    private static int tierOf(Path segment, int mergeFactor) throws IOException {
+        double ratio = (double) Math.max(Files.size(segment), TIER_FLOOR_BYTES) / TIER_FLOOR_BYTES;
+        return (int) Math.ceil(Math.log(ratio) / Math.log(mergeFactor));
+    }
+
+    private static void apply(IndexChange change, Map<String, StoredDocument> documents) {
+        if (change instanceof IndexChange.Put put) {
+            // re-insert so iteration order follows the latest change
+            documents.remove(put.sopId());
+            documents.put(put.sopId(), new StoredDocument(put.document(), put.fingerprint()));
+        } else if (change instanceof IndexChange.Metadata metadata) {
+            documents.computeIfPresent(metadata.sopId(), (id, stored) -> new StoredDocument(
+                    stored.document().withMetadata(metadata.brand(), metadata.category()), metadata.fingerprint()));
+        } else {
+            documents.remove(change.sopId());
+        }
+    }
+
+    private List<Path> segmentPaths() throws IOException {
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "segment-*.idx")) {
+            for (Path path : stream) {
+                if (SEGMENT_NAME.matcher(path.getFileName().toString()).matches()) {
+                    paths.add(path);
+                }
+            }
+        }
+        paths.sort(Comparator.comparingLong(SegmentStore::generationOf));
+        return paths;
+    }
+
+    private void deleteTemporaryFiles() throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "segment-*.tmp")) {
+            for (Path path : stream) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private Path pathOf(long generation) {
+        return directory.resolve(String.format("segment-%019d.idx", generation));
+    }
+
+    private static long generationOf(Path path) {
+        Matcher matcher = SEGMENT_NAME.matcher(path.getFileName().toString());
+        return matcher.matches() ? Long.parseLong(matcher.group(1)) : -1;
+    }
+}
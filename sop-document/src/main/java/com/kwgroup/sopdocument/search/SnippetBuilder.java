@@ -0,0 +1,125 @@
+package com.kwgroup.sopdocument.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds highlighted snippet windows around stored hit offsets.
+ *
+ * Only the characters inside each window are touched, so the cost is
+ * independent of the document size. Text is HTML-escaped and hits are
+ * wrapped in {@code <mark>} tags.
+ */
+public final class SnippetBuilder {
+
+    private static final int WORD_BOUNDARY_SLACK = 15;
+    private static final String ELLIPSIS = "…";
+
+    private SnippetBuilder() {
+    }
+
+    /**
+     * @param text        extracted PDF text the offsets refer to
+     * @param hitOffsets  ascending char offsets of matched terms
+     * @param maxSnippets maximum number of windows
+     * @param windowSize  approximate window size in characters
+     * @return highlighted snippets in document order
+     */
+    public static List<String> build(String text, int[] hitOffsets, int maxSnippets, int windowSize) {
+        List<String> snippets = new ArrayList<>();
+        if (text == null || text.isEmpty() || hitOffsets == null) {
+            return snippets;
+        }
+
+        int half = windowSize / 2;
+        int i = 0;
+        while (i < hitOffsets.length && snippets.size() < maxSnippets) {
+            int hit = hitOffsets[i];
+            if (hit >= text.length()) {
+                break;
+            }
+            int start = toWordStart(text, Math.max(0, hit - half));
+            int end = toWordEnd(text, Math.min(text.length(), hit + half));
+
+            // all hits that fall into this window are highlighted in it
+            int last = i;
+            while (last + 1 < hitOffsets.length && hitOffsets[last + 1] < end) {
+                last++;
+            }
+
+            snippets.add(render(text, start, end, hitOffsets, i, last));
+            i = last + 1;
+        }
+        return snippets;
+    }
+
+    private static String render(String text, int start, int end, int[] hits, int firstHit, int lastHit) {
+        StringBuilder sb = new StringBuilder(end - start + 32);
+        if (start > 0) {
+            sb.append(ELLIPSIS);
+        }
+
+        int pos = start;
+        for (int h = firstHit; h <= lastHit; h++) {
+            int hitStart = hits[h];
+            if (hitStart < pos) {
+                continue;
+            }
+            int hitEnd = hitStart;
+            while (hitEnd < end && Character.isLetterOrDigit(text.charAt(hitEnd))) {
+                hitEnd++;
+            }
+            appendEscaped(sb, text, pos, hitStart);
+            sb.append("<mark>");
+            appendEscaped(sb, text, hitStart, hitEnd);
+            sb.append("</mark>");
+            pos = hitEnd;
+        }
+        appendEscaped(sb, text, pos, end);
+
+        if (end < text.length()) {
+            sb.append(ELLIPSIS);
+        }
+        return sb.toString().trim();
+    }
+
+    private static void appendEscaped(StringBuilder sb, String text, int from, int to) {
+        boolean lastWasSpace = sb.length() > 0 && sb.charAt(sb.length() - 1) == ' ';
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                if (!lastWasSpace) {
+                    sb.append(' ');
+                    lastWasSpace = true;
+                }
+                continue;
+            }
+            lastWasSpace = false;
+            switch (c) {
+                case '<' -> sb.append("&lt;");
+                case '>' -> sb.append("&gt;");
+                case '&' -> sb.append("&amp;");
+                case '"' -> sb.append("&quot;");
+                default -> sb.append(c);
+            }
+        }
+    }
+
+    private static int toWordStart(String text, int start) {
+        int limit = Math.max(0, start - WORD_BOUNDARY_SLACK);
+        int i = start;
+        while (i > limit && !Character.isWhitespace(text.charAt(i - 1))) {
+            i--;
+        }
+        return i == limit && limit > 0 ? start : i;
+    }
+
+    private static int toWordEnd(String text, int end) {
+        int limit = Math.min(text.length(), end + WORD_BOUNDARY_SLACK);
+        int i = end;
+        while (i < limit && !Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i == limit && limit < text.length() ? end : i;
+    }
+}
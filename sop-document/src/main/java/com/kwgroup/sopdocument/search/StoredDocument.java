@@ -0,0 +1,9 @@
+package com.kwgroup.sopdocument.search;
+
+/**
+ * Latest stored state of a document, as replayed from the segment files.
+ *
+ * @param fingerprint fingerprint of the SOP entry the document was indexed from
+ */
+public record StoredDocument(IndexedDocument document, long fingerprint) {
+}
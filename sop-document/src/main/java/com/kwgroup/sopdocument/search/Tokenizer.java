@@ -0,0 +1,74 @@
+package com.kwgroup.sopdocument.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits extracted PDF text into lower-cased terms.
+ *
+ * A term is a run of letters or digits; everything else is a separator.
+ * Terms longer than {@link #MAX_TERM_LENGTH} are dropped (usually base64 or
+ * garbage from broken text layers).
+ */
+public final class Tokenizer {
+
+    public static final int MAX_TERM_LENGTH = 64;
+
+    private Tokenizer() {
+    }
+
+    /**
+     * Receives each term in document order.
+     */
+    @FunctionalInterface
+    public interface TermConsumer {
+        /**
+         * @param term        lower-cased term
+         * @param position    token position (0-based, counts only kept terms)
+         * @param startOffset char offset of the term in the source text
+         */
+        void accept(String term, int position, int startOffset);
+    }
+
+    /**
+     * Tokenize the text and feed every term to the consumer.
+     *
+     * @return number of terms emitted
+     */
+    public static int tokenize(CharSequence text, TermConsumer consumer) {
+        if (text == null) {
+            return 0;
+        }
+
+        int position = 0;
+        int length = text.length();
+        StringBuilder current = new StringBuilder(16);
+        int start = -1;
+
+        for (int i = 0; i <= length; i++) {
+            char c = i < length ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                if (start < 0) {
+                    start = i;
+                }
+                current.append(Character.toLowerCase(c));
+            } else if (start >= 0) {
+                if (current.length() <= MAX_TERM_LENGTH) {
+                    consumer.accept(current.toString(), position++, start);
+                }
+                current.setLength(0);
+                start = -1;
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Convenience variant returning only the terms (used for queries).
+     */
+    public static List<String> terms(CharSequence text) {
+        List<String> terms = new ArrayList<>();
+        tokenize(text, (term, position, offset) -> terms.add(term));
+        return terms;
+    }
+}
@@ -0,0 +1,184 @@
+package com.kwgroup.sopdocument.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trigram index over the term dictionary of the {@link InvertedIndex}.
+ *
+ * Each term is registered under the trigrams of {@code "$" + term + "$"}.
+ * Substring lookups intersect the trigram lists of the needle and verify the
+ * candidates with {@link String#contains}; fuzzy lookups count shared
+ * trigrams (q-gram lemma) and verify with {@link EditDistance}. Both work on
+ * the dictionary, never on document text.
+ *
+ * Not thread-safe; guarded by the owning {@link InvertedIndex}.
+ */
+final class TrigramIndex {
+
+    private static final char PAD = '$';
+
+    private final Map<String, TermIdList> trigrams = new HashMap<>();
+    private final Map<String, Integer> termIds = new HashMap<>();
+    private final List<String> terms = new ArrayList<>();
+    private final List<Integer> freeIds = new ArrayList<>();
+
+    void addTerm(String term) {
+        if (termIds.containsKey(term)) {
+            return;
+        }
+        int id;
+        if (freeIds.isEmpty()) {
+            id = terms.size();
+            terms.add(term);
+        } else {
+            id = freeIds.remove(freeIds.size() - 1);
+            terms.set(id, term);
+        }
+        termIds.put(term, id);
+        for (String gram : paddedTrigrams(term)) {
+            trigrams.computeIfAbsent(gram, g -> new TermIdList()).add(id);
+        }
+    }
+
+    void removeTerm(String term) {
+        Integer id = termIds.remove(term);
+        if (id == null) {
+            return;
+        }
+        for (String gram : paddedTrigrams(term)) {
+            TermIdList list = trigrams.get(gram);
+            if (list != null && list.remove(id) && list.size == 0) {
+                trigrams.remove(gram);
+            }
+        }
+        terms.set(id, null);
+        freeIds.add(id);
+    }
+
+    /**
+     * Terms containing {@code needle}.
+     */
+    List<String> containing(String needle, int limit) {
+        List<String> result = new ArrayList<>();
+        if (needle.length() < 3) {
+            // too short for trigrams; the dictionary is small enough to scan
+            for (String term : termIds.keySet()) {
+                if (term.contains(needle)) {
+                    result.add(term);
+                    if (result.size() >= limit) {
+                        break;
+                    }
+                }
+            }
+            return result;
+        }
+
+        List<TermIdList> lists = new ArrayList<>();
+        for (int i = 0; i + 3 <= needle.length(); i++) {
+            TermIdList list = trigrams.get(needle.substring(i, i + 3));
+            if (list == null) {
+                return result;
+            }
+            lists.add(list);
+        }
+        lists.sort((a, b) -> Integer.compare(a.size, b.size));
+
+        TermIdList smallest = lists.get(0);
+        for (int i = 0; i < smallest.size && result.size() < limit; i++) {
+            int id = smallest.ids[i];
+            boolean inAll = true;
+            for (int l = 1; l < lists.size() && inAll; l++) {
+                inAll = lists.get(l).contains(id);
+            }
+            String term = terms.get(id);
+            if (inAll && term.contains(needle)) {
+                result.add(term);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Terms within {@code maxEdits} edits of {@code term}.
+     */
+    List<String> similar(String term, int maxEdits, int limit) {
+        List<String> grams = paddedTrigrams(term).stream().distinct().toList();
+        // q-gram lemma: each edit destroys at most 3 trigrams
+        int required = Math.max(1, grams.size() - 3 * maxEdits);
+
+        Map<Integer, Integer> shared = new HashMap<>();
+        for (String gram : grams) {
+            TermIdList list = trigrams.get(gram);
+            if (list == null) {
+                continue;
+            }
+            for (int i = 0; i < list.size; i++) {
+                shared.merge(list.ids[i], 1, Integer::sum);
+            }
+        }
+
+        List<String> result = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> e : shared.entrySet()) {
+            if (e.getValue() < required) {
+                continue;
+            }
+            String candidate = terms.get(e.getKey());
+            if (EditDistance.within(term, candidate, maxEdits)) {
+                result.add(candidate);
+                if (result.size() >= limit) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static List<String> paddedTrigrams(String term) {
+        String padded = PAD + term + PAD;
+        List<String> grams = new ArrayList<>(padded.length());
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + 3));
+        }
+        return grams;
+    }
+
+    /**
+     * Sorted, growable list of term ids.
+     */
+    private static final class TermIdList {
+        private int[] ids = new int[4];
+        private int size;
+
+        void add(int id) {
+            int idx = Arrays.binarySearch(ids, 0, size, id);
+            if (idx >= 0) {
+                return;
+            }
+            int insertAt = -idx - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, insertAt, ids, insertAt + 1, size - insertAt);
+            ids[insertAt] = id;
+            size++;
+        }
+
+        boolean remove(int id) {
+            int idx = Arrays.binarySearch(ids, 0, size, id);
+            if (idx < 0) {
+                return false;
+            }
+            System.arraycopy(ids, idx + 1, ids, idx, size - idx - 1);
+            size--;
+            return true;
+        }
+
+        boolean contains(int id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.kwgroup.sopdocument.service;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * Concurrency limit for background work that adapts to request latency
+ * (additive increase, multiplicative decrease): while the observed latency
+ * stays under the target, each finished task allows one more concurrent
+ * task, up to {@code max}; when it exceeds the target, the limit is halved,
+ * down to one.
+ */
+final class AdaptiveThrottle {
+
+    private final int max;
+    private final double targetMillis;
+    private final DoubleSupplier latencyMillis;
+
+    private int limit;
+    private int inFlight;
+
+    AdaptiveThrottle(int max, double targetMillis, DoubleSupplier latencyMillis) {
+        this.max = Math.max(1, max);
+        this.targetMillis = targetMillis;
+        this.latencyMillis = latencyMillis;
+        this.limit = this.max;
+    }
+
+    /**
+     * Wait for a slot under the current limit.
+     */
+    synchronized void acquire() throws InterruptedException {
+        while (inFlight >= limit) {
+            wait();
+        }
+        inFlight++;
+    }
+
+    /**
+     * Free a slot and adjust the limit to the current latency.
+     */
+    synchronized void release() {
+        inFlight--;
+        if (latencyMillis.getAsDouble() > targetMillis) {
+            limit = Math.max(1, limit / 2);
+        } else if (limit < max) {
+            limit++;
+        }
+        notifyAll();
+    }
+
+    synchronized int limit() {
+        return limit;
+    }
+}
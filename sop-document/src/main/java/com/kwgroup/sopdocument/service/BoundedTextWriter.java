@@ -0,0 +1,61 @@
+package com.kwgroup.sopdocument.service;
+
+import java.io.Writer;
+
+/**
+ * Writer collecting text up to a character budget. Text beyond the budget is
+ * dropped and {@link #isFull()} turns true, so a producer can stop early.
+ */
+final class BoundedTextWriter extends Writer {
+
+    private static final int INITIAL_CAPACITY = 16 * 1024;
+
+    private final StringBuilder text;
+    private final int maxChars;
+    private boolean full;
+
+    BoundedTextWriter(int maxChars) {
+        this.maxChars = maxChars;
+        this.text = new StringBuilder(Math.min(maxChars, INITIAL_CAPACITY));
+    }
+
+    boolean isFull() {
+        return full;
+    }
+
+    int length() {
+        return text.length();
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) {
+        text.append(chars, offset, room(length));
+    }
+
+    @Override
+    public void write(String str, int offset, int length) {
+        text.append(str, offset, offset + room(length));
+    }
+
+    private int room(int length) {
+        int room = maxChars - text.length();
+        if (length > room) {
+            full = true;
+            return Math.max(0, room);
+        }
+        return length;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public String toString() {
+        return text.toString();
+    }
+}
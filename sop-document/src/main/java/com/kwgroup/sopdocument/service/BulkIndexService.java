@@ -0,0 +1,422 @@
+package com.kwgroup.sopdocument.service;
+
+import com.kwgroup.sopdocument.dto.IndexingProgress;
+import com.kwgroup.sopdocument.model.SopEntry;
+import com.kwgroup.sopdocument.repository.SopContentRepository;
+import com.kwgroup.sopdocument.repository.SopEntryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Brings the content index up to date with the database, e.g. on startup.
+ *
+ * Entries are walked in id order with keyset pagination, loading only the
+ * fingerprint columns. Per page, entries whose indexed fingerprint is
+ * missing or outdated are loaded; stored content is indexed directly, the
+ * rest is extracted in parallel on a CPU-bound pool. Extracted content of a
+ * page is written back in one JDBC batch; entries whose file was replaced or
+ * removed during extraction are left to the change that did it. Entries
+ * stored before uploads were hashed get the SHA-256 of their file first,
+ * whether or not they need indexing, so thumbnails, web views and strong
+ * ETags work for them too.
+ *
+ * Entries whose file is quarantined after failed or timed-out extractions
+ * (see {@link ExtractionQuarantineService}) are skipped instead of being
+ * retried on every start.
+ *
+ * Extraction concurrency follows API request latency through an
+ * {@link AdaptiveThrottle}, so indexing backs off while users are waiting.
+ * Progress, throughput and ETA are logged per page and exposed through
+ * {@link #progress()}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BulkIndexService {
+
+    // only while the row still describes the file that was extracted: the
+    // updated row stays locked until the content is merged and committed
+    private static final String BACKFILL_HASH = "UPDATE sop_documents SET content_hash = ? "
+            + "WHERE id = ? AND file_path = ? AND file_size = ? AND content_hash IS NULL";
+
+    private static final String MARK_INDEXED = "UPDATE sop_documents SET content_hash = ?, index_status = 'INDEXED' "
+            + "WHERE id = ? AND file_path = ? AND file_size = ? AND (content_hash IS NULL OR content_hash = ?)";
+
+    private final SopEntryRepository sopEntryRepository;
+    private final SopContentRepository sopContentRepository;
+    private final PdfContentIndexService pdfContentIndexService;
+    private final ExtractionQuarantineService extractionQuarantineService;
+    private final IndexJobService indexJobService;
+    private final SopCatalogService sopCatalogService;
+    private final InvertedIndexService invertedIndexService;
+    private final RequestLatencyMonitor requestLatencyMonitor;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+
+    // 0 = one thread less than the number of cores
+    @Value("${sop.indexing.threads:0}")
+    private int threads;
+
+    @Value("${sop.indexing.page-size:100}")
+    private int pageSize;
+
+    @Value("${sop.indexing.target-latency-ms:300}")
+    private long targetLatencyMs;
+
+    private volatile IndexingProgress progress = IndexingProgress.builder()
+            .state(IndexingProgress.State.IDLE)
+            .build();
+
+    public IndexingProgress progress() {
+        return progress;
+    }
+
+    /**
+     * Bring the content index up to date after application startup.
+     * Runs asynchronously to avoid blocking application startup.
+     * Triggered when the application is fully ready.
+     *
+     * The index persisted by {@link IndexPersistenceService} is restored first
+     * and serves searches right away. It is then reconciled with the database:
+     * entries whose file or metadata changed since they were indexed (see
+     * {@link InvertedIndexService#fingerprintOf}) are re-indexed and entries
+     * that no longer exist are dropped. Without a persisted index every entry
+     * is indexed, as on first start.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Async
+    public void indexAllExistingEntries() {
+        log.info("Application ready. Restoring content index...");
+
+        try {
+            long start = System.currentTimeMillis();
+            int restored = invertedIndexService.restore();
+            if (restored > 0) {
+                invertedIndexService.markReady();
+                log.info("Restored {} indexed documents in {} ms", restored, System.currentTimeMillis() - start);
+            }
+
+            Set<String> liveIds = reconcile();
+
+            int removed = 0;
+            for (String id : invertedIndexService.indexedIds()) {
+                if (!liveIds.contains(id)) {
+                    invertedIndexService.remove(id);
+                    removed++;
+                }
+            }
+            if (removed > 0) {
+                log.info("Removed {} deleted entries from the content index", removed);
+            }
+            invertedIndexService.markReady();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            progress = progress.toBuilder().state(IndexingProgress.State.FAILED).finishedAt(LocalDateTime.now()).build();
+            log.warn("PDF indexing interrupted", e);
+        } catch (Exception e) {
+            progress = progress.toBuilder().state(IndexingProgress.State.FAILED).finishedAt(LocalDateTime.now()).build();
+            log.error("Error during PDF indexing", e);
+        }
+    }
+
+    /**
+     * Index every entry whose indexed state is missing or outdated.
+     *
+     * @return ids of all entries seen
+     */
+    Set<String> reconcile() throws InterruptedException {
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        AdaptiveThrottle throttle = new AdaptiveThrottle(poolSize, targetLatencyMs,
+                requestLatencyMonitor::averageMillis);
+        ExecutorService pool = Executors.newFixedThreadPool(poolSize, new CustomizableThreadFactory("PDF-Bulk-"));
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        long total = sopEntryRepository.count();
+        long startNanos = System.nanoTime();
+        progress = IndexingProgress.builder()
+                .state(IndexingProgress.State.RUNNING)
+                .total(total)
+                .concurrency(throttle.limit())
+                .startedAt(LocalDateTime.now())
+                .build();
+        log.info("Reconciling content index with {} SOP entries ({} extraction threads)", total, poolSize);
+
+        Set<String> liveIds = new HashSet<>();
+        long indexed = 0;
+        long upToDate = 0;
+        long failed = 0;
+        long quarantined = 0;
+        long hashed = 0;
+        try {
+            String afterId = "";
+            List<SopEntryRepository.FingerprintView> page;
+            while (!(page = sopEntryRepository.findFingerprintsAfter(afterId, PageRequest.ofSize(pageSize))).isEmpty()) {
+                afterId = page.get(page.size() - 1).getId();
+                hashed += backfillContentHashes(page, pool, throttle, transaction);
+
+                List<String> stale = new ArrayList<>();
+                for (SopEntryRepository.FingerprintView view : page) {
+                    liveIds.add(view.getId());
+                    Long indexedFingerprint = invertedIndexService.indexedFingerprint(view.getId());
+                    if (indexedFingerprint != null && indexedFingerprint == InvertedIndexService.fingerprintOf(
+                            view.getFilePath(), view.getFileSize(), view.getVersion(), view.getBrand(),
+                            view.getFileCategory())) {
+                        upToDate++;
+                    } else {
+                        stale.add(view.getId());
+                    }
+                }
+
+                PageResult result = indexPage(stale, pool, throttle, transaction);
+                indexed += result.indexed();
+                failed += result.failed();
+                quarantined += result.quarantined();
+
+                long processed = liveIds.size();
+                double seconds = Math.max(1e-3, (System.nanoTime() - startNanos) / 1e9);
+                double rate = processed / seconds;
+                progress = progress.toBuilder()
+                        .processed(processed)
+                        .indexed(indexed)
+                        .upToDate(upToDate)
+                        .failed(failed)
+                        .quarantined(quarantined)
+                        .concurrency(throttle.limit())
+                        .documentsPerSecond(Math.round(rate * 10) / 10.0)
+                        .etaSeconds(Math.round(Math.max(0, total - processed) / rate))
+                        .build();
+                log.info("Indexing progress: {}/{} entries ({} indexed, {} up to date, {} failed, {} quarantined), "
+                        + "{} docs/s, ETA {} s, concurrency {}",
+                        processed, total, indexed, upToDate, failed, quarantined, progress.getDocumentsPerSecond(),
+                        progress.getEtaSeconds(), progress.getConcurrency());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        progress = progress.toBuilder()
+                .state(IndexingProgress.State.COMPLETED)
+                .etaSeconds(0L)
+                .finishedAt(LocalDateTime.now())
+                .build();
+        log.info("PDF indexing complete. Indexed: {}, Up to date: {}, Failed: {}, Quarantined: {}, Hashed: {}, "
+                + "Total: {} in {} s", indexed, upToDate, failed, quarantined, hashed, liveIds.size(),
+                (System.nanoTime() - startNanos) / 1_000_000_000);
+        return liveIds;
+    }
+
+    /**
+     * Store the SHA-256 of the files of entries stored before uploads were
+     * hashed. Files are hashed on the extraction pool under the same
+     * throttle; rows changed in the meantime are left alone.
+     *
+     * @return number of entries hashed
+     */
+    private int backfillContentHashes(List<SopEntryRepository.FingerprintView> page, ExecutorService pool,
+            AdaptiveThrottle throttle, TransactionTemplate transaction) throws InterruptedException {
+        List<SopEntryRepository.FingerprintView> unhashed = page.stream()
+                .filter(view -> view.getContentHash() == null)
+                .filter(view -> view.getFilePath() != null && !view.getFilePath().isBlank())
+                .toList();
+        if (unhashed.isEmpty()) {
+            return 0;
+        }
+
+        List<CompletableFuture<String>> hashes = new ArrayList<>(unhashed.size());
+        for (SopEntryRepository.FingerprintView view : unhashed) {
+            hashes.add(CompletableFuture.supplyAsync(() -> hash(view.getFilePath(), throttle), pool));
+        }
+        List<Object[]> rows = new ArrayList<>(unhashed.size());
+        List<String> ids = new ArrayList<>(unhashed.size());
+        for (int i = 0; i < unhashed.size(); i++) {
+            SopEntryRepository.FingerprintView view = unhashed.get(i);
+            try {
+                String hash = hashes.get(i).get();
+                if (hash != null) {
+                    rows.add(new Object[] { hash, view.getId(), view.getFilePath(), view.getFileSize() });
+                    ids.add(view.getId());
+                }
+            } catch (ExecutionException e) {
+                log.warn("Failed to hash file of entry {}: {}", view.getId(), e.getCause().getMessage());
+            }
+        }
+        if (rows.isEmpty()) {
+            return 0;
+        }
+
+        int[] updated = transaction.execute(status -> {
+            sopCatalogService.refreshAfterCommit(ids);
+            return jdbcTemplate.batchUpdate(BACKFILL_HASH, rows);
+        });
+        int count = 0;
+        for (int rowCount : updated) {
+            count += rowCount > 0 ? 1 : 0;
+        }
+        return count;
+    }
+
+    private record PageResult(int indexed, int failed, int quarantined) {
+    }
+
+    /**
+     * Index the given entries: stored content directly, the rest after
+     * parallel extraction followed by one batched content update.
+     */
+    private PageResult indexPage(List<String> ids, ExecutorService pool, AdaptiveThrottle throttle,
+            TransactionTemplate transaction) throws InterruptedException {
+        if (ids.isEmpty()) {
+            return new PageResult(0, 0, 0);
+        }
+        int indexed = 0;
+        int failed = 0;
+        int quarantined = 0;
+
+        Map<String, String> stored = new HashMap<>();
+        sopContentRepository.findAllById(ids).forEach(c -> stored.put(c.getSopId(), c.getContent()));
+
+        List<SopEntry> entries = sopEntryRepository.findAllById(ids);
+        Set<String> quarantinedIds = extractionQuarantineService.quarantined(entries);
+
+        List<SopEntry> toExtract = new ArrayList<>();
+        for (SopEntry entry : entries) {
+            String content = stored.get(entry.getId());
+            if (content != null && !content.isBlank()) {
+                invertedIndexService.indexDocument(entry, content);
+                indexed++;
+            } else if (quarantinedIds.contains(entry.getId())) {
+                quarantined++;
+            } else if (indexJobService.isPending(entry.getId())) {
+                // the index job queue extracts it
+                continue;
+            } else if (entry.getFilePath() == null || entry.getFilePath().isBlank()) {
+                failed++;
+            } else {
+                toExtract.add(entry);
+            }
+        }
+
+        List<CompletableFuture<String>> extractions = new ArrayList<>(toExtract.size());
+        for (SopEntry entry : toExtract) {
+            extractions.add(CompletableFuture.supplyAsync(() -> extract(entry, throttle), pool));
+        }
+
+        List<SopEntry> extracted = new ArrayList<>();
+        List<String> contents = new ArrayList<>();
+        for (int i = 0; i < toExtract.size(); i++) {
+            SopEntry entry = toExtract.get(i);
+            try {
+                contents.add(extractions.get(i).get());
+                extracted.add(entry);
+            } catch (ExecutionException e) {
+                log.warn("Failed to extract PDF content for entry {}: {}", entry.getId(), e.getCause().getMessage());
+                failed++;
+            }
+        }
+
+        if (!extracted.isEmpty()) {
+            List<Object[]> hashRows = new ArrayList<>(extracted.size());
+            for (SopEntry entry : extracted) {
+                hashRows.add(new Object[] { entry.getContentHash(), entry.getId(), entry.getFilePath(),
+                        entry.getFileSize(), entry.getContentHash() });
+            }
+            List<SopEntry> written = transaction.execute(status -> {
+                // rows replaced or deleted since they were loaded are skipped;
+                // the upload that changed them indexes the new file itself
+                int[] updated = jdbcTemplate.batchUpdate(MARK_INDEXED, hashRows);
+                List<SopEntry> current = new ArrayList<>(extracted.size());
+                List<String> currentContents = new ArrayList<>(extracted.size());
+                List<Object[]> contentRows = new ArrayList<>(extracted.size());
+                for (int i = 0; i < extracted.size(); i++) {
+                    if (updated[i] == 0) {
+                        log.debug("Entry {} changed while it was extracted; not storing its old content",
+                                extracted.get(i).getId());
+                        continue;
+                    }
+                    current.add(extracted.get(i));
+                    currentContents.add(contents.get(i));
+                    contentRows.add(new Object[] { extracted.get(i).getId(), contents.get(i) });
+                }
+                if (!contentRows.isEmpty()) {
+                    jdbcTemplate.batchUpdate(
+                            "MERGE INTO sop_document_contents (sop_id, content) KEY (sop_id) VALUES (?, ?)", contentRows);
+                }
+                // applied to the index once the batch has committed
+                for (int i = 0; i < current.size(); i++) {
+                    invertedIndexService.indexDocument(current.get(i), currentContents.get(i));
+                }
+                sopCatalogService.refreshAfterCommit(current.stream().map(SopEntry::getId).toList());
+                return current;
+            });
+            indexed += written.size();
+        }
+        return new PageResult(indexed, failed, quarantined);
+    }
+
+    private String extract(SopEntry entry, AdaptiveThrottle throttle) {
+        try {
+            throttle.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an extraction slot", e);
+        }
+        try {
+            if (entry.getContentHash() == null) {
+                // not backfilled, e.g. the file was unreadable a moment ago
+                entry.setContentHash(hashOf(entry.getFilePath()));
+            }
+            return pdfContentIndexService.extract(entry);
+        } catch (PdfContentIndexService.ExtractionException e) {
+            throw new CompletionException(e.getMessage(), e);
+        } finally {
+            throttle.release();
+        }
+    }
+
+    private String hash(String filePath, AdaptiveThrottle throttle) {
+        try {
+            throttle.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an extraction slot", e);
+        }
+        try {
+            return hashOf(filePath);
+        } finally {
+            throttle.release();
+        }
+    }
+
+    private static String hashOf(String filePath) {
+        try {
+            return StagedUpload.sha256Of(Paths.get(filePath));
+        } catch (IOException e) {
+            log.debug("Could not hash {}: {}", filePath, e.getMessage());
+            return null;
+        }
+    }
+}
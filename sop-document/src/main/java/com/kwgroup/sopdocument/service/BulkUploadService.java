@@ -0,0 +1,512 @@
+package com.kwgroup.sopdocument.service;
+
+import com.kwgroup.sopdocument.dto.BulkUploadResponse;
+import com.kwgroup.sopdocument.dto.SopEntryRequest;
+import com.kwgroup.sopdocument.model.IndexStatus;
+import com.kwgroup.sopdocument.model.SopEntry;
+import com.kwgroup.sopdocument.repository.SopEntryRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Bulk ingestion of many SOP files of one brand and category, e.g. when a
+ * brand's library is migrated.
+ *
+ * Files (or the entries of a ZIP) are streamed one after the other into the
+ * brand's staging directory and hashed on the way (see {@link StagedUpload}).
+ * Once the batch is complete it is deduplicated (same name or same content
+ * earlier in the batch, or identical to the current version of the SOP) and
+ * the text of the remaining staged files is extracted in parallel on a
+ * CPU-sized pool. The files are then moved into place, and entries and
+ * extracted content are written with JDBC batches in a single transaction;
+ * one summary notification replaces the per-file ones. Files whose
+ * extraction failed are handed to the {@link IndexJobService} for the usual
+ * retries.
+ *
+ * The {@link DocumentLocks} of all SOPs in the batch are only held for the
+ * short last part: comparing with the current versions again (a single
+ * upload may have saved one meanwhile), moving the files and committing.
+ * Extraction, which takes minutes for a large batch, runs before, so single
+ * uploads of the same SOPs do not time out waiting for the batch.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BulkUploadService {
+
+    private static final String INSERT_ENTRY = "INSERT INTO sop_documents (id, file_name, file_path, file_size, "
+            + "content_hash, file_category, brand, uploaded_by, created_at, modified_at, version, index_status) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_ENTRY = "UPDATE sop_documents SET file_path = ?, file_size = ?, "
+            + "content_hash = ?, file_category = ?, uploaded_by = ?, modified_at = ?, version = ?, index_status = ? "
+            + "WHERE id = ?";
+    private static final String MERGE_CONTENT =
+            "MERGE INTO sop_document_contents (sop_id, content) KEY (sop_id) VALUES (?, ?)";
+
+    private final SopEntryService sopEntryService;
+    private final SopEntryRepository sopEntryRepository;
+    private final PdfContentIndexService pdfContentIndexService;
+    private final IndexJobService indexJobService;
+    private final ExtractionQuarantineService quarantineService;
+    private final SopCatalogService sopCatalogService;
+    private final InvertedIndexService invertedIndexService;
+    private final SuggestionService suggestionService;
+    private final WebViewPdfService webViewPdfService;
+    private final ThumbnailService thumbnailService;
+    private final EmailService emailService;
+    private final DocumentLocks documentLocks;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+
+    // 0 = one thread less than the number of cores
+    @Value("${sop.bulk-upload.threads:0}")
+    private int threads;
+
+    @Value("${sop.bulk-upload.max-files:1000}")
+    private int maxFiles;
+
+    @Value("${sop.upload.max-size-bytes:104857600}")
+    private long maxUploadSize;
+
+    @Value("${sop.notification.admin-email}")
+    private String adminEmail;
+
+    private TransactionTemplate transaction;
+
+    @PostConstruct
+    public void init() {
+        transaction = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * One file of a batch and what became of it.
+     */
+    private static final class Item {
+        final String fileName;
+        SopEntryService.UploadTarget target;
+        StagedUpload staged;
+        // current entry of the same name, if any
+        SopEntry existing;
+        // entry to write
+        SopEntry entry;
+        String content;
+        BulkUploadResponse.Status status;
+        String message;
+
+        Item(String fileName) {
+            this.fileName = fileName;
+        }
+
+        boolean pending() {
+            return status == null;
+        }
+
+        void fail(String reason) {
+            status = BulkUploadResponse.Status.FAILED;
+            message = reason;
+        }
+    }
+
+    /**
+     * Files of one bulk upload, staged as they arrive. Closing the batch
+     * deletes staged files that were not moved into place.
+     */
+    public final class Batch implements AutoCloseable {
+
+        private final SopEntryRequest request;
+        private final Path baseDir;
+        private final long startNanos = System.nanoTime();
+        private final List<Item> items = new ArrayList<>();
+
+        private Batch(SopEntryRequest request, Path baseDir) {
+            this.request = request;
+            this.baseDir = baseDir;
+        }
+
+        /**
+         * Stream one file to the staging directory. Invalid files (bad name,
+         * empty, too large) are recorded as failed; the stream is left open.
+         *
+         * @throws IllegalArgumentException if the batch has too many files
+         */
+        public void add(String fileName, InputStream content) throws IOException {
+            if (items.size() >= maxFiles) {
+                throw new IllegalArgumentException("Bulk upload exceeds " + maxFiles + " files");
+            }
+            Item item = new Item(fileName);
+            items.add(item);
+            try {
+                item.target = sopEntryService.resolveUploadTarget(request, fileName);
+                item.staged = StagedUpload.stage(StreamUtils.nonClosing(content), baseDir, maxUploadSize);
+                if (item.staged.getSize() == 0) {
+                    item.fail("Uploaded file is missing or empty");
+                }
+            } catch (IllegalArgumentException e) {
+                item.fail(e.getMessage());
+            }
+        }
+
+        /**
+         * Stage every file of a ZIP archive; directories and hidden entries
+         * (e.g. __MACOSX) are skipped and folder names are dropped.
+         */
+        public void addArchive(InputStream archive) throws IOException {
+            try (ZipInputStream zip = new ZipInputStream(StreamUtils.nonClosing(archive))) {
+                for (ZipEntry zipEntry = zip.getNextEntry(); zipEntry != null; zipEntry = zip.getNextEntry()) {
+                    if (zipEntry.isDirectory()) {
+                        continue;
+                    }
+                    String path = zipEntry.getName().replace('\\', '/');
+                    String name = path.substring(path.lastIndexOf('/') + 1);
+                    if (name.isEmpty() || name.startsWith(".") || path.contains("__MACOSX/")) {
+                        continue;
+                    }
+                    add(name, zip);
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            for (Item item : items) {
+                if (item.staged != null) {
+                    try {
+                        item.staged.close();
+                    } catch (IOException e) {
+                        log.warn("Failed to delete staged upload: {}", item.staged.getPath(), e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Start a bulk upload; every file gets the request's brand, category and
+     * uploader.
+     *
+     * @throws IllegalArgumentException if brand or category is missing or
+     *                                  unsupported
+     */
+    public Batch begin(SopEntryRequest request) {
+        return new Batch(request, sopEntryService.resolveBaseDir(request));
+    }
+
+    /**
+     * Save the staged files of the batch and report what happened to each.
+     */
+    public BulkUploadResponse ingest(Batch batch) {
+        List<Item> items = batch.items;
+        long stagedNanos = System.nanoTime();
+
+        deduplicate(items);
+        compareWithCurrent(items);
+        long extractStart = System.nanoTime();
+        extract(items.stream().filter(Item::pending).toList());
+        long persistStart = System.nanoTime();
+
+        // the SOPs of the batch stay locked until their rows are committed
+        List<DocumentLocks.Key> keys = items.stream()
+                .filter(item -> item.pending() || item.status == BulkUploadResponse.Status.UNCHANGED)
+                .map(item -> new DocumentLocks.Key(item.target.brand(), item.target.diskBaseName()))
+                .toList();
+        long persistEnd = documentLocks.withLocks(keys, () -> {
+            compareWithCurrent(items);
+            List<Item> toSave = items.stream().filter(Item::pending).toList();
+            place(toSave);
+            persist(toSave.stream().filter(Item::pending).toList());
+            return System.nanoTime();
+        });
+
+        BulkUploadResponse response = summarize(items, persistEnd - batch.startNanos);
+        log.info("Bulk upload of {} files ({} bytes): {} created, {} updated, {} unchanged, {} duplicates, "
+                + "{} failed; staging {} ms, extraction {} ms, database {} ms, {} files/s",
+                response.getTotal(), response.getBytes(), response.getCreated(), response.getUpdated(),
+                response.getUnchanged(), response.getDuplicates(), response.getFailed(),
+                (stagedNanos - batch.startNanos) / 1_000_000, (persistStart - extractStart) / 1_000_000,
+                (persistEnd - persistStart) / 1_000_000, response.getFilesPerSecond());
+
+        if (response.getCreated() + response.getUpdated() > 0) {
+            sendSummary(batch.request, response);
+        }
+        return response;
+    }
+
+    /**
+     * Skip files whose name or content already occurs earlier in the batch.
+     */
+    private void deduplicate(List<Item> items) {
+        Map<String, Item> byName = new HashMap<>();
+        Map<String, Item> byHash = new HashMap<>();
+        for (Item item : items) {
+            if (!item.pending()) {
+                continue;
+            }
+            Item sameName = byName.putIfAbsent(item.target.dbFileName(), item);
+            Item sameContent = sameName == null ? byHash.putIfAbsent(item.staged.getSha256(), item) : null;
+            if (sameName != null || sameContent != null) {
+                item.status = BulkUploadResponse.Status.DUPLICATE;
+                item.message = sameName != null
+                        ? "Same name as " + sameName.fileName
+                        : "Same content as " + sameContent.fileName;
+            }
+        }
+    }
+
+    /**
+     * Look up the current entry of every remaining file and skip files
+     * identical to it. Called once before extraction, to skip unchanged
+     * files, and again under the locks, as single uploads may have saved a
+     * SOP meanwhile: a file no longer unchanged is saved again (and indexed
+     * by the job queue, as it was not extracted).
+     */
+    private void compareWithCurrent(List<Item> items) {
+        Map<String, Item> byName = new HashMap<>();
+        for (Item item : items) {
+            if (item.pending() || item.status == BulkUploadResponse.Status.UNCHANGED) {
+                byName.put(item.target.dbFileName(), item);
+            }
+        }
+        if (byName.isEmpty()) {
+            return;
+        }
+
+        String brand = byName.values().iterator().next().target.brand();
+        Map<String, SopEntry> existing = new HashMap<>();
+        sopEntryRepository.findByBrandAndFileNameIn(brand, byName.keySet())
+                .forEach(entry -> existing.put(entry.getFileName(), entry));
+        for (Item item : byName.values()) {
+            item.existing = existing.get(item.target.dbFileName());
+            if (item.existing != null && SopEntryService.isCurrentContent(item.existing,
+                    item.target.targetPath(), item.staged.getSha256())) {
+                item.status = BulkUploadResponse.Status.UNCHANGED;
+                item.entry = item.existing;
+            } else if (item.status == BulkUploadResponse.Status.UNCHANGED) {
+                item.status = null;
+                item.entry = null;
+            }
+        }
+    }
+
+    /**
+     * Back up current files, move the staged ones into place and build the
+     * entries to write.
+     */
+    private void place(List<Item> items) {
+        LocalDateTime now = LocalDateTime.now();
+        for (Item item : items) {
+            SopEntryService.UploadTarget target = item.target;
+            try {
+                SopEntryService.backupExistingFile(target.targetPath(), target.diskBaseName(), target.extension());
+                item.staged.moveTo(target.targetPath());
+            } catch (IOException | RuntimeException e) {
+                log.error("Failed to move bulk upload {} into place", item.fileName, e);
+                item.fail("Failed to write uploaded file to disk");
+                continue;
+            }
+
+            SopEntry current = item.existing;
+            item.entry = SopEntry.builder()
+                    .id(current != null ? current.getId() : UUID.randomUUID().toString())
+                    .fileName(target.dbFileName())
+                    .filePath(target.targetPath().toString())
+                    .fileSize(item.staged.getSize())
+                    .contentHash(item.staged.getSha256())
+                    .fileCategory(target.category())
+                    .brand(target.brand())
+                    .uploadedBy(target.uploadedBy())
+                    .createdAt(current != null ? current.getCreatedAt() : now)
+                    .modifiedAt(now)
+                    .version(current != null ? SopEntryService.getNextVersion(current.getVersion(), null) : "v1.0")
+                    .indexStatus(item.content != null ? IndexStatus.INDEXED : IndexStatus.PENDING)
+                    .build();
+        }
+    }
+
+    /**
+     * Extract the text of the staged files in parallel. Failures leave the
+     * entry PENDING for the index job queue.
+     */
+    private void extract(List<Item> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(poolSize, items.size()),
+                new CustomizableThreadFactory("PDF-BulkUpload-"));
+        try {
+            List<CompletableFuture<String>> extractions = new ArrayList<>(items.size());
+            for (Item item : items) {
+                extractions.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return pdfContentIndexService.extractFile(item.staged.getPath());
+                    } catch (PdfContentIndexService.ExtractionException e) {
+                        throw new CompletionException(e.getMessage(), e);
+                    }
+                }, pool));
+            }
+            for (int i = 0; i < items.size(); i++) {
+                Item item = items.get(i);
+                try {
+                    item.content = extractions.get(i).get();
+                } catch (ExecutionException e) {
+                    item.message = "Text extraction failed, retried in the background: "
+                            + e.getCause().getMessage();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while extracting bulk upload; remaining files are indexed in the background");
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Write entries and extracted content in one transaction with JDBC
+     * batches.
+     */
+    private void persist(List<Item> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> updates = new ArrayList<>();
+        List<Object[]> contents = new ArrayList<>();
+        for (Item item : items) {
+            SopEntry e = item.entry;
+            if (item.existing == null) {
+                inserts.add(new Object[] { e.getId(), e.getFileName(), e.getFilePath(), e.getFileSize(),
+                        e.getContentHash(), e.getFileCategory(), e.getBrand(), e.getUploadedBy(), e.getCreatedAt(),
+                        e.getModifiedAt(), e.getVersion(), e.getIndexStatus().name() });
+            } else {
+                updates.add(new Object[] { e.getFilePath(), e.getFileSize(), e.getContentHash(),
+                        e.getFileCategory(), e.getUploadedBy(), e.getModifiedAt(), e.getVersion(),
+                        e.getIndexStatus().name(), e.getId() });
+            }
+            if (item.content != null) {
+                contents.add(new Object[] { e.getId(), item.content });
+            }
+        }
+
+        try {
+            transaction.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(INSERT_ENTRY, inserts);
+                jdbcTemplate.batchUpdate(UPDATE_ENTRY, updates);
+                jdbcTemplate.batchUpdate(MERGE_CONTENT, contents);
+                for (Item item : items) {
+                    SopEntry entry = item.entry;
+                    if (item.existing != null) {
+                        webViewPdfService.discard(item.existing.getFilePath(), item.existing.getContentHash());
+                        thumbnailService.discard(item.existing.getFilePath(), item.existing.getContentHash());
+                    }
+                    if (item.content != null) {
+                        invertedIndexService.indexDocument(entry, item.content);
+                    } else {
+                        indexJobService.enqueue(entry.getId());
+                    }
+                    webViewPdfService.generateAfterCommit(entry);
+                    thumbnailService.generateAfterCommit(entry);
+                }
+                sopCatalogService.refreshAfterCommit(items.stream().map(item -> item.entry.getId()).toList());
+                suggestionService.fileNamesChanged();
+            });
+        } catch (RuntimeException e) {
+            log.error("Failed to save bulk upload of {} files", items.size(), e);
+            items.forEach(item -> item.fail("Failed to save entry: " + e.getMessage()));
+            return;
+        }
+        for (Item item : items) {
+            item.status = item.existing == null
+                    ? BulkUploadResponse.Status.CREATED
+                    : BulkUploadResponse.Status.UPDATED;
+            if (item.existing != null && item.content != null) {
+                // staged files are extracted without quarantine bookkeeping
+                quarantineService.clear(item.entry.getId());
+            }
+        }
+    }
+
+    private static BulkUploadResponse summarize(List<Item> items, long elapsedNanos) {
+        Map<BulkUploadResponse.Status, Integer> counts = new HashMap<>();
+        List<BulkUploadResponse.FileResult> results = new ArrayList<>(items.size());
+        long bytes = 0;
+        for (Item item : items) {
+            counts.merge(item.status, 1, Integer::sum);
+            if (item.staged != null) {
+                bytes += item.staged.getSize();
+            }
+            boolean saved = item.entry != null && item.status != BulkUploadResponse.Status.FAILED;
+            results.add(BulkUploadResponse.FileResult.builder()
+                    .fileName(item.fileName)
+                    .status(item.status)
+                    .id(saved ? item.entry.getId() : null)
+                    .version(saved ? item.entry.getVersion() : null)
+                    .message(item.message)
+                    .build());
+        }
+        double seconds = Math.max(1e-3, elapsedNanos / 1e9);
+        return BulkUploadResponse.builder()
+                .total(items.size())
+                .created(counts.getOrDefault(BulkUploadResponse.Status.CREATED, 0))
+                .updated(counts.getOrDefault(BulkUploadResponse.Status.UPDATED, 0))
+                .unchanged(counts.getOrDefault(BulkUploadResponse.Status.UNCHANGED, 0))
+                .duplicates(counts.getOrDefault(BulkUploadResponse.Status.DUPLICATE, 0))
+                .failed(counts.getOrDefault(BulkUploadResponse.Status.FAILED, 0))
+                .bytes(bytes)
+                .elapsedMs(elapsedNanos / 1_000_000)
+                .filesPerSecond(Math.round(items.size() / seconds * 10) / 10.0)
+                .megabytesPerSecond(Math.round(bytes / (1024.0 * 1024.0) / seconds * 10) / 10.0)
+                .files(results)
+                .build();
+    }
+
+    private void sendSummary(SopEntryRequest request, BulkUploadResponse response) {
+        String title = "SOP Bulk Upload: " + (response.getCreated() + response.getUpdated()) + " files";
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("title", title);
+        variables.put("message", "A batch of SOPs has been uploaded.");
+
+        Map<String, String> details = new LinkedHashMap<>();
+        details.put("Brand", request.getBrand());
+        details.put("Category", request.getFileCategory());
+        details.put("Uploaded By", request.getUploadedBy() == null || request.getUploadedBy().isBlank()
+                ? "admin"
+                : request.getUploadedBy());
+        details.put("Created", String.valueOf(response.getCreated()));
+        details.put("Updated", String.valueOf(response.getUpdated()));
+        details.put("Unchanged", String.valueOf(response.getUnchanged()));
+        details.put("Duplicates", String.valueOf(response.getDuplicates()));
+        details.put("Failed", String.valueOf(response.getFailed()));
+        details.put("Time", LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
+        variables.put("details", details);
+
+        emailService.sendHtmlEmail(adminEmail, title, "email-template", variables);
+    }
+}
@@ -0,0 +1,46 @@
+package com.kwgroup.sopdocument.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Moves extracted text stored by older versions in
+ * {@code sop_documents.pdf_content} into {@code sop_document_contents} and
+ * drops the old column. Schema updates (ddl-auto) never drop columns, so
+ * without this the text would stay in every row.
+ *
+ * Runs while the context starts, after the schema update has created the
+ * new table and before anything uses either table: the catalog (see
+ * {@link SopCatalogService}) depends on this bean, and the web server, the
+ * startup indexing and scheduled jobs only start once the context is up.
+ * Safe to re-run: already moved rows are skipped.
+ */
+@Service
+@DependsOn("entityManagerFactory")
+@RequiredArgsConstructor
+@Slf4j
+public class ContentTableMigration {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void migrate() {
+        Integer legacyColumns = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS "
+                        + "WHERE TABLE_NAME = 'SOP_DOCUMENTS' AND COLUMN_NAME = 'PDF_CONTENT'",
+                Integer.class);
+        if (legacyColumns == null || legacyColumns == 0) {
+            return;
+        }
+
+        int moved = jdbcTemplate.update("INSERT INTO sop_document_contents (sop_id, content) "
+                + "SELECT d.id, d.pdf_content FROM sop_documents d WHERE d.pdf_content IS NOT NULL "
+                + "AND NOT EXISTS (SELECT 1 FROM sop_document_contents c WHERE c.sop_id = d.id)");
+        jdbcTemplate.execute("ALTER TABLE sop_documents DROP COLUMN pdf_content");
+        log.info("Moved extracted text of {} SOP entries to sop_document_contents", moved);
+    }
+}
@@ -0,0 +1,156 @@
+package com.kwgroup.sopdocument.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Serializes writes to the same SOP: uploads, updates and deletes of one
+ * (brand, disk file name) run one at a time, from the backup of the current
+ * file to the commit of the row, while writes to different SOPs run in
+ * parallel.
+ *
+ * Keys are hashed onto a fixed set of lock stripes, so there is no global
+ * lock and no per-key bookkeeping; two SOPs sharing a stripe only wait for
+ * each other. Several keys are locked in stripe order, so callers locking
+ * overlapping sets cannot deadlock. Across instances the unique constraint
+ * on (brand, file_name) of {@code sop_documents} is the backstop.
+ *
+ * Metrics: {@code sop.document.lock.wait} (time to acquire),
+ * {@code sop.document.lock.contended} (acquisitions that had to wait) and
+ * {@code sop.document.lock.waiting} (threads waiting now).
+ */
+@Service
+@Slf4j
+public class DocumentLocks {
+
+    /**
+     * The lock of a SOP could not be acquired in time.
+     */
+    public static class LockTimeoutException extends RuntimeException {
+
+        LockTimeoutException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Identity of a SOP: its brand and disk file name (without extension).
+     */
+    public record Key(String brand, String diskBaseName) {
+
+        public Key {
+            brand = brand == null ? "" : brand.toLowerCase(Locale.ROOT).trim();
+            diskBaseName = diskBaseName == null ? "" : diskBaseName;
+        }
+    }
+
+    private final ReentrantLock[] stripes;
+    private final long timeoutMillis;
+    private final Timer waitTimer;
+    private final Counter contended;
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    public DocumentLocks(@Value("${sop.locks.stripes:1024}") int stripes,
+            @Value("${sop.locks.timeout-seconds:60}") long timeoutSeconds,
+            MeterRegistry meterRegistry) {
+        // power of two, so the stripe is a mask of the hash
+        int size = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+        this.timeoutMillis = TimeUnit.SECONDS.toMillis(timeoutSeconds);
+        this.waitTimer = Timer.builder("sop.document.lock.wait")
+                .description("Time waiting for the lock of a SOP")
+                .register(meterRegistry);
+        this.contended = Counter.builder("sop.document.lock.contended")
+                .description("SOP lock acquisitions that had to wait for another write")
+                .register(meterRegistry);
+        Gauge.builder("sop.document.lock.waiting", waiting, AtomicInteger::get)
+                .description("Threads waiting for the lock of a SOP")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Run {@code action} holding the lock of one SOP.
+     *
+     * @throws LockTimeoutException if the lock is not acquired within
+     *                              {@code sop.locks.timeout-seconds}
+     */
+    public <T> T withLock(Key key, Supplier<T> action) {
+        return withLocks(List.of(key), action);
+    }
+
+    /**
+     * Run {@code action} holding the locks of all given SOPs.
+     *
+     * @throws LockTimeoutException if a lock is not acquired within
+     *                              {@code sop.locks.timeout-seconds}
+     */
+    public <T> T withLocks(Collection<Key> keys, Supplier<T> action) {
+        TreeSet<Integer> indexes = new TreeSet<>();
+        keys.forEach(key -> indexes.add(stripeOf(key)));
+
+        int[] held = new int[indexes.size()];
+        int count = 0;
+        try {
+            for (int index : indexes) {
+                acquire(stripes[index], keys);
+                held[count++] = index;
+            }
+            return action.get();
+        } finally {
+            for (int i = count - 1; i >= 0; i--) {
+                stripes[held[i]].unlock();
+            }
+        }
+    }
+
+    int stripeOf(Key key) {
+        int h = key.hashCode();
+        // spread the high bits, as HashMap does
+        return (h ^ (h >>> 16)) & (stripes.length - 1);
+    }
+
+    int stripeCount() {
+        return stripes.length;
+    }
+
+    private void acquire(ReentrantLock lock, Collection<Key> keys) {
+        if (lock.tryLock()) {
+            waitTimer.record(0, TimeUnit.NANOSECONDS);
+            return;
+        }
+        contended.increment();
+        waiting.incrementAndGet();
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = lock.tryLock(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LockTimeoutException("Interrupted while waiting for another change to the same SOP");
+        } finally {
+            waiting.decrementAndGet();
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        if (!acquired) {
+            log.warn("Gave up waiting {} ms for the lock of {}", timeoutMillis, keys);
+            throw new LockTimeoutException("Another change to the same SOP is still in progress; try again");
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.kwgroup.sopdocument.service;
+
+import com.kwgroup.sopdocument.model.ExtractionQuarantine;
+import com.kwgroup.sopdocument.model.SopEntry;
+import com.kwgroup.sopdocument.repository.ExtractionQuarantineRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks failed PDF text extractions per SOP entry. A file that times out,
+ * or fails {@code sop.extraction.max-failures} times, is quarantined: it is
+ * skipped by indexing (including the startup indexer) until a different file
+ * is uploaded for the entry. A successful extraction clears the record.
+ *
+ * Metrics: {@code sop.extraction.quarantined} (gauge),
+ * {@code sop.extraction.failures} (counter, tag {@code reason}) and
+ * {@code sop.extraction.quarantine.skipped} (counter).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ExtractionQuarantineService {
+
+    private final ExtractionQuarantineRepository quarantineRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${sop.extraction.max-failures:3}")
+    private int maxFailures;
+
+    private final AtomicLong quarantinedCount = new AtomicLong();
+    private Counter skipped;
+
+    @PostConstruct
+    public void init() {
+        quarantinedCount.set(quarantineRepository.countByQuarantinedTrue());
+        Gauge.builder("sop.extraction.quarantined", quarantinedCount, AtomicLong::get)
+                .description("SOP files excluded from text extraction")
+                .register(meterRegistry);
+        skipped = Counter.builder("sop.extraction.quarantine.skipped")
+                .description("Extractions skipped because the file is quarantined")
+                .register(meterRegistry);
+    }
+
+    public long quarantinedCount() {
+        return quarantinedCount.get();
+    }
+
+    /**
+     * Ids of the given entries whose current file is quarantined; counted as
+     * skipped extractions.
+     */
+    public Set<String> quarantined(Collection<SopEntry> entries) {
+        Set<String> result = new HashSet<>();
+        if (entries.isEmpty() || quarantinedCount.get() == 0) {
+            return result;
+        }
+        Map<String, SopEntry> byId = new HashMap<>();
+        entries.forEach(entry -> byId.put(entry.getId(), entry));
+        for (ExtractionQuarantine record : quarantineRepository.findAllById(byId.keySet())) {
+            if (record.isQuarantined() && sameFile(record, byId.get(record.getSopId()))) {
+                result.add(record.getSopId());
+            }
+        }
+        skipped.increment(result.size());
+        return result;
+    }
+
+    public boolean isQuarantined(SopEntry entry) {
+        return !quarantined(List.of(entry)).isEmpty();
+    }
+
+    /**
+     * Record a failed extraction of the entry's current file.
+     *
+     * @param timedOut whether the extraction ran past its deadline; such files
+     *                 are quarantined right away
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void recordFailure(SopEntry entry, String error, boolean timedOut) {
+        meterRegistry.counter("sop.extraction.failures", "reason", timedOut ? "timeout" : "error").increment();
+
+        ExtractionQuarantine record = quarantineRepository.findById(entry.getId())
+                .filter(existing -> sameFile(existing, entry))
+                .orElseGet(() -> ExtractionQuarantine.builder()
+                        .sopId(entry.getId())
+                        .filePath(entry.getFilePath())
+                        .contentHash(entry.getContentHash())
+                        .build());
+        boolean wasQuarantined = record.isQuarantined();
+        record.setFailures(record.getFailures() + 1);
+        record.setQuarantined(timedOut || record.getFailures() >= maxFailures);
+        record.setLastError(error == null || error.length() <= 1000 ? error : error.substring(0, 1000));
+        record.setLastFailureAt(LocalDateTime.now());
+        quarantineRepository.save(record);
+
+        if (record.isQuarantined() && !wasQuarantined) {
+            log.warn("Quarantined file of SOP {} after {} failed extraction(s): {} ({})",
+                    entry.getId(), record.getFailures(), entry.getFilePath(), error);
+        }
+        refreshCount();
+    }
+
+    /**
+     * Clear the record of an entry, e.g. after a successful extraction or
+     * when the entry is deleted.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void clear(String sopId) {
+        if (quarantineRepository.existsById(sopId)) {
+            quarantineRepository.deleteById(sopId);
+            refreshCount();
+        }
+    }
+
+    private void refreshCount() {
+        quarantinedCount.set(quarantineRepository.countByQuarantinedTrue());
+    }
+
+    private static boolean sameFile(ExtractionQuarantine record, SopEntry entry) {
+        // entries stored before uploads were hashed may not have a hash yet;
+        // a replaced file always comes with one
+        return Objects.equals(record.getFilePath(), entry.getFilePath())
+                && (record.getContentHash() == null || entry.getContentHash() == null
+                        || record.getContentHash().equals(entry.getContentHash()));
+    }
+}
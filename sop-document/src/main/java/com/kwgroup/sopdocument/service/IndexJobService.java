@@ -0,0 +1,226 @@
+package com.kwgroup.sopdocument.service;
+
+import com.kwgroup.sopdocument.model.IndexJob;
+import com.kwgroup.sopdocument.model.IndexStatus;
+import com.kwgroup.sopdocument.model.SopContent;
+import com.kwgroup.sopdocument.model.SopEntry;
+import com.kwgroup.sopdocument.repository.IndexJobRepository;
+import com.kwgroup.sopdocument.repository.SopContentRepository;
+import com.kwgroup.sopdocument.repository.SopEntryRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Durable queue of index jobs (table {@code index_jobs}).
+ *
+ * Uploads enqueue a job in their own transaction and return; the job becomes
+ * visible when that transaction commits. A small worker pool drains due jobs:
+ * it extracts the file (outside any transaction), then stores the content,
+ * sets {@link IndexStatus#INDEXED} and deletes the job in one short
+ * transaction, and finally updates the in-memory index. Jobs survive
+ * restarts. Failed jobs are retried with exponential backoff until the file
+ * is quarantined (see {@link ExtractionQuarantineService}) or
+ * {@code sop.index-jobs.max-attempts} is reached; the entry is then marked
+ * {@link IndexStatus#FAILED}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IndexJobService {
+
+    private static final int REJECTED_RETRY_SECONDS = 5;
+
+    private final IndexJobRepository indexJobRepository;
+    private final SopEntryRepository sopEntryRepository;
+    private final SopContentRepository sopContentRepository;
+    private final SopCatalogService sopCatalogService;
+    private final PdfContentIndexService pdfContentIndexService;
+    private final InvertedIndexService invertedIndexService;
+    private final ExtractionQuarantineService extractionQuarantineService;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${sop.index-jobs.threads:2}")
+    private int threads;
+
+    @Value("${sop.index-jobs.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${sop.index-jobs.retry-base-seconds:30}")
+    private long retryBaseSeconds;
+
+    @Value("${sop.index-jobs.retry-max-seconds:3600}")
+    private long retryMaxSeconds;
+
+    private ExecutorService workers;
+    private TransactionTemplate transaction;
+    // SOP ids whose job is running
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        workers = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("Index-Job-"));
+        transaction = new TransactionTemplate(transactionManager);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Queue (re)indexing of an entry's file. Joins the caller's transaction;
+     * the job is dispatched once it commits.
+     */
+    @Transactional
+    public void enqueue(String sopId) {
+        IndexJob job = indexJobRepository.findById(sopId)
+                .orElseGet(() -> IndexJob.builder().sopId(sopId).build());
+        LocalDateTime now = LocalDateTime.now();
+        job.setToken(UUID.randomUUID().toString());
+        job.setAttempts(0);
+        job.setNotBefore(now);
+        job.setEnqueuedAt(now);
+        job.setLastError(null);
+        indexJobRepository.save(job);
+        TransactionHooks.afterCommit(this::dispatchDueJobs);
+    }
+
+    /**
+     * Whether the entry has a queued or running job.
+     */
+    public boolean isPending(String sopId) {
+        return running.contains(sopId) || indexJobRepository.existsById(sopId);
+    }
+
+    /**
+     * Hand due jobs to idle workers. Runs periodically and after each enqueue.
+     */
+    @Scheduled(fixedDelayString = "${sop.index-jobs.poll-interval-ms:1000}")
+    public synchronized void dispatchDueJobs() {
+        int idle = threads - running.size();
+        if (idle <= 0) {
+            return;
+        }
+        for (IndexJob job : indexJobRepository.findByNotBeforeLessThanEqualOrderByNotBefore(
+                LocalDateTime.now(), PageRequest.ofSize(idle + running.size()))) {
+            if (idle > 0 && running.add(job.getSopId())) {
+                idle--;
+                workers.execute(() -> {
+                    try {
+                        run(job);
+                    } finally {
+                        running.remove(job.getSopId());
+                    }
+                });
+            }
+        }
+    }
+
+    private void run(IndexJob job) {
+        Optional<SopEntry> found = sopEntryRepository.findById(job.getSopId());
+        if (found.isEmpty()) {
+            // entry deleted meanwhile
+            indexJobRepository.deleteById(job.getSopId());
+            return;
+        }
+        SopEntry entry = found.get();
+        if (extractionQuarantineService.isQuarantined(entry)) {
+            giveUp(job, "File is quarantined after failed extractions");
+            return;
+        }
+
+        String content;
+        try {
+            content = pdfContentIndexService.extractPdfContent(entry);
+        } catch (PdfContentIndexService.ExtractionException e) {
+            if (e.getReason() == PdfContentIndexService.ExtractionException.Reason.REJECTED) {
+                retryLater(job, e.getMessage(), REJECTED_RETRY_SECONDS, false);
+            } else if (extractionQuarantineService.isQuarantined(entry)) {
+                giveUp(job, e.getMessage());
+            } else {
+                retryWithBackoff(job, e.getMessage());
+            }
+            return;
+        } catch (RuntimeException e) {
+            log.error("Index job for SOP {} failed", job.getSopId(), e);
+            retryWithBackoff(job, String.valueOf(e.getMessage()));
+            return;
+        }
+
+        try {
+            boolean current = Boolean.TRUE.equals(transaction.execute(status -> {
+                if (indexJobRepository.deleteIfCurrent(job.getSopId(), job.getToken()) == 0) {
+                    // enqueued again meanwhile (e.g. file replaced): the newer run stores its result
+                    return false;
+                }
+                sopContentRepository.save(new SopContent(entry.getId(), content));
+                sopEntryRepository.updateIndexStatus(entry.getId(), IndexStatus.INDEXED);
+                sopCatalogService.refreshAfterCommit(entry.getId());
+                // applied to the index once the transaction has committed
+                invertedIndexService.indexDocument(entry, content);
+                return true;
+            }));
+            if (current) {
+                log.info("Indexed PDF content for SOP: {} ({} characters)", entry.getFileName(), content.length());
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to store indexed content for SOP {}", job.getSopId(), e);
+            retryWithBackoff(job, String.valueOf(e.getMessage()));
+        }
+    }
+
+    private void retryWithBackoff(IndexJob job, String error) {
+        if (job.getAttempts() + 1 >= maxAttempts) {
+            giveUp(job, error);
+            return;
+        }
+        long delay = Math.min(retryMaxSeconds, retryBaseSeconds << Math.min(job.getAttempts(), 20));
+        retryLater(job, error, delay, true);
+    }
+
+    private void retryLater(IndexJob job, String error, long delaySeconds, boolean countAttempt) {
+        transaction.executeWithoutResult(status -> indexJobRepository.findById(job.getSopId())
+                .filter(current -> current.getToken().equals(job.getToken()))
+                .ifPresent(current -> {
+                    if (countAttempt) {
+                        current.setAttempts(current.getAttempts() + 1);
+                    }
+                    current.setNotBefore(LocalDateTime.now().plusSeconds(delaySeconds));
+                    current.setLastError(truncate(error));
+                    log.info("Index job for SOP {} failed (attempt {}), retrying in {} s: {}",
+                            current.getSopId(), current.getAttempts(), delaySeconds, error);
+                }));
+    }
+
+    private void giveUp(IndexJob job, String error) {
+        transaction.executeWithoutResult(status -> {
+            if (indexJobRepository.deleteIfCurrent(job.getSopId(), job.getToken()) > 0) {
+                sopEntryRepository.updateIndexStatus(job.getSopId(), IndexStatus.FAILED);
+                sopCatalogService.refreshAfterCommit(job.getSopId());
+                log.warn("Gave up indexing SOP {}: {}", job.getSopId(), error);
+            }
+        });
+    }
+
+    private static String truncate(String error) {
+        return error == null || error.length() <= 1000 ? error : error.substring(0, 1000);
+    }
+}
@@ -0,0 +1,151 @@
+package com.kwgroup.sopdocument.service;
+
+import com.kwgroup.sopdocument.search.IndexChange;
+import com.kwgroup.sopdocument.search.SegmentStore;
+import com.kwgroup.sopdocument.search.StoredDocument;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persists the content index as immutable segment files under
+ * {@code sop.index.path} so it can be restored on startup instead of being
+ * rebuilt from the database.
+ *
+ * Index changes are queued and written as one segment per flush. Whenever
+ * {@code sop.index.merge-factor} adjacent segments of similar size exist
+ * they are merged into one (see {@link SegmentStore#mergeTier(int)}), so a
+ * flush only rewrites small segments; the whole index is compacted into a
+ * single segment only once no changes have come in for
+ * {@code sop.index.compact-after-idle-ms}, or by {@link #compact()}.
+ * Changes still queued when the process dies are recovered by the startup
+ * reconciliation in {@link PdfContentIndexService}.
+ */
+@Service
+@Slf4j
+public class IndexPersistenceService {
+
+    private final SegmentStore store;
+    private final int mergeFactor;
+    private final long compactAfterIdleNanos;
+    private final Queue<IndexChange> pending = new ConcurrentLinkedQueue<>();
+    // changes of a failed flush, written first on the next one
+    private final List<IndexChange> unwritten = new ArrayList<>();
+    private long lastChangeAt = System.nanoTime();
+    // whether segments were written since the last compaction
+    private boolean uncompacted = true;
+
+    public IndexPersistenceService(@Value("${sop.index.path:./data/index}") String indexPath,
+            @Value("${sop.index.merge-factor:8}") int mergeFactor,
+            @Value("${sop.index.compact-after-idle-ms:300000}") long compactAfterIdleMs) {
+        this.store = new SegmentStore(Paths.get(indexPath).normalize());
+        this.mergeFactor = mergeFactor;
+        this.compactAfterIdleNanos = TimeUnit.MILLISECONDS.toNanos(compactAfterIdleMs);
+    }
+
+    /**
+     * Read the stored index. A damaged store is discarded so the caller can
+     * rebuild it from scratch.
+     *
+     * @return stored documents by SOP id, empty if nothing usable is stored
+     */
+    public Map<String, StoredDocument> load() {
+        try {
+            Map<String, StoredDocument> documents = store.load();
+            log.info("Loaded {} documents from {} index segments", documents.size(), store.segmentCount());
+            return documents;
+        } catch (IOException e) {
+            log.warn("Stored content index is unreadable, it will be rebuilt: {}", e.getMessage());
+            try {
+                store.clear();
+            } catch (IOException clearFailure) {
+                log.error("Failed to clear stored content index", clearFailure);
+            }
+            return Map.of();
+        }
+    }
+
+    /**
+     * Queue a change for the next flush.
+     */
+    public void record(IndexChange change) {
+        pending.add(change);
+    }
+
+    /**
+     * Write queued changes as a new segment, then merge segments of the same
+     * size tier, or compact everything once the index has been idle.
+     */
+    @Scheduled(fixedDelayString = "${sop.index.flush-interval-ms:2000}")
+    public synchronized void flush() {
+        List<IndexChange> batch = new ArrayList<>(unwritten);
+        IndexChange change;
+        while ((change = pending.poll()) != null) {
+            batch.add(change);
+        }
+        try {
+            if (!batch.isEmpty()) {
+                store.append(batch);
+                lastChangeAt = System.nanoTime();
+                uncompacted = true;
+                log.debug("Flushed {} index changes", batch.size());
+            }
+            unwritten.clear();
+        } catch (IOException e) {
+            // keep the batch (in order) for the next attempt
+            unwritten.clear();
+            unwritten.addAll(batch);
+            log.error("Failed to persist {} content index changes", batch.size(), e);
+            return;
+        }
+
+        if (batch.isEmpty() && uncompacted && System.nanoTime() - lastChangeAt >= compactAfterIdleNanos) {
+            compact();
+            return;
+        }
+        try {
+            int merged;
+            while ((merged = store.mergeTier(mergeFactor)) > 0) {
+                log.debug("Merged {} index segments", merged);
+            }
+        } catch (IOException e) {
+            log.error("Failed to merge content index segments", e);
+        }
+    }
+
+    /**
+     * Merge all segments into one, so restoring the index reads every
+     * document once.
+     */
+    public synchronized void compact() {
+        try {
+            long start = System.currentTimeMillis();
+            int documents = store.merge();
+            uncompacted = false;
+            if (documents >= 0) {
+                log.info("Compacted index segments ({} documents) in {} ms",
+                        documents, System.currentTimeMillis() - start);
+            }
+        } catch (IOException e) {
+            // retry after another idle period
+            lastChangeAt = System.nanoTime();
+            log.error("Failed to compact content index segments", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
@@ -0,0 +1,240 @@
+package com.kwgroup.sopdocument.service;
+
+import com.kwgroup.sopdocument.model.SopEntry;
+import com.kwgroup.sopdocument.search.DocumentInfo;
+import com.kwgroup.sopdocument.search.IndexChange;
+import com.kwgroup.sopdocument.search.IndexedDocument;
+import com.kwgroup.sopdocument.search.InvertedIndex;
+import com.kwgroup.sopdocument.search.PrefixDictionary;
+import com.kwgroup.sopdocument.search.SearchHit;
+import com.kwgroup.sopdocument.search.StoredDocument;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the in-memory inverted index used for PDF content search.
+ *
+ * The index is filled by {@link PdfContentIndexService} as content is
+ * extracted. Until the startup pass has finished, {@link #search} returns
+ * empty so callers can fall back to the database scan.
+ *
+ * Changes made inside a transaction are applied to the index only after the
+ * transaction commits, so searches never see uncommitted entries. Each change
+ * evicts just the cached searches it can affect (see {@link SearchResultCache})
+ * and is queued for persistence (see {@link IndexPersistenceService}).
+ *
+ * Every indexed document carries a fingerprint of the entry it was built
+ * from, so a restored index can be reconciled with the database.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class InvertedIndexService {
+
+    // how long term suggestions may lag index changes
+    private static final long SUGGEST_REFRESH_MILLIS = 1000;
+
+    private final SearchResultCache searchResultCache;
+    private final IndexPersistenceService indexPersistenceService;
+
+    private final InvertedIndex index = new InvertedIndex(SUGGEST_REFRESH_MILLIS);
+    private final Map<String, Long> fingerprints = new ConcurrentHashMap<>();
+
+    private volatile boolean ready;
+
+    /**
+     * Add or replace the indexed content of a SOP entry.
+     *
+     * @param entry   the SOP entry
+     * @param content extracted PDF text
+     */
+    public void indexDocument(SopEntry entry, String content) {
+        if (entry == null || entry.getId() == null) {
+            return;
+        }
+        IndexedDocument document = IndexedDocument.of(entry.getId(), normalize(entry.getBrand()),
+                normalize(entry.getFileCategory()), content);
+        long fingerprint = fingerprintOf(entry);
+        TransactionHooks.afterCommit(() -> {
+            Optional<DocumentInfo> previous = index.docInfo(document.getSopId());
+            index.add(document);
+            fingerprints.put(document.getSopId(), fingerprint);
+            indexPersistenceService.record(new IndexChange.Put(document, fingerprint));
+            invalidate(previous, document.getTerms().keySet(), document.getBrand(), document.getCategory());
+            log.debug("Indexed {} terms ({} tokens) for SOP: {}",
+                    document.getTerms().size(), document.getLength(), document.getSopId());
+        });
+    }
+
+    /**
+     * Refresh brand / category of an already indexed entry.
+     */
+    public void updateMetadata(SopEntry entry) {
+        String id = entry.getId();
+        String brand = normalize(entry.getBrand());
+        String category = normalize(entry.getFileCategory());
+        long fingerprint = fingerprintOf(entry);
+        TransactionHooks.afterCommit(() -> {
+            Optional<DocumentInfo> previous = index.docInfo(id);
+            if (previous.isEmpty()) {
+                return;
+            }
+            index.updateMetadata(id, brand, category);
+            fingerprints.put(id, fingerprint);
+            indexPersistenceService.record(new IndexChange.Metadata(id, brand, category, fingerprint));
+            invalidate(previous, Set.of(), brand, category);
+        });
+    }
+
+    public void remove(String id) {
+        TransactionHooks.afterCommit(() -> {
+            Optional<DocumentInfo> previous = index.docInfo(id);
+            if (index.remove(id)) {
+                fingerprints.remove(id);
+                indexPersistenceService.record(new IndexChange.Delete(id));
+                invalidate(previous, Set.of(), null, null);
+                log.debug("Removed SOP {} from content index", id);
+            }
+        });
+    }
+
+    /**
+     * Fill the (still empty) index from the persisted segments.
+     *
+     * @return number of restored documents
+     */
+    public int restore() {
+        Map<String, StoredDocument> stored = indexPersistenceService.load();
+        for (StoredDocument document : stored.values()) {
+            index.add(document.document());
+            fingerprints.put(document.document().getSopId(), document.fingerprint());
+        }
+        return stored.size();
+    }
+
+    public boolean isIndexed(String id) {
+        return index.contains(id);
+    }
+
+    /**
+     * @return fingerprint the entry was indexed with, or null if it is not indexed
+     */
+    public Long indexedFingerprint(String id) {
+        return fingerprints.get(id);
+    }
+
+    /**
+     * @return ids of all indexed entries
+     */
+    public Set<String> indexedIds() {
+        return Set.copyOf(fingerprints.keySet());
+    }
+
+    /**
+     * Fingerprint of the entry state an indexed document reflects: its file
+     * (path, size, version) and metadata. Only explicitly assigned fields are
+     * used; {@code modifiedAt} is refreshed by {@code @PreUpdate} on every
+     * flush and would never match.
+     */
+    public static long fingerprintOf(SopEntry entry) {
+        return fingerprintOf(entry.getFilePath(), entry.getFileSize(), entry.getVersion(),
+                entry.getBrand(), entry.getFileCategory());
+    }
+
+    public static long fingerprintOf(String filePath, long fileSize, String version, String brand, String category) {
+        // 64-bit FNV-1a
+        long hash = 0xcbf29ce484222325L;
+        String key = filePath + '\0' + fileSize + '\0' + version + '\0' + brand + '\0' + category;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Mark the index as complete (all existing entries loaded). Searches
+     * cached before then are dropped, so they are answered from the index.
+     */
+    public void markReady() {
+        ready = true;
+        searchResultCache.clear();
+        log.info("Content index ready with {} documents", index.size());
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Search the index.
+     *
+     * @param query    the search query
+     * @param brand    optional brand filter
+     * @param category optional category filter
+     * @return matching hits with page numbers, or empty if the index is not ready yet
+     */
+    public Optional<List<SearchHit>> search(String query, String brand, String category) {
+        if (!ready) {
+            return Optional.empty();
+        }
+        return Optional.of(index.search(query, normalize(brand), normalize(category)));
+    }
+
+    /**
+     * Rank entries by BM25 relevance.
+     *
+     * @param query    the search query
+     * @param brand    optional brand filter
+     * @param category optional category filter
+     * @param limit    maximum number of hits
+     * @return top hits, or empty if the index is not ready yet
+     */
+    public Optional<List<SearchHit>> rank(String query, String brand, String category, int limit) {
+        if (!ready) {
+            return Optional.empty();
+        }
+        return Optional.of(index.rank(query, normalize(brand), normalize(category), limit));
+    }
+
+    /**
+     * Complete a term prefix from the indexed content.
+     *
+     * @param prefix the prefix typed so far
+     * @param limit  maximum number of suggestions
+     * @return indexed terms starting with the prefix, most frequent first
+     */
+    public List<PrefixDictionary.Suggestion> suggestTerms(String prefix, int limit) {
+        String normalized = normalize(prefix);
+        return normalized == null ? List.of() : index.suggest(normalized, limit);
+    }
+
+    /**
+     * Evict cached searches touched by a change from {@code previous} to the
+     * new terms / brand / category.
+     */
+    private void invalidate(Optional<DocumentInfo> previous, Set<String> newTerms, String brand, String category) {
+        Set<String> terms = new HashSet<>(newTerms);
+        Set<String> brands = SearchResultCache.setOf(brand);
+        Set<String> categories = SearchResultCache.setOf(category);
+        previous.ifPresent(info -> {
+            terms.addAll(info.terms());
+            brands.addAll(SearchResultCache.setOf(info.brand()));
+            categories.addAll(SearchResultCache.setOf(info.category()));
+        });
+        searchResultCache.invalidate(terms, brands, categories);
+    }
+
+    private static String normalize(String value) {
+        return (value == null || value.isBlank()) ? null : value.trim().toLowerCase(Locale.ROOT);
+    }
+}
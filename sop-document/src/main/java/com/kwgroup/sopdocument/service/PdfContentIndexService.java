@@ -1,164 +1,348 @@
 package com.kwgroup.sopdocument.service;
 
 import com.kwgroup.sopdocument.model.SopEntry;
-import com.kwgroup.sopdocument.repository.SopEntryRepository;
+import com.kwgroup.sopdocument.search.IndexedDocument;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.text.PDFTextStripper;
-import org.springframework.boot.context.event.ApplicationReadyEvent;
-import org.springframework.cache.annotation.Cacheable;
-import org.springframework.context.event.EventListener;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Service for extracting text content from PDF files and indexing them.
- * Uses Spring Cache to avoid re-extracting content unnecessarily.
+ * Service for extracting text content from PDF files for indexing (see
+ * {@link IndexJobService} and {@link BulkIndexService}).
+ * Pages are separated by {@link IndexedDocument#PAGE_SEPARATOR} in the
+ * extracted text so search hits can be mapped back to page numbers.
+ * Extracted text is cached by the SHA-256 of the file (see
+ * {@link SopEntry#getContentHash()}), so identical files are extracted once
+ * and a replaced file can never be served stale content.
+ *
+ * Extraction runs on a dedicated bounded pool ("PDF-Extract-") with a
+ * per-document deadline, so a pathological PDF cannot hold a request or
+ * indexing thread indefinitely; see {@link ExtractionQuarantineService} for
+ * files that keep failing.
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class PdfContentIndexService {
 
-    private final SopEntryRepository sopEntryRepository;
+    private final CacheManager cacheManager;
+    private final ExtractionQuarantineService extractionQuarantineService;
+
+    // per document: half for PDFBox buffers, half for the extracted text
+    @Value("${sop.extraction.memory-budget-mb:64}")
+    private long memoryBudgetMb;
+
+    @Value("${sop.extraction.pages-per-chunk:20}")
+    private int pagesPerChunk;
+
+    @Value("${sop.extraction.timeout-seconds:120}")
+    private long timeoutSeconds;
+
+    // 0 = one thread less than the number of cores
+    @Value("${sop.extraction.threads:0}")
+    private int threads;
+
+    @Value("${sop.extraction.queue-capacity:100}")
+    private int queueCapacity;
+
+    // markers of a task in startedAt, beside its start time
+    private static final long NOT_STARTED = Long.MIN_VALUE;
+    private static final long ABANDONED = Long.MIN_VALUE + 1;
+
+    private ExecutorService extractionPool;
+
+    // how long a task can wait in a full queue if every task ahead of it
+    // runs to its deadline; past that the pool is stuck and the task given up
+    private long maxQueueWaitNanos;
+
+    @PostConstruct
+    public void init() {
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        maxQueueWaitNanos = TimeUnit.SECONDS.toNanos(timeoutSeconds) * (queueCapacity / poolSize + 1);
+        extractionPool = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("PDF-Extract-"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        extractionPool.shutdownNow();
+    }
 
     /**
-     * Extract text content from a PDF file using Apache PDFBox.
-     * Results are cached to avoid re-extraction.
-     *
-     * @param filePath path to the PDF file
-     * @return extracted text content, or empty string if extraction fails
+     * Why an extraction produced no text.
      */
-    @Cacheable(value = "pdfContent", key = "#filePath")
-    public String extractPdfContent(String filePath) {
-        if (filePath == null || filePath.isBlank()) {
-            log.warn("Empty file path provided for PDF extraction");
-            return "";
+    public static class ExtractionException extends Exception {
+
+        public enum Reason {
+            FAILED, TIMED_OUT, REJECTED
         }
 
-        Path path = Paths.get(filePath).normalize();
+        private final Reason reason;
 
-        if (!Files.exists(path)) {
-            log.warn("PDF file does not exist: {}", path);
-            return "";
+        ExtractionException(String message, Reason reason, Throwable cause) {
+            super(message, cause);
+            this.reason = reason;
         }
 
-        try {
-            File pdfFile = path.toFile();
-            log.info("Extracting text from PDF: {}", path);
-
-            try (PDDocument document = Loader.loadPDF(pdfFile)) {
-                PDFTextStripper stripper = new PDFTextStripper();
-                String text = stripper.getText(document);
+        public Reason getReason() {
+            return reason;
+        }
+    }
 
-                log.info("Successfully extracted {} characters from PDF: {}",
-                        text != null ? text.length() : 0, path.getFileName());
+    /**
+     * Extract the text of the entry's file, see {@link #extract(SopEntry)}.
+     * Results are cached by content hash to avoid re-extraction; without a
+     * hash the file is always extracted.
+     *
+     * @param entry SOP entry whose file to extract
+     * @return extracted text content
+     */
+    public String extractPdfContent(SopEntry entry) throws ExtractionException {
+        Cache cache = cacheManager.getCache("pdfContent");
+        if (entry.getContentHash() == null || cache == null) {
+            return extract(entry);
+        }
+        try {
+            return cache.get(entry.getContentHash(), () -> extract(entry));
+        } catch (Cache.ValueRetrievalException e) {
+            if (e.getCause() instanceof ExtractionException extractionException) {
+                throw extractionException;
+            }
+            throw e;
+        }
+    }
 
-                return text != null ? text.trim() : "";
+    /**
+     * Extract the text of the entry's file on the extraction pool, giving up
+     * (and interrupting the worker) after {@code sop.extraction.timeout-seconds}
+     * of extraction; time spent waiting in the queue does not count.
+     * Failures and timeouts are recorded with the
+     * {@link ExtractionQuarantineService}; callers should skip quarantined
+     * entries. Bypasses the cache; used by bulk indexing, whose results are
+     * stored right away and never read again.
+     *
+     * @param entry SOP entry whose file to extract
+     * @return extracted text content
+     */
+    public String extract(SopEntry entry) throws ExtractionException {
+        try {
+            String text = extractWithDeadline(entry.getFilePath());
+            extractionQuarantineService.clear(entry.getId());
+            return text;
+        } catch (ExtractionException e) {
+            if (e.getReason() != ExtractionException.Reason.REJECTED) {
+                extractionQuarantineService.recordFailure(entry, e.getMessage(),
+                        e.getReason() == ExtractionException.Reason.TIMED_OUT);
             }
-        } catch (IOException e) {
-            // Log warning for corrupt/unreadable PDFs without stack trace to avoid noise
-            log.warn("Could not extract text from PDF (likely corrupt or password protected): {} - {}", path.getFileName(), e.getMessage());
-            return "";
-        } catch (Exception e) {
-            log.error("Unexpected error while extracting PDF text: {}", path, e);
-            return "";
+            throw e;
         }
     }
 
     /**
-     * Index (extract and store) PDF content for a single SOP entry.
+     * Extract the text of a file that is not (yet) the file of an entry,
+     * e.g. a staged upload, like {@link #extract(SopEntry)} but without
+     * recording failures: callers hand those to the {@link IndexJobService},
+     * which extracts the entry's file again and records them.
      *
-     * @param entry the SOP entry to index
-     * @return true if indexing was successful, false otherwise
+     * @return extracted text content
      */
-    @Transactional
-    public boolean indexSopEntry(SopEntry entry) {
-        if (entry == null || entry.getFilePath() == null) {
-            return false;
+    public String extractFile(Path path) throws ExtractionException {
+        return extractWithDeadline(path.toString());
+    }
+
+    private String extractWithDeadline(String filePath) throws ExtractionException {
+        if (filePath == null || filePath.isBlank()) {
+            throw new ExtractionException("Empty file path provided for PDF extraction",
+                    ExtractionException.Reason.FAILED, null);
+        }
+
+        Path path = Paths.get(filePath).normalize();
+
+        if (!Files.exists(path)) {
+            throw new ExtractionException("PDF file does not exist: " + path, ExtractionException.Reason.FAILED, null);
         }
 
+        // the deadline starts when a worker picks the task up, not when it is
+        // queued: a busy pool must not time out (and quarantine) healthy files
+        AtomicLong startedAt = new AtomicLong(NOT_STARTED);
+        Future<String> future;
+        try {
+            future = extractionPool.submit(() -> {
+                if (!startedAt.compareAndSet(NOT_STARTED, System.nanoTime())) {
+                    return null; // abandoned while queued
+                }
+                return extractBounded(path);
+            });
+        } catch (RejectedExecutionException e) {
+            throw new ExtractionException("Extraction queue is full", ExtractionException.Reason.REJECTED, e);
+        }
+        long timeoutNanos = TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        long queueDeadline = System.nanoTime() + maxQueueWaitNanos;
         try {
-            String content = extractPdfContent(entry.getFilePath());
-            entry.setPdfContent(content);
-            sopEntryRepository.save(entry);
-            log.info("Indexed PDF content for SOP: {} ({} characters)",
-                    entry.getFileName(), content.length());
-            return true;
-        } catch (Exception e) {
-            log.error("Failed to index SOP entry: {}", entry.getId(), e);
-            return false;
+            while (true) {
+                long started = startedAt.get();
+                long deadline = started == NOT_STARTED ? Math.min(queueDeadline, System.nanoTime() + timeoutNanos)
+                        : started + timeoutNanos;
+                try {
+                    return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    if (startedAt.get() == NOT_STARTED && System.nanoTime() - queueDeadline >= 0
+                            && startedAt.compareAndSet(NOT_STARTED, ABANDONED)) {
+                        future.cancel(false);
+                        log.warn("Extraction of PDF {} still queued after {} s, giving up", path.getFileName(),
+                                TimeUnit.NANOSECONDS.toSeconds(maxQueueWaitNanos));
+                        throw new ExtractionException("Extraction queue is backed up",
+                                ExtractionException.Reason.REJECTED, e);
+                    }
+                    started = startedAt.get();
+                    if (started != NOT_STARTED && started != ABANDONED
+                            && System.nanoTime() - (started + timeoutNanos) >= 0) {
+                        future.cancel(true);
+                        log.warn("Extraction of PDF {} exceeded {} s, cancelled", path.getFileName(), timeoutSeconds);
+                        throw new ExtractionException("Extraction exceeded " + timeoutSeconds + " s",
+                                ExtractionException.Reason.TIMED_OUT, e);
+                    }
+                    // still queued, or started while we waited: wait again
+                }
+            }
+        } catch (ExecutionException e) {
+            // Log warning for corrupt/unreadable PDFs without stack trace to avoid noise
+            log.warn("Could not extract text from PDF (likely corrupt or password protected): {} - {}",
+                    path.getFileName(), e.getCause().getMessage());
+            throw new ExtractionException(String.valueOf(e.getCause().getMessage()),
+                    ExtractionException.Reason.FAILED, e.getCause());
+        } catch (InterruptedException e) {
+            startedAt.compareAndSet(NOT_STARTED, ABANDONED);
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ExtractionException("Interrupted while waiting for extraction",
+                    ExtractionException.Reason.REJECTED, e);
+        }
+    }
+
+    private String extractBounded(Path path) throws IOException {
+        log.info("Extracting text from PDF: {}", path);
+        BoundedTextWriter text = new BoundedTextWriter(maxTextChars());
+        int pages = extractText(path, text);
+        if (text.isFull()) {
+            log.warn("Text of PDF {} exceeds the extraction budget; indexed the first {} characters",
+                    path.getFileName(), text.length());
         }
+
+        log.info("Successfully extracted {} characters ({} pages) from PDF: {}",
+                text.length(), pages, path.getFileName());
+
+        // not trim(): a page without text (e.g. a scanned cover) is a leading
+        // separator, and page numbers of matches are counted from it
+        return text.toString().stripTrailing();
     }
 
     /**
-     * Index all existing SOP entries after application startup.
-     * Runs asynchronously to avoid blocking application startup.
-     * Triggered when the application is fully ready.
+     * Stream the text of a PDF into {@code out}, {@link #pagesPerChunk} pages at
+     * a time, ending each page with {@link IndexedDocument#PAGE_SEPARATOR}.
+     * PDFBox keeps at most half of the memory budget of decoded streams in
+     * memory and spills the rest to temp files; page resources (fonts, images)
+     * are not cached across pages. If {@code out} is a
+     * {@link BoundedTextWriter}, extraction stops once it is full. Stops with
+     * an {@link InterruptedIOException} when the thread is interrupted.
+     *
+     * @return number of pages in the document
      */
-    @EventListener(ApplicationReadyEvent.class)
-    @Async
-    public void indexAllExistingEntries() {
-        log.info("Application ready. Starting background indexing of all PDF entries...");
+    public int extractText(Path path, Writer out) throws IOException {
+        MemoryUsageSetting memory = MemoryUsageSetting.setupMixed(memoryBudgetMb * 1024L * 1024L / 2);
+        try (PDDocument document = Loader.loadPDF(path.toFile(), memory.streamCache)) {
+            document.setResourceCache(null);
+            PDFTextStripper stripper = new PDFTextStripper() {
+                // last page of the current chunk whose separator was written
+                private int ended;
 
-        try {
-            // Small delay to let application fully initialize
-            Thread.sleep(5000);
-
-            List<SopEntry> allEntries = sopEntryRepository.findAll();
-            int total = allEntries.size();
-            int indexed = 0;
-            int skipped = 0;
+                @Override
+                protected void startDocument(PDDocument pdf) throws IOException {
+                    ended = getStartPage() - 1;
+                    super.startDocument(pdf);
+                }
 
-            log.info("Found {} SOP entries to index", total);
+                @Override
+                public void processPage(PDPage page) throws IOException {
+                    // cancellation point for extractions past their deadline
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedIOException("PDF extraction cancelled");
+                    }
+                    int current = getCurrentPageNo();
+                    if (current >= getStartPage() && current <= getEndPage()) {
+                        endSkippedPages(current - 1);
+                        super.processPage(page);
+                        ended = current;
+                    } else {
+                        super.processPage(page);
+                    }
+                }
 
-            for (SopEntry entry : allEntries) {
-                // Skip if already indexed
-                if (entry.getPdfContent() != null && !entry.getPdfContent().isBlank()) {
-                    skipped++;
-                    continue;
+                @Override
+                protected void endDocument(PDDocument pdf) throws IOException {
+                    endSkippedPages(Math.min(getEndPage(), pdf.getNumberOfPages()));
+                    super.endDocument(pdf);
                 }
 
-                if (indexSopEntry(entry)) {
-                    indexed++;
+                /**
+                 * PDFBox skips pages without a content stream entirely; they
+                 * still need their separator to keep page numbers right.
+                 */
+                private void endSkippedPages(int upTo) throws IOException {
+                    while (ended < upTo) {
+                        writePageEnd();
+                        ended++;
+                    }
                 }
+            };
+            stripper.setPageEnd(String.valueOf(IndexedDocument.PAGE_SEPARATOR));
 
-                // Small delay between entries to avoid overwhelming the system
-                if (indexed % 10 == 0) {
-                    Thread.sleep(100);
+            int pages = document.getNumberOfPages();
+            for (int start = 1; start <= pages; start += pagesPerChunk) {
+                if (out instanceof BoundedTextWriter bounded && bounded.isFull()) {
+                    break;
                 }
+                stripper.setStartPage(start);
+                stripper.setEndPage(Math.min(pages, start + pagesPerChunk - 1));
+                stripper.writeText(document, out);
             }
-
-            log.info("PDF indexing complete. Indexed: {}, Skipped: {}, Total: {}",
-                    indexed, skipped, total);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            log.warn("PDF indexing interrupted", e);
-        } catch (Exception e) {
-            log.error("Error during PDF indexing", e);
+            return pages;
         }
     }
 
     /**
-     * Re-index a specific SOP entry (useful after updates).
-     *
-     * @param id the ID of the SOP entry to re-index
-     * @return true if re-indexing was successful, false otherwise
+     * Characters of text kept per document: the other half of the memory
+     * budget, which holds the text about twice (buffer and final string) at
+     * up to two bytes per character.
      */
-    @Transactional
-    public boolean reindexEntry(String id) {
-        return sopEntryRepository.findById(id)
-                .map(this::indexSopEntry)
-                .orElse(false);
+    private int maxTextChars() {
+        return (int) Math.min(Integer.MAX_VALUE - 16, memoryBudgetMb * 1024L * 1024L / 2 / 4);
     }
 }
@@ -0,0 +1,183 @@
+package com.kwgroup.sopdocument.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Download path for stored PDFs, kept off the Java heap.
+ *
+ * File metadata comes from a single stat, cached per (path, entry
+ * modifiedAt) so the same few SOPs opened at shift start are not stat'ed on
+ * every request; any save or update changes modifiedAt and so the key. Bytes
+ * go out through Tomcat's sendfile when the connector offers it (the file is
+ * handed to the kernel once the request returns), otherwise through
+ * {@link FileChannel#transferTo}, neither of which copies through heap
+ * buffers per request.
+ */
+@Service
+@Slf4j
+public class PdfFileService {
+
+    // request attributes of Tomcat's sendfile support (see its DefaultServlet)
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final Cache<Key, PdfFile> openFiles;
+    private final long sendfileMinBytes;
+
+    public PdfFileService(@Value("${sop.serving.file-cache-size:1000}") int fileCacheSize,
+            @Value("${sop.serving.file-cache-ttl-seconds:30}") long fileCacheTtlSeconds,
+            @Value("${sop.serving.sendfile-min-bytes:49152}") long sendfileMinBytes) {
+        this.openFiles = Caffeine.newBuilder()
+                .maximumSize(fileCacheSize)
+                .expireAfterWrite(Duration.ofSeconds(fileCacheTtlSeconds))
+                .build();
+        this.sendfileMinBytes = sendfileMinBytes;
+    }
+
+    /**
+     * A regular file on disk as of the last stat.
+     */
+    public record PdfFile(Path path, long size) {
+    }
+
+    private record Key(String filePath, LocalDateTime modifiedAt) {
+    }
+
+    /**
+     * @return the file's metadata, or empty if it does not exist or is not a
+     *         regular file
+     */
+    public Optional<PdfFile> stat(String filePath, LocalDateTime modifiedAt) {
+        Key key = new Key(filePath, modifiedAt);
+        PdfFile cached = openFiles.getIfPresent(key);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        Path path = Paths.get(filePath).normalize().toAbsolutePath();
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            log.warn("File does not exist: {}", path);
+            return Optional.empty();
+        } catch (IOException e) {
+            log.warn("Cannot stat {}: {}", path, e.getMessage());
+            return Optional.empty();
+        }
+        if (!attributes.isRegularFile()) {
+            log.warn("Not a regular file: {}", path);
+            return Optional.empty();
+        }
+
+        PdfFile file = new PdfFile(path, attributes.size());
+        openFiles.put(key, file);
+        return Optional.of(file);
+    }
+
+    /**
+     * Write {@code count} bytes of the file from {@code start} as the response
+     * body. Status and other headers must already be set.
+     */
+    public void send(PdfFile file, long start, long count, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        response.setContentLengthLong(count);
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+        if (count >= sendfileMinBytes && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.path().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + count);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.path(), StandardOpenOption.READ)) {
+            transfer(file, channel, start, count, Channels.newChannel(response.getOutputStream()));
+        }
+    }
+
+    /**
+     * Write several byte ranges of the file as a {@code multipart/byteranges}
+     * body, each part with {@code partType} and its Content-Range. Sets
+     * Content-Type and Content-Length; status and other headers must already
+     * be set. Parts are copied through {@link FileChannel#transferTo} (no
+     * sendfile: the body is not a single file region).
+     *
+     * @param ranges inclusive [start, end] pairs within the file
+     */
+    public void sendRanges(PdfFile file, List<long[]> ranges, MediaType partType, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        byte[][] partHeaders = new byte[ranges.size()][];
+        byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        long length = closing.length;
+        for (int i = 0; i < ranges.size(); i++) {
+            long[] range = ranges.get(i);
+            partHeaders[i] = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + partType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": bytes " + range[0] + "-" + range[1] + "/" + file.size()
+                    + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+            length += partHeaders[i].length + range[1] - range[0] + 1;
+        }
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(length);
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.path(), StandardOpenOption.READ)) {
+            OutputStream out = response.getOutputStream();
+            WritableByteChannel target = Channels.newChannel(out);
+            for (int i = 0; i < ranges.size(); i++) {
+                long[] range = ranges.get(i);
+                out.write(partHeaders[i]);
+                transfer(file, channel, range[0], range[1] - range[0] + 1, target);
+            }
+            out.write(closing);
+        }
+    }
+
+    private static void transfer(PdfFile file, FileChannel channel, long start, long count,
+            WritableByteChannel out) throws IOException {
+        long position = start;
+        long end = start + count;
+        while (position < end) {
+            long sent = channel.transferTo(position, end - position, out);
+            if (sent <= 0) {
+                // truncated since the stat; the client sees a short body
+                throw new EOFException("File shrank while sending: " + file.path());
+            }
+            position += sent;
+        }
+    }
+}
@@ -1,46 +1,69 @@
 package com.kwgroup.sopdocument.service;
 
 import com.kwgroup.sopdocument.dto.SopEntryResponse;
+import com.kwgroup.sopdocument.dto.SopSearchResult;
 import com.kwgroup.sopdocument.mapper.SopMapper;
-import com.kwgroup.sopdocument.model.SopEntry;
+import com.kwgroup.sopdocument.repository.SopContentRepository;
 import com.kwgroup.sopdocument.repository.SopEntryRepository;
+import com.kwgroup.sopdocument.search.SearchHit;
+import com.kwgroup.sopdocument.search.SnippetBuilder;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 /**
  * Service for searching PDF content across all SOP entries.
- * Uses caching for improved performance.
+ * Queries are answered from the in-memory {@link InvertedIndexService}; the
+ * database LIKE scan is only used while the index is still being built.
+ * Uses caching for improved performance; results of the database scan are
+ * not cached (they have no matched pages and treat operators literally).
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class PdfSearchService {
 
-    private final SopEntryRepository sopEntryRepository;
+    private static final int MAX_SNIPPETS = 3;
+    private static final int SNIPPET_WINDOW = 160;
+
+    private final SopCatalogService sopCatalogService;
+    private final SopContentRepository sopContentRepository;
     private final SopMapper sopMapper;
+    private final InvertedIndexService invertedIndexService;
 
     /**
      * Search for SOPs by PDF content.
-     * Results are cached based on the query string.
+     * Results are cached based on the query string once the index is ready.
      *
      * @param query the search query
      * @return list of matching SOP entries
      */
-    @Cacheable(value = "pdfSearchResults", key = "#query.toLowerCase()")
+    @Cacheable(value = SearchResultCache.CACHE_NAME, condition = "@invertedIndexService.isReady()",
+            key = "@searchResultCache.key('content', #query, null, null, 0)")
     public List<SopEntryResponse> searchByContent(String query) {
         if (query == null || query.isBlank()) {
             return List.of();
         }
 
+        Optional<List<SopEntryResponse>> indexed = searchIndex(query, null, null);
+        if (indexed.isPresent()) {
+            return indexed.get();
+        }
+
         String searchTerm = "%" + query.trim().toLowerCase() + "%";
         log.info("Searching PDFs for content: {}", searchTerm);
 
-        List<SopEntry> results = sopEntryRepository.searchByPdfContent(searchTerm);
+        List<SopEntryRepository.SopEntryView> results = findViews(sopContentRepository.searchIds(searchTerm));
 
         log.info("Found {} results for query: {}", results.size(), searchTerm);
 
@@ -56,18 +79,25 @@ public class PdfSearchService {
      * @param brand the brand to filter by
      * @return list of matching SOP entries
      */
-    @Cacheable(value = "pdfSearchResults", key = "#query.toLowerCase() + '_' + #brand.toLowerCase()")
+    @Cacheable(value = SearchResultCache.CACHE_NAME, condition = "@invertedIndexService.isReady()",
+            key = "@searchResultCache.key('content', #query, #brand, null, 0)")
     public List<SopEntryResponse> searchByContentAndBrand(String query, String brand) {
         if (query == null || query.isBlank()) {
             return List.of();
         }
 
+        Optional<List<SopEntryResponse>> indexed = searchIndex(query, brand, null);
+        if (indexed.isPresent()) {
+            return indexed.get();
+        }
+
         String searchTerm = "%" + query.trim().toLowerCase() + "%";
         String brandFilter = brand.trim().toLowerCase();
 
         log.info("Searching PDFs for content: {} in brand: {}", searchTerm, brandFilter);
 
-        List<SopEntry> results = sopEntryRepository.searchByPdfContentAndBrand(searchTerm, brandFilter);
+        List<SopEntryRepository.SopEntryView> results =
+                findViews(sopContentRepository.searchIdsByBrand(searchTerm, brandFilter));
 
         log.info("Found {} results for query: {} in brand: {}",
                 results.size(), searchTerm, brandFilter);
@@ -84,18 +114,25 @@ public class PdfSearchService {
      * @param category the category to filter by
      * @return list of matching SOP entries
      */
-    @Cacheable(value = "pdfSearchResults", key = "#query.toLowerCase() + '_cat_' + #category.toLowerCase()")
+    @Cacheable(value = SearchResultCache.CACHE_NAME, condition = "@invertedIndexService.isReady()",
+            key = "@searchResultCache.key('content', #query, null, #category, 0)")
     public List<SopEntryResponse> searchByContentAndCategory(String query, String category) {
         if (query == null || query.isBlank()) {
             return List.of();
         }
 
+        Optional<List<SopEntryResponse>> indexed = searchIndex(query, null, category);
+        if (indexed.isPresent()) {
+            return indexed.get();
+        }
+
         String searchTerm = "%" + query.trim().toLowerCase() + "%";
         String categoryFilter = category.trim().toLowerCase();
 
         log.info("Searching PDFs for content: {} in category: {}", searchTerm, categoryFilter);
 
-        List<SopEntry> results = sopEntryRepository.searchByPdfContentAndCategory(searchTerm, categoryFilter);
+        List<SopEntryRepository.SopEntryView> results =
+                findViews(sopContentRepository.searchIdsByCategory(searchTerm, categoryFilter));
 
         log.info("Found {} results for query: {} in category: {}",
                 results.size(), searchTerm, categoryFilter);
@@ -104,4 +141,94 @@ public class PdfSearchService {
                 .map(sopMapper::toDto)
                 .collect(Collectors.toList());
     }
+
+    /**
+     * Relevance-ranked search (BM25) with highlighted snippets.
+     * Snippets are cut from the stored text at the offsets recorded in the
+     * index, so only the top hits are touched.
+     *
+     * @param query    the search query
+     * @param brand    optional brand filter
+     * @param category optional category filter
+     * @param limit    maximum number of results
+     * @return top results ordered by descending score
+     */
+    @Cacheable(value = SearchResultCache.CACHE_NAME,
+            key = "@searchResultCache.key('ranked', #query, #brand, #category, #limit)")
+    public List<SopSearchResult> rankedSearch(String query, String brand, String category, int limit) {
+        if (query == null || query.isBlank()) {
+            return List.of();
+        }
+
+        List<SearchHit> hits = invertedIndexService.rank(query, brand, category, limit)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                        "Search index is still being built, please retry shortly"));
+        log.info("Ranked search for '{}' (brand: {}, category: {}) returned {} hits",
+                query, brand, category, hits.size());
+        if (hits.isEmpty()) {
+            return List.of();
+        }
+
+        List<String> ids = hits.stream().map(SearchHit::getSopId).toList();
+        Map<String, SopEntryRepository.SopEntryView> byId = new HashMap<>();
+        sopCatalogService.findAll(ids).forEach(view -> byId.put(view.getId(), view));
+        // the text is only loaded for the hits being returned
+        Map<String, String> contentById = new HashMap<>();
+        sopContentRepository.findAllById(ids)
+                .forEach(content -> contentById.put(content.getSopId(), content.getContent()));
+
+        return hits.stream()
+                .filter(hit -> byId.containsKey(hit.getSopId()))
+                .map(hit -> SopSearchResult.builder()
+                        .sop(sopMapper.toDto(byId.get(hit.getSopId())))
+                        .score(hit.getScore())
+                        .pages(toList(hit.getPages()))
+                        .snippets(SnippetBuilder.build(contentById.get(hit.getSopId()), hit.getHitOffsets(),
+                                MAX_SNIPPETS, SNIPPET_WINDOW))
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    /* ---------- helpers ---------- */
+
+    /**
+     * Answer a query from the inverted index and load only the matching rows.
+     *
+     * @return results, or empty if the index is not ready yet
+     */
+    private Optional<List<SopEntryResponse>> searchIndex(String query, String brand, String category) {
+        Optional<List<SearchHit>> hits = invertedIndexService.search(query, brand, category);
+        if (hits.isEmpty()) {
+            log.debug("Content index not ready, falling back to database scan");
+            return Optional.empty();
+        }
+
+        List<SearchHit> matches = hits.get();
+        log.info("Index search for '{}' (brand: {}, category: {}) matched {} SOPs",
+                query, brand, category, matches.size());
+        if (matches.isEmpty()) {
+            return Optional.of(List.of());
+        }
+
+        Map<String, SopEntryRepository.SopEntryView> byId = new HashMap<>();
+        sopCatalogService.findAll(matches.stream().map(SearchHit::getSopId).toList())
+                .forEach(view -> byId.put(view.getId(), view));
+
+        return Optional.of(matches.stream()
+                .filter(hit -> byId.containsKey(hit.getSopId()))
+                .map(hit -> {
+                    SopEntryResponse dto = sopMapper.toDto(byId.get(hit.getSopId()));
+                    dto.setMatchedPages(toList(hit.getPages()));
+                    return dto;
+                })
+                .collect(Collectors.toList()));
+    }
+
+    private List<SopEntryRepository.SopEntryView> findViews(List<String> ids) {
+        return sopCatalogService.findAll(ids);
+    }
+
+    private static List<Integer> toList(int[] values) {
+        return Arrays.stream(values).boxed().toList();
+    }
 }
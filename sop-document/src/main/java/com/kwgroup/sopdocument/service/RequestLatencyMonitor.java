@@ -0,0 +1,36 @@
+package com.kwgroup.sopdocument.service;
+
+import org.springframework.stereotype.Service;
+
+/**
+ * Moving average of API request latency, fed by
+ * {@link com.kwgroup.sopdocument.config.RequestLatencyFilter}. Background
+ * work (see {@link BulkIndexService}) backs off when users start waiting.
+ */
+@Service
+public class RequestLatencyMonitor {
+
+    // weight of a new sample in the exponentially weighted moving average
+    private static final double ALPHA = 0.2;
+    // without recent requests nobody is waiting, whatever the last average was
+    private static final long IDLE_AFTER_NANOS = 10_000_000_000L;
+
+    private double averageMillis;
+    private long lastSampleNanos;
+
+    public synchronized void record(long durationNanos) {
+        double millis = durationNanos / 1_000_000.0;
+        averageMillis = lastSampleNanos == 0 ? millis : averageMillis + ALPHA * (millis - averageMillis);
+        lastSampleNanos = System.nanoTime();
+    }
+
+    /**
+     * @return recent average request latency in milliseconds, 0 when idle
+     */
+    public synchronized double averageMillis() {
+        if (lastSampleNanos == 0 || System.nanoTime() - lastSampleNanos > IDLE_AFTER_NANOS) {
+            return 0;
+        }
+        return averageMillis;
+    }
+}
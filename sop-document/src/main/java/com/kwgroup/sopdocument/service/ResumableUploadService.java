@@ -0,0 +1,291 @@
+package com.kwgroup.sopdocument.service;
+
+import com.kwgroup.sopdocument.dto.SopEntryRequest;
+import com.kwgroup.sopdocument.dto.SopEntryResponse;
+import com.kwgroup.sopdocument.dto.UploadSessionResponse;
+import com.kwgroup.sopdocument.model.UploadSession;
+import com.kwgroup.sopdocument.repository.UploadSessionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resumable uploads: a session is opened with the SOP metadata, chunks are
+ * appended at the offset the server reports, and finishing the session runs
+ * the regular save pipeline on the assembled file.
+ *
+ * Chunks are written to {@code <brand base>/.uploads/<id>.part} and forced to
+ * disk before the new offset is recorded in {@code upload_sessions}, so an
+ * acknowledged chunk survives a crash and the client never re-sends it;
+ * bytes of an interrupted chunk are truncated on the next append. One chunk
+ * per session is written at a time. Sessions idle for
+ * {@code sop.uploads.expire-hours} are deleted with their file.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ResumableUploadService {
+
+    static final String UPLOADS_DIR = ".uploads";
+
+    private final UploadSessionRepository uploadSessionRepository;
+    private final SopEntryService sopEntryService;
+
+    @Value("${sop.uploads.max-chunk-bytes:16777216}")
+    private long maxChunkBytes;
+
+    @Value("${sop.uploads.expire-hours:24}")
+    private long expireHours;
+
+    @Value("${sop.upload.max-size-bytes:104857600}")
+    private long maxUploadSize;
+
+    // sessions with a chunk or finish in progress
+    private final Set<String> busy = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The chunk does not start where the session ends (e.g. it was already
+     * received, or another chunk is being written).
+     */
+    public static class OffsetMismatchException extends RuntimeException {
+
+        private final transient UploadSession session;
+
+        OffsetMismatchException(String message, UploadSession session) {
+            super(message);
+            this.session = session;
+        }
+
+        public UploadSession getSession() {
+            return session;
+        }
+    }
+
+    /**
+     * Open a session after validating the metadata as a single-request
+     * upload would.
+     */
+    public UploadSession create(SopEntryRequest request, String fileName, Long totalSize) {
+        if (totalSize != null && (totalSize <= 0 || (maxUploadSize > 0 && totalSize > maxUploadSize))) {
+            throw new IllegalArgumentException("totalSize must be between 1 and the maximum allowed size");
+        }
+        if (totalSize == null && maxUploadSize <= 0) {
+            // nothing else would bound the session file
+            throw new IllegalArgumentException("totalSize is required");
+        }
+        Path baseDir = sopEntryService.uploadBaseDir(request, fileName);
+        String id = UUID.randomUUID().toString();
+        Path file = baseDir.resolve(UPLOADS_DIR).resolve(id + ".part");
+        try {
+            Files.createDirectories(file.getParent());
+            Files.createFile(file);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to create upload session file: " + file, e);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        UploadSession session = uploadSessionRepository.save(UploadSession.builder()
+                .id(id)
+                .fileName(fileName)
+                .fileCategory(request.getFileCategory())
+                .brand(request.getBrand())
+                .uploadedBy(request.getUploadedBy())
+                .filePath(file.toString())
+                .totalSize(totalSize)
+                .bytesReceived(0)
+                .createdAt(now)
+                .updatedAt(now)
+                .build());
+        log.info("Opened upload session {} for '{}' ({} bytes)", id, fileName, totalSize);
+        return session;
+    }
+
+    public Optional<UploadSession> find(String id) {
+        return uploadSessionRepository.findById(id);
+    }
+
+    /**
+     * Append a chunk at {@code offset}, which must equal the bytes received so
+     * far. The chunk is on disk when this returns.
+     *
+     * @throws OffsetMismatchException  if {@code offset} is not the session's
+     *                                  current offset
+     * @throws IllegalArgumentException if the chunk is too large or runs past
+     *                                  the declared total size
+     */
+    public UploadSession append(String id, long offset, InputStream chunk) throws IOException {
+        UploadSession session = require(id);
+        if (!busy.add(id)) {
+            throw new OffsetMismatchException("Another chunk of this upload is in progress", session);
+        }
+        try {
+            // re-read: a concurrent chunk may have completed meanwhile
+            session = require(id);
+            if (offset != session.getBytesReceived()) {
+                throw new OffsetMismatchException("Upload continues at offset " + session.getBytesReceived(),
+                        session);
+            }
+            long limit = Math.min(maxChunkBytes, remaining(session));
+
+            long written;
+            try (FileChannel channel = FileChannel.open(Paths.get(session.getFilePath()), StandardOpenOption.WRITE)) {
+                if (channel.size() < offset) {
+                    throw new IllegalStateException("Upload session file is shorter than the received bytes");
+                }
+                // drop what an interrupted chunk left behind
+                channel.truncate(offset);
+                written = channel.transferFrom(Channels.newChannel(chunk), offset, limit + 1);
+                if (written > limit) {
+                    throw new IllegalArgumentException(limit == maxChunkBytes
+                            ? "Chunk exceeds " + maxChunkBytes + " bytes"
+                            : "Chunk runs past the upload's size");
+                }
+                channel.force(false);
+            }
+
+            session.setBytesReceived(offset + written);
+            session.setUpdatedAt(LocalDateTime.now());
+            return uploadSessionRepository.save(session);
+        } finally {
+            busy.remove(id);
+        }
+    }
+
+    /**
+     * Save the assembled file as a SOP (see
+     * {@link SopEntryService#save(SopEntryRequest, String, StagedUpload)}) and
+     * close the session. If saving fails before the file was moved, the
+     * session stays open and finishing can be retried.
+     */
+    public SopEntryResponse finish(String id) {
+        UploadSession session = require(id);
+        if (!busy.add(id)) {
+            throw new OffsetMismatchException("A chunk of this upload is in progress", session);
+        }
+        try {
+            if (session.getTotalSize() != null && session.getBytesReceived() != session.getTotalSize()) {
+                throw new IllegalArgumentException("Upload is incomplete: " + session.getBytesReceived() + " of "
+                        + session.getTotalSize() + " bytes received");
+            }
+            Path file = Paths.get(session.getFilePath());
+            StagedUpload staged;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(session.getBytesReceived());
+                staged = StagedUpload.of(file);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to read upload session file: " + file, e);
+            }
+
+            SopEntryRequest request = new SopEntryRequest();
+            request.setFileCategory(session.getFileCategory());
+            request.setBrand(session.getBrand());
+            request.setUploadedBy(session.getUploadedBy());
+            SopEntryResponse saved;
+            try {
+                saved = sopEntryService.save(request, session.getFileName(), staged);
+            } catch (RuntimeException e) {
+                if (!Files.exists(file)) {
+                    // moved into place before the failure: nothing left to retry with
+                    uploadSessionRepository.delete(session);
+                }
+                throw e;
+            }
+            discard(staged);
+            uploadSessionRepository.delete(session);
+            log.info("Finished upload session {} ({} bytes)", id, session.getBytesReceived());
+            return saved;
+        } finally {
+            busy.remove(id);
+        }
+    }
+
+    /**
+     * Delete a session and its file.
+     */
+    public void abort(String id) {
+        UploadSession session = require(id);
+        deleteFile(session);
+        uploadSessionRepository.delete(session);
+        log.info("Aborted upload session {}", id);
+    }
+
+    @Scheduled(fixedDelayString = "${sop.uploads.cleanup-interval-ms:3600000}")
+    public void expireIdleSessions() {
+        LocalDateTime idleSince = LocalDateTime.now().minusHours(expireHours);
+        for (UploadSession idle : uploadSessionRepository.findByUpdatedAtBefore(idleSince)) {
+            // hold the session like a chunk would, so none starts while it is deleted
+            if (!busy.add(idle.getId())) {
+                continue;
+            }
+            try {
+                // re-read: a chunk may have completed since the query
+                Optional<UploadSession> current = uploadSessionRepository.findById(idle.getId());
+                if (current.isEmpty() || !current.get().getUpdatedAt().isBefore(idleSince)) {
+                    continue;
+                }
+                UploadSession session = current.get();
+                deleteFile(session);
+                uploadSessionRepository.delete(session);
+                log.info("Expired idle upload session {} ('{}', {} bytes received)", session.getId(),
+                        session.getFileName(), session.getBytesReceived());
+            } finally {
+                busy.remove(idle.getId());
+            }
+        }
+    }
+
+    public UploadSessionResponse toDto(UploadSession session) {
+        return UploadSessionResponse.builder()
+                .uploadId(session.getId())
+                .fileName(session.getFileName())
+                .brand(session.getBrand())
+                .offset(session.getBytesReceived())
+                .totalSize(session.getTotalSize())
+                .expiresAt(session.getUpdatedAt().plusHours(expireHours))
+                .build();
+    }
+
+    private UploadSession require(String id) {
+        return uploadSessionRepository.findById(id)
+                .orElseThrow(() -> new IllegalArgumentException("Upload session not found with id: " + id));
+    }
+
+    private long remaining(UploadSession session) {
+        if (session.getTotalSize() != null) {
+            return session.getTotalSize() - session.getBytesReceived();
+        }
+        return Math.max(0, maxUploadSize - session.getBytesReceived());
+    }
+
+    private static void deleteFile(UploadSession session) {
+        try {
+            Files.deleteIfExists(Paths.get(session.getFilePath()));
+        } catch (IOException e) {
+            log.warn("Failed to delete upload session file: {}", session.getFilePath(), e);
+        }
+    }
+
+    private static void discard(StagedUpload staged) {
+        try {
+            staged.close();
+        } catch (IOException e) {
+            log.warn("Failed to delete finished upload: {}", staged.getPath(), e);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.kwgroup.sopdocument.service;
+
+import com.kwgroup.sopdocument.search.InvertedIndex;
+import com.kwgroup.sopdocument.search.QueryNode;
+import com.kwgroup.sopdocument.search.QueryParser;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Key builder and targeted invalidation for the "pdfSearchResults" cache.
+ *
+ * Cached queries are keyed by {@link Key}, which carries the query terms and
+ * filters. When a document changes, only the keys whose filters match the
+ * document's old or new brand/category and whose terms could match one of
+ * the document's old or new terms (exactly, as a substring or as a typo) are
+ * evicted; everything else stays cached.
+ *
+ * Ranked results of unaffected queries keep their cached scores even though
+ * collection statistics shift slightly; that drift is accepted.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SearchResultCache {
+
+    public static final String CACHE_NAME = "pdfSearchResults";
+
+    private final CacheManager cacheManager;
+
+    /**
+     * Cache key of a search. {@code terms} is derived from {@code query}; it
+     * is empty (i.e. any change affects the entry) when the query has
+     * {@code brand:} / {@code category:} clauses, since those depend on
+     * metadata rather than on terms.
+     */
+    public record Key(String mode, String query, String brand, String category, int limit, Set<String> terms) {
+    }
+
+    /**
+     * Build a cache key (used from {@code @Cacheable} SpEL). The query keeps
+     * its case: operators are upper case only, so "a OR b" and "a or b" are
+     * different searches.
+     */
+    public Key key(String mode, String query, String brand, String category, int limit) {
+        String trimmedQuery = query == null ? "" : query.trim();
+        return new Key(mode, trimmedQuery, normalize(brand), normalize(category), limit,
+                queryTerms(QueryParser.parse(trimmedQuery)));
+    }
+
+    private static Set<String> queryTerms(QueryNode query) {
+        Set<String> terms = new HashSet<>();
+        return collectTerms(query, terms) ? Set.copyOf(terms) : Set.of();
+    }
+
+    /**
+     * @return false if the query contains a field clause
+     */
+    private static boolean collectTerms(QueryNode node, Set<String> terms) {
+        if (node == null) {
+            return true;
+        }
+        if (node instanceof QueryNode.Terms t) {
+            terms.addAll(t.terms());
+            return true;
+        }
+        if (node instanceof QueryNode.Not n) {
+            return collectTerms(n.clause(), terms);
+        }
+        List<QueryNode> clauses = node instanceof QueryNode.And a ? a.clauses()
+                : node instanceof QueryNode.Or o ? o.clauses() : null;
+        if (clauses == null) {
+            return false;
+        }
+        for (QueryNode clause : clauses) {
+            if (!collectTerms(clause, terms)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Evict cached searches that could be affected by a document change.
+     *
+     * @param terms      union of the document's terms before and after the change
+     * @param brands     brands the document had before / after
+     * @param categories categories the document had before / after
+     * @return number of evicted entries
+     */
+    public int invalidate(Set<String> terms, Set<String> brands, Set<String> categories) {
+        Cache cache = cacheManager.getCache(CACHE_NAME);
+        if (!(cache instanceof CaffeineCache caffeineCache)) {
+            if (cache != null) {
+                cache.clear();
+            }
+            return -1;
+        }
+
+        int before = caffeineCache.getNativeCache().asMap().size();
+        caffeineCache.getNativeCache().asMap().keySet().removeIf(k -> !(k instanceof Key key)
+                || isAffected(key, terms, brands, categories));
+        int evicted = before - caffeineCache.getNativeCache().asMap().size();
+        if (evicted > 0) {
+            log.debug("Evicted {} cached search results", evicted);
+        }
+        return evicted;
+    }
+
+    /**
+     * Evict all cached searches.
+     */
+    public void clear() {
+        Cache cache = cacheManager.getCache(CACHE_NAME);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    private static boolean isAffected(Key key, Set<String> terms, Set<String> brands, Set<String> categories) {
+        if (key.brand() != null && !brands.contains(key.brand())) {
+            return false;
+        }
+        if (key.category() != null && !categories.contains(key.category())) {
+            return false;
+        }
+        if (key.terms().isEmpty() || !Collections.disjoint(key.terms(), terms)) {
+            return true;
+        }
+        for (String queryTerm : key.terms()) {
+            for (String term : terms) {
+                if (InvertedIndex.mayExpandTo(queryTerm, term)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Small helper for callers collecting old/new values.
+     */
+    static Set<String> setOf(String... values) {
+        Set<String> set = new HashSet<>();
+        for (String value : values) {
+            String normalized = normalize(value);
+            if (normalized != null) {
+                set.add(normalized);
+            }
+        }
+        return set;
+    }
+
+    private static String normalize(String value) {
+        return (value == null || value.isBlank()) ? null : value.trim().toLowerCase(Locale.ROOT);
+    }
+}
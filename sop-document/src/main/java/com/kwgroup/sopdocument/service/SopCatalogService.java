@@ -0,0 +1,248 @@
+package com.kwgroup.sopdocument.service;
+
+import com.kwgroup.sopdocument.model.IndexStatus;
+import com.kwgroup.sopdocument.repository.ListCursor;
+import com.kwgroup.sopdocument.repository.SopEntryRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.Builder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * In-memory catalog of SOP metadata (no extracted text) serving listing,
+ * lookup, download and view without touching the database.
+ *
+ * The catalog is an immutable snapshot with prebuilt per-brand and
+ * per-category orderings, held in a volatile field: readers just take the
+ * current snapshot, without locks. Writers (after a save, update, delete or
+ * index status change has committed) re-read the changed rows, build a new
+ * snapshot from a copy and publish it in one assignment. Writers are
+ * serialized so a slower writer cannot publish an older state over a newer
+ * one.
+ *
+ * Loaded once the schema migrations have run.
+ */
+@Service
+@DependsOn({ "contentTableMigration", "uniqueSopMigration" })
+@RequiredArgsConstructor
+@Slf4j
+public class SopCatalogService {
+
+    private static final Comparator<Entry> NEWEST_FIRST = Comparator
+            .comparing(Entry::getModifiedAt, Comparator.nullsLast(Comparator.<LocalDateTime>reverseOrder()))
+            .thenComparing(Entry::getId, Comparator.reverseOrder());
+    private static final Comparator<Entry> BY_FILE_NAME = Comparator
+            .comparing(Entry::getFileName, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+            .thenComparing(Entry::getId);
+
+    private final SopEntryRepository sopEntryRepository;
+
+    // distinguishes catalog versions of different runs
+    private final long bootMillis = System.currentTimeMillis();
+    private volatile Snapshot snapshot = new Snapshot(Map.of(), 0);
+
+    @PostConstruct
+    public void init() {
+        reload();
+    }
+
+    /**
+     * Replace the catalog with the current table contents.
+     */
+    public synchronized void reload() {
+        Map<String, Entry> byId = new HashMap<>();
+        sopEntryRepository.findAllViews().forEach(view -> byId.put(view.getId(), Entry.of(view)));
+        snapshot = new Snapshot(byId, snapshot.version + 1);
+        log.info("Loaded SOP catalog with {} entries", byId.size());
+    }
+
+    /**
+     * Re-read the given entries and publish a new snapshot; entries no longer
+     * in the table are dropped. Call once the change has committed (see
+     * {@link #refreshAfterCommit(String)}).
+     */
+    public synchronized void refresh(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        Map<String, Entry> byId = new HashMap<>(snapshot.byId);
+        ids.forEach(byId::remove);
+        sopEntryRepository.findViewsByIdIn(ids).forEach(view -> byId.put(view.getId(), Entry.of(view)));
+        snapshot = new Snapshot(byId, snapshot.version + 1);
+    }
+
+    /**
+     * Refresh one entry once the current transaction has committed.
+     */
+    public void refreshAfterCommit(String id) {
+        refreshAfterCommit(List.of(id));
+    }
+
+    public void refreshAfterCommit(Collection<String> ids) {
+        TransactionHooks.afterCommit(() -> refresh(ids));
+    }
+
+    /**
+     * Strong validator for anything derived from the whole catalog (e.g. the
+     * listing): changes with every published snapshot. Take it before reading
+     * the data it validates, so the data is never older than the tag.
+     */
+    public String etag() {
+        return "\"catalog-" + Long.toString(bootMillis, 36) + "-" + snapshot.version + "\"";
+    }
+
+    /**
+     * When the current snapshot was published (epoch millis).
+     */
+    public long lastModified() {
+        return snapshot.publishedAt;
+    }
+
+    public Optional<SopEntryRepository.SopEntryView> find(String id) {
+        return Optional.ofNullable(snapshot.byId.get(id));
+    }
+
+    /**
+     * Entries for the given ids, in no particular order; unknown ids are
+     * skipped.
+     */
+    public List<SopEntryRepository.SopEntryView> findAll(Collection<String> ids) {
+        Snapshot current = snapshot;
+        List<SopEntryRepository.SopEntryView> found = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Entry entry = current.byId.get(id);
+            if (entry != null) {
+                found.add(entry);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * One page of the listing.
+     *
+     * @param brand    brand to filter by (lower case), or null for all
+     * @param category category to filter by (lower case), or null for all
+     * @param sort     listing order
+     * @param after    position after which to continue, or null for the
+     *                 first page
+     * @param limit    maximum number of entries
+     */
+    public List<SopEntryRepository.SopEntryView> page(String brand, String category, ListCursor.Sort sort,
+            ListCursor after, int limit) {
+        Snapshot current = snapshot;
+        boolean newestFirst = sort == ListCursor.Sort.MODIFIED_AT;
+        List<Entry> ordered;
+        if (brand != null) {
+            ordered = (newestFirst ? current.byBrandNewest : current.byBrandName).getOrDefault(brand, List.of());
+        } else if (category != null) {
+            ordered = (newestFirst ? current.byCategoryNewest : current.byCategoryName).getOrDefault(category,
+                    List.of());
+        } else {
+            ordered = newestFirst ? current.newest : current.byName;
+        }
+
+        int start = 0;
+        if (after != null) {
+            Comparator<Entry> order = newestFirst ? NEWEST_FIRST : BY_FILE_NAME;
+            Entry probe = newestFirst
+                    ? Entry.builder().id(after.id()).modifiedAt(LocalDateTime.parse(after.value())).build()
+                    : Entry.builder().id(after.id()).fileName(after.value()).build();
+            int found = Collections.binarySearch(ordered, probe, order);
+            start = found >= 0 ? found + 1 : -found - 1;
+        }
+
+        List<SopEntryRepository.SopEntryView> page = new ArrayList<>(Math.min(limit, ordered.size()));
+        for (int i = start; i < ordered.size() && page.size() < limit; i++) {
+            Entry entry = ordered.get(i);
+            // brand and category together: walk the brand ordering
+            if (category == null || category.equals(entry.getFileCategory())) {
+                page.add(entry);
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Immutable copy of an entry's metadata.
+     */
+    @lombok.Value
+    @Builder
+    static class Entry implements SopEntryRepository.SopEntryView {
+        String id;
+        String fileName;
+        String filePath;
+        long fileSize;
+        String contentHash;
+        String fileCategory;
+        String brand;
+        String uploadedBy;
+        LocalDateTime createdAt;
+        LocalDateTime modifiedAt;
+        String version;
+        IndexStatus indexStatus;
+
+        static Entry of(SopEntryRepository.SopEntryView view) {
+            return new Entry(view.getId(), view.getFileName(), view.getFilePath(), view.getFileSize(),
+                    view.getContentHash(), view.getFileCategory(), view.getBrand(), view.getUploadedBy(),
+                    view.getCreatedAt(), view.getModifiedAt(), view.getVersion(), view.getIndexStatus());
+        }
+    }
+
+    private static final class Snapshot {
+        final long version;
+        final long publishedAt;
+        final Map<String, Entry> byId;
+        final List<Entry> newest;
+        final List<Entry> byName;
+        final Map<String, List<Entry>> byBrandNewest;
+        final Map<String, List<Entry>> byBrandName;
+        final Map<String, List<Entry>> byCategoryNewest;
+        final Map<String, List<Entry>> byCategoryName;
+
+        Snapshot(Map<String, Entry> entries, long version) {
+            this.version = version;
+            this.publishedAt = System.currentTimeMillis();
+            byId = Map.copyOf(entries);
+            newest = sorted(byId.values(), NEWEST_FIRST);
+            byName = sorted(byId.values(), BY_FILE_NAME);
+            byBrandNewest = group(newest, Entry::getBrand);
+            byBrandName = group(byName, Entry::getBrand);
+            byCategoryNewest = group(newest, Entry::getFileCategory);
+            byCategoryName = group(byName, Entry::getFileCategory);
+        }
+
+        private static List<Entry> sorted(Collection<Entry> entries, Comparator<Entry> order) {
+            List<Entry> list = new ArrayList<>(entries);
+            list.sort(order);
+            return List.copyOf(list);
+        }
+
+        // keeps the order of the input within each group
+        private static Map<String, List<Entry>> group(List<Entry> ordered, Function<Entry, String> key) {
+            Map<String, List<Entry>> groups = new HashMap<>();
+            for (Entry entry : ordered) {
+                String value = key.apply(entry);
+                if (value != null) {
+                    groups.computeIfAbsent(value, k -> new ArrayList<>()).add(entry);
+                }
+            }
+            Map<String, List<Entry>> frozen = new HashMap<>();
+            groups.forEach((value, list) -> frozen.put(value, List.copyOf(list)));
+            return Map.copyOf(frozen);
+        }
+    }
+}
@@ -4,27 +4,32 @@ import com.kwgroup.sopdocument.dto.SopEntryRequest;
 import com.kwgroup.sopdocument.dto.SopEntryResponse;
 import com.kwgroup.sopdocument.dto.SopEntryUpdateRequest;
 import com.kwgroup.sopdocument.mapper.SopMapper;
+import com.kwgroup.sopdocument.model.IndexStatus;
 import com.kwgroup.sopdocument.model.SopEntry;
+import com.kwgroup.sopdocument.repository.SopContentRepository;
 import com.kwgroup.sopdocument.repository.SopEntryRepository;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.*;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
 import java.util.regex.Pattern;
 
 /**
@@ -38,6 +43,15 @@ import java.util.regex.Pattern;
  * - DB record is identified by beautified fileName (single-space, no extension)
  * - Updates existing DB entry if fileName already present, otherwise creates
  * new entry
+ * - Uploads are streamed to basePath/.staging while their SHA-256 is computed,
+ * then moved into place; re-uploading the current file (same hash) keeps the
+ * entry, its version and its indexed content unchanged
+ * - After commit, a compacted web view copy is built for /view (see
+ * {@link WebViewPdfService}) and first-page thumbnails are rendered (see
+ * {@link ThumbnailService})
+ * - Writes to the same SOP (brand, disk file name) are serialized by
+ * {@link DocumentLocks}, held from the backup of the current file until the
+ * transaction has committed
  */
 @Service
 @RequiredArgsConstructor
@@ -45,9 +59,18 @@ import java.util.regex.Pattern;
 public class SopEntryService {
 
     private final SopEntryRepository sopEntryRepository;
+    private final SopContentRepository sopContentRepository;
     private final SopMapper sopMapper;
-    private final PdfContentIndexService pdfContentIndexService;
+    private final SopCatalogService sopCatalogService;
+    private final IndexJobService indexJobService;
+    private final ExtractionQuarantineService extractionQuarantineService;
+    private final InvertedIndexService invertedIndexService;
+    private final SuggestionService suggestionService;
+    private final WebViewPdfService webViewPdfService;
+    private final ThumbnailService thumbnailService;
     private final EmailService emailService;
+    private final DocumentLocks documentLocks;
+    private final PlatformTransactionManager transactionManager;
 
     @Value("${sop.notification.admin-email}")
     private String adminEmail;
@@ -61,13 +84,15 @@ public class SopEntryService {
     @Value("${sop.storage.path.chicos}")
     private String chicosBase;
 
-    @Value("${sop.upload.max-size-bytes:0}")
+    @Value("${sop.upload.max-size-bytes:104857600}")
     private long maxUploadSize;
 
     private final Map<String, String> brandToBaseMap = new HashMap<>();
+    private TransactionTemplate transaction;
 
     @PostConstruct
     public void init() {
+        transaction = new TransactionTemplate(transactionManager);
         if (knitwellBase != null)
             brandToBaseMap.put("knitwell", knitwellBase);
         if (talbotsBase != null)
@@ -87,15 +112,98 @@ public class SopEntryService {
      * @param file            multipart uploaded file
      * @return SopEntryResponse of saved/updated entity
      */
-    @Transactional
-    @CacheEvict(value = { "pdfSearchResults", "pdfContent" }, allEntries = true)
     public SopEntryResponse save(SopEntryRequest sopEntryRequest, MultipartFile file) {
         // 1. validate uploaded file
         if (file == null || file.isEmpty()) {
             throw new IllegalArgumentException("Uploaded file is missing or empty");
         }
 
-        String originalFilename = StringUtils.cleanPath(Objects.requireNonNull(file.getOriginalFilename()));
+        UploadTarget target = resolveUploadTarget(sopEntryRequest, file.getOriginalFilename());
+
+        // 6. file size validation
+        long size = file.getSize();
+        if (maxUploadSize > 0 && size > maxUploadSize) {
+            throw new IllegalArgumentException("File exceeds maximum allowed size: " + maxUploadSize);
+        }
+
+        // stream the upload into the base path, hashing it on the way
+        StagedUpload staged = stageUpload(file, target.baseDir());
+        try {
+            return commit(target, staged);
+        } finally {
+            discard(staged);
+        }
+    }
+
+    /**
+     * Save (create or update) a SOP entry from the raw bytes of an upload, as
+     * they arrive from the client. The bytes are written to
+     * basePath/.staging and hashed before any transaction starts, so a slow
+     * upload does not hold a database connection; only the final move and the
+     * DB update run in a transaction.
+     *
+     * @param sopEntryRequest  metadata provided by client (file is ignored)
+     * @param originalFilename the client's file name
+     * @param content          the file's bytes; read to the end
+     * @return SopEntryResponse of saved/updated entity
+     */
+    public SopEntryResponse save(SopEntryRequest sopEntryRequest, String originalFilename, InputStream content) {
+        UploadTarget target = resolveUploadTarget(sopEntryRequest, originalFilename);
+
+        StagedUpload staged;
+        try {
+            staged = StagedUpload.stage(content, target.baseDir(), maxUploadSize);
+        } catch (IOException e) {
+            log.error("Failed to write uploaded file to disk: {}", target.baseDir(), e);
+            throw new RuntimeException("Failed to write uploaded file to disk", e);
+        }
+        try {
+            return commit(target, staged);
+        } finally {
+            discard(staged);
+        }
+    }
+
+    /**
+     * Save (create or update) a SOP entry from a file already written under
+     * the brand's base path, e.g. a finished resumable upload (see
+     * {@link #uploadBaseDir}). The file is moved into place; if it is
+     * identical to the current version it is left where it is. The caller
+     * closes {@code staged}.
+     */
+    public SopEntryResponse save(SopEntryRequest sopEntryRequest, String originalFilename, StagedUpload staged) {
+        return commit(resolveUploadTarget(sopEntryRequest, originalFilename), staged);
+    }
+
+    /**
+     * Validate the metadata of an upload that is about to start and return
+     * the base path its bytes should be written under (so the final move is
+     * a rename).
+     */
+    public Path uploadBaseDir(SopEntryRequest sopEntryRequest, String originalFilename) {
+        return resolveUploadTarget(sopEntryRequest, originalFilename).baseDir();
+    }
+
+    private SopEntryResponse commit(UploadTarget target, StagedUpload staged) {
+        if (staged.getSize() == 0) {
+            throw new IllegalArgumentException("Uploaded file is missing or empty");
+        }
+        if (maxUploadSize > 0 && staged.getSize() > maxUploadSize) {
+            throw new IllegalArgumentException("File exceeds maximum allowed size: " + maxUploadSize);
+        }
+        return documentLocks.withLock(new DocumentLocks.Key(target.brand(), target.diskBaseName()),
+                () -> transaction.execute(status -> save(staged, target)));
+    }
+
+    /**
+     * Where an upload goes and the entry fields derived from the request.
+     */
+    record UploadTarget(Path baseDir, Path targetPath, String dbFileName, String diskBaseName,
+            String extension, String brand, String category, String uploadedBy) {
+    }
+
+    UploadTarget resolveUploadTarget(SopEntryRequest sopEntryRequest, String filename) {
+        String originalFilename = filename == null ? "" : StringUtils.cleanPath(filename);
         if (originalFilename.isBlank()) {
             throw new IllegalArgumentException("Uploaded file must have a valid filename");
         }
@@ -104,7 +212,34 @@ public class SopEntryService {
         // 2. derive DB-friendly fileName (space separated, no extension)
         String dbFileName = beautifyFileNameForDb(originalFilename);
 
-        // 3. basic request validations (fileCategory and brand must exist on request)
+        // 3./4. validate the request and resolve the brand's base path
+        Path baseDir = resolveBaseDir(sopEntryRequest);
+        String uploadedBy = nonNullOrDefault(sopEntryRequest.getUploadedBy(), "admin");
+        String brand = sopEntryRequest.getBrand().toLowerCase(Locale.ROOT).trim();
+
+        // 5. normalize category
+        String category = sopEntryRequest.getFileCategory().toLowerCase(Locale.ROOT).trim();
+
+        // --------------------------
+        // Save directly in basePath
+        // --------------------------
+        // prepare disk filename (underscore separated) and target path directly under
+        // basePath
+        String extension = getExtensionWithDot(originalFilename); // e.g. ".pdf"
+        String diskBaseName = beautifyForDisk(dbFileName); // e.g. "testing_app_now"
+        String diskFileName = diskBaseName + extension; // e.g. "testing_app_now.pdf"
+
+        Path targetPath = baseDir.resolve(diskFileName).normalize();
+        return new UploadTarget(baseDir, targetPath, dbFileName, diskBaseName, extension, brand, category,
+                uploadedBy);
+    }
+
+    /**
+     * Validate the upload metadata (fileCategory and brand) and return the
+     * brand's base path, creating it if needed.
+     */
+    Path resolveBaseDir(SopEntryRequest sopEntryRequest) {
+        // basic request validations (fileCategory and brand must exist on request)
         if (sopEntryRequest.getFileCategory() == null || sopEntryRequest.getFileCategory().isBlank()) {
             throw new IllegalArgumentException("fileCategory is required");
         }
@@ -112,9 +247,7 @@ public class SopEntryService {
             throw new IllegalArgumentException("brand is required");
         }
 
-        String uploadedBy = nonNullOrDefault(sopEntryRequest.getUploadedBy(), "admin");
-
-        // 4. normalize brand and resolve base path
+        // normalize brand and resolve base path
         String brand = sopEntryRequest.getBrand().toLowerCase(Locale.ROOT).trim();
         if (!brandToBaseMap.containsKey(brand)) {
             throw new IllegalArgumentException("Unsupported brand: " + sopEntryRequest.getBrand());
@@ -124,24 +257,6 @@ public class SopEntryService {
             throw new IllegalStateException("Base path for brand '" + brand + "' is not configured");
         }
 
-        // 5. normalize category
-        String category = sopEntryRequest.getFileCategory().toLowerCase(Locale.ROOT).trim();
-
-        // 6. file size validation
-        long size = file.getSize();
-        if (maxUploadSize > 0 && size > maxUploadSize) {
-            throw new IllegalArgumentException("File exceeds maximum allowed size: " + maxUploadSize);
-        }
-
-        // --------------------------
-        // Save directly in basePath
-        // --------------------------
-        // prepare disk filename (underscore separated) and target path directly under
-        // basePath
-        String extension = getExtensionWithDot(originalFilename); // e.g. ".pdf"
-        String diskBaseName = beautifyForDisk(dbFileName); // e.g. "testing_app_now"
-        String diskFileName = diskBaseName + extension; // e.g. "testing_app_now.pdf"
-
         // ensure base path exists
         Path baseDir = Paths.get(basePath).normalize();
         try {
@@ -150,43 +265,54 @@ public class SopEntryService {
             log.error("Failed to create base directory: {}", baseDir, e);
             throw new RuntimeException("Unable to create base directory: " + baseDir, e);
         }
+        return baseDir;
+    }
 
-        Path targetPath = baseDir.resolve(diskFileName).normalize();
+    private SopEntryResponse save(StagedUpload staged, UploadTarget target) {
+        return save(staged, target.targetPath(), target.dbFileName(), target.diskBaseName(), target.extension(),
+                target.brand(), target.category(), target.uploadedBy());
+    }
 
-        // If a physical file exists at targetPath -> move it to basePath/backups/
-        if (Files.exists(targetPath)) {
-            try {
-                Path backupDir = baseDir.resolve("backups");
-                Files.createDirectories(backupDir);
-                String ts = LocalDateTime.now().format(BACKUP_TS_FORMAT); // dd-MM-yyyy_HH-mm-ss
-                String backupName = diskBaseName + "_" + ts + extension; // e.g. testing_app_now_25-11-2025_12-00-00.pdf
-                Path backupPath = backupDir.resolve(backupName).normalize();
-                Files.move(targetPath, backupPath, StandardCopyOption.REPLACE_EXISTING);
-                log.info("Backed up existing file '{}' to '{}'", targetPath, backupPath);
-            } catch (IOException e) {
-                log.error("Failed to backup existing file: {}", targetPath, e);
-                throw new RuntimeException("Failed to backup existing file: " + targetPath, e);
+    private SopEntryResponse save(StagedUpload staged, Path targetPath, String dbFileName, String diskBaseName,
+            String extension, String brand, String category, String uploadedBy) {
+        // 7. Now handle DB record (find by fileName AND brand)
+        Optional<SopEntry> existingOpt = sopEntryRepository.findByFileNameAndBrand(dbFileName, brand);
+
+        // 8. identical re-upload: keep file, extracted content, index and version
+        if (existingOpt.isPresent() && isCurrentContent(existingOpt.get(), targetPath, staged.getSha256())) {
+            SopEntry existing = existingOpt.get();
+            log.info("Uploaded file is identical to the current version of '{}' ({}); skipping",
+                    existing.getFileName(), existing.getVersion());
+            if (!category.equals(existing.getFileCategory())) {
+                existing.setFileCategory(category);
+                SopEntry saved = sopEntryRepository.save(existing);
+                sopCatalogService.refreshAfterCommit(saved.getId());
+                invertedIndexService.updateMetadata(saved);
+                return sopMapper.toDto(saved);
             }
+            return sopMapper.toDto(existing);
         }
 
-        // write uploaded file to targetPath (overwrite if exists after backup)
+        // 9. back up the current file and move the upload into place
+        backupExistingFile(targetPath, diskBaseName, extension);
         try {
-            Files.copy(file.getInputStream(), targetPath, StandardCopyOption.REPLACE_EXISTING);
+            staged.moveTo(targetPath);
             log.info("Saved uploaded file to {}", targetPath);
         } catch (IOException e) {
             log.error("Failed to write uploaded file to disk: {}", targetPath, e);
             throw new RuntimeException("Failed to write uploaded file to disk", e);
         }
-
-        // 9. Now handle DB record (find by fileName AND brand)
-        Optional<SopEntry> existingOpt = sopEntryRepository.findByFileNameAndBrand(dbFileName, brand);
+        long size = staged.getSize();
 
         SopEntry toSave;
         if (existingOpt.isPresent()) {
             // update existing entity
             SopEntry existing = existingOpt.get();
+            webViewPdfService.discard(existing.getFilePath(), existing.getContentHash());
+            thumbnailService.discard(existing.getFilePath(), existing.getContentHash());
             existing.setFilePath(targetPath.toString());
             existing.setFileSize(size);
+            existing.setContentHash(staged.getSha256());
             existing.setFileCategory(category);
             existing.setBrand(brand);
             existing.setUploadedBy(uploadedBy);
@@ -207,6 +333,7 @@ public class SopEntryService {
             entity.setFileName(dbFileName);
             entity.setFilePath(targetPath.toString());
             entity.setFileSize(size);
+            entity.setContentHash(staged.getSha256());
             entity.setCreatedAt(LocalDateTime.now());
             entity.setModifiedAt(LocalDateTime.now());
             entity.setBrand(brand);
@@ -218,14 +345,15 @@ public class SopEntryService {
             toSave = entity;
         }
 
+        toSave.setIndexStatus(IndexStatus.PENDING);
         SopEntry saved = sopEntryRepository.save(toSave);
+        sopCatalogService.refreshAfterCommit(saved.getId());
+        suggestionService.fileNamesChanged();
 
-        // Extract and index PDF content asynchronously
-        try {
-            pdfContentIndexService.indexSopEntry(saved);
-        } catch (Exception e) {
-            log.warn("Failed to index PDF content for entry: {}", saved.getId(), e);
-        }
+        // Extract and index PDF content asynchronously, once this transaction has committed
+        indexJobService.enqueue(saved.getId());
+        webViewPdfService.generateAfterCommit(saved);
+        thumbnailService.generateAfterCommit(saved);
 
         // Send notification
         sendNotification("SOP Uploaded: " + saved.getFileName(), "A new SOP has been uploaded.", saved);
@@ -240,11 +368,16 @@ public class SopEntryService {
      * @param sopEntryUpdateRequest metadata to update
      * @return SopEntryResponse of updated entity
      */
-    @Transactional
-    @CacheEvict(value = { "pdfSearchResults", "pdfContent" }, allEntries = true)
     public SopEntryResponse update(String id, SopEntryUpdateRequest sopEntryUpdateRequest) {
-        SopEntry existing = sopEntryRepository.findById(id)
-                .orElseThrow(() -> new IllegalArgumentException("SOP entry not found with id: " + id));
+        return withEntryLocks(id, view -> updateLockKeys(view, sopEntryUpdateRequest),
+                existing -> update(existing, sopEntryUpdateRequest));
+    }
+
+    private SopEntryResponse update(SopEntry existing, SopEntryUpdateRequest sopEntryUpdateRequest) {
+        String id = existing.getId();
+        String originalCategory = existing.getFileCategory();
+        String originalBrand = existing.getBrand();
+        String originalUploadedBy = existing.getUploadedBy();
 
         // 1. Update metadata fields
         if (sopEntryUpdateRequest.getFileCategory() != null && !sopEntryUpdateRequest.getFileCategory().isBlank()) {
@@ -267,6 +400,7 @@ public class SopEntryService {
         }
 
         // 2. Handle file replacement if provided
+        boolean fileReplaced = false;
         MultipartFile file = sopEntryUpdateRequest.getFile();
         if (file != null && !file.isEmpty()) {
             // Validate size
@@ -311,57 +445,69 @@ public class SopEntryService {
 
             Path targetPath = baseDir.resolve(diskFileName).normalize();
 
-            // Backup logic (similar to save)
-            if (Files.exists(targetPath)) {
-                try {
-                    Path backupDir = baseDir.resolve("backups");
-                    Files.createDirectories(backupDir);
-                    String ts = LocalDateTime.now().format(BACKUP_TS_FORMAT);
-                    String backupName = diskBaseName + "_" + ts + extension;
-                    Path backupPath = backupDir.resolve(backupName).normalize();
-                    Files.move(targetPath, backupPath, StandardCopyOption.REPLACE_EXISTING);
-                } catch (IOException e) {
-                    throw new RuntimeException("Failed to backup existing file: " + targetPath, e);
-                }
-            }
-
-            // Save new file
+            StagedUpload staged = stageUpload(file, baseDir);
             try {
-                Files.copy(file.getInputStream(), targetPath, StandardCopyOption.REPLACE_EXISTING);
-            } catch (IOException e) {
-                throw new RuntimeException("Failed to write uploaded file to disk", e);
-            }
-
-            // Delete OLD file if it was different and exists
-            // (Only if path is different, which it likely is if name changed or brand
-            // changed)
-            String oldFilePath = existing.getFilePath();
-            if (oldFilePath != null && !oldFilePath.equals(targetPath.toString())) {
-                try {
-                    Files.deleteIfExists(Paths.get(oldFilePath));
-                } catch (IOException e) {
-                    log.warn("Failed to delete old file: {}", oldFilePath);
+                if (isCurrentContent(existing, targetPath, staged.getSha256())) {
+                    log.info("Uploaded file is identical to the current version of SOP {}; keeping it", id);
+                } else {
+                    backupExistingFile(targetPath, diskBaseName, extension);
+                    try {
+                        staged.moveTo(targetPath);
+                    } catch (IOException e) {
+                        throw new RuntimeException("Failed to write uploaded file to disk", e);
+                    }
+
+                    // Delete OLD file if it was different and exists
+                    // (Only if path is different, which it likely is if name changed or brand
+                    // changed)
+                    String oldFilePath = existing.getFilePath();
+                    if (oldFilePath != null && !oldFilePath.equals(targetPath.toString())) {
+                        try {
+                            Files.deleteIfExists(Paths.get(oldFilePath));
+                        } catch (IOException e) {
+                            log.warn("Failed to delete old file: {}", oldFilePath);
+                        }
+                    }
+
+                    // Update entity with new file info
+                    webViewPdfService.discard(existing.getFilePath(), existing.getContentHash());
+                    thumbnailService.discard(existing.getFilePath(), existing.getContentHash());
+                    existing.setFileName(dbFileName);
+                    existing.setFilePath(targetPath.toString());
+                    existing.setFileSize(staged.getSize());
+                    existing.setContentHash(staged.getSha256());
+                    fileReplaced = true;
                 }
+            } finally {
+                discard(staged);
             }
+        }
 
-            // Update entity with new file info
-            existing.setFileName(dbFileName);
-            existing.setFilePath(targetPath.toString());
-            existing.setFileSize(size);
+        boolean metadataChanged = !Objects.equals(originalCategory, existing.getFileCategory())
+                || !Objects.equals(originalBrand, existing.getBrand())
+                || !Objects.equals(originalUploadedBy, existing.getUploadedBy());
+        if (!fileReplaced && !metadataChanged) {
+            // nothing changed (e.g. the current file uploaded again): no new version
+            return sopMapper.toDto(existing);
         }
 
         existing.setModifiedAt(LocalDateTime.now());
         // Increment version on update
         existing.setVersion(getNextVersion(existing.getVersion(), sopEntryUpdateRequest.getVersionUpdateType()));
+        if (fileReplaced) {
+            existing.setIndexStatus(IndexStatus.PENDING);
+        }
         SopEntry saved = sopEntryRepository.save(existing);
-
-        // Re-index PDF content if file was replaced
-        if (sopEntryUpdateRequest.getFile() != null && !sopEntryUpdateRequest.getFile().isEmpty()) {
-            try {
-                pdfContentIndexService.indexSopEntry(saved);
-            } catch (Exception e) {
-                log.warn("Failed to re-index PDF content for entry: {}", saved.getId(), e);
-            }
+        sopCatalogService.refreshAfterCommit(saved.getId());
+        suggestionService.fileNamesChanged();
+
+        // Re-index PDF content (asynchronously, after commit) if file was replaced
+        if (fileReplaced) {
+            indexJobService.enqueue(saved.getId());
+            webViewPdfService.generateAfterCommit(saved);
+            thumbnailService.generateAfterCommit(saved);
+        } else {
+            invertedIndexService.updateMetadata(saved);
         }
 
         // Send notification
@@ -375,11 +521,15 @@ public class SopEntryService {
      *
      * @param id the ID of the SOP entry to delete
      */
-    @Transactional
-    @CacheEvict(value = { "pdfSearchResults", "pdfContent" }, allEntries = true)
     public void delete(String id) {
-        SopEntry existing = sopEntryRepository.findById(id)
-                .orElseThrow(() -> new IllegalArgumentException("SOP entry not found with id: " + id));
+        withEntryLocks(id, view -> List.of(lockKey(view.getBrand(), view.getFileName())), existing -> {
+            delete(existing);
+            return Boolean.TRUE;
+        });
+    }
+
+    private void delete(SopEntry existing) {
+        String id = existing.getId();
 
         // Delete file from disk
         if (existing.getFilePath() != null) {
@@ -393,7 +543,14 @@ public class SopEntryService {
             }
         }
 
+        webViewPdfService.discard(existing.getFilePath(), existing.getContentHash());
+        thumbnailService.discard(existing.getFilePath(), existing.getContentHash());
         sopEntryRepository.delete(existing);
+        sopCatalogService.refreshAfterCommit(id);
+        sopContentRepository.deleteById(id);
+        extractionQuarantineService.clear(id);
+        invertedIndexService.remove(id);
+        suggestionService.fileNamesChanged();
         log.info("Deleted SOP entry with id: {}", id);
 
         // Send notification
@@ -402,6 +559,124 @@ public class SopEntryService {
 
     /* ---------- helper methods ---------- */
 
+    /**
+     * Run {@code change} on an existing entry in a transaction, holding the
+     * locks of the SOPs it touches (see {@link DocumentLocks}). If a
+     * concurrent change renamed the entry while this one waited, the locks
+     * of its new identity are taken instead.
+     */
+    private <T> T withEntryLocks(String id, Function<SopEntryRepository.SopEntryView, List<DocumentLocks.Key>> keysOf,
+            Function<SopEntry, T> change) {
+        while (true) {
+            List<DocumentLocks.Key> keys = keysOf.apply(findView(id));
+            Optional<T> result = documentLocks.withLocks(keys, () -> transaction.execute(status -> {
+                if (!keysOf.apply(findView(id)).equals(keys)) {
+                    return Optional.<T>empty();
+                }
+                SopEntry existing = sopEntryRepository.findById(id)
+                        .orElseThrow(() -> new IllegalArgumentException("SOP entry not found with id: " + id));
+                return Optional.of(change.apply(existing));
+            }));
+            if (result.isPresent()) {
+                return result.get();
+            }
+        }
+    }
+
+    private SopEntryRepository.SopEntryView findView(String id) {
+        return sopEntryRepository.findViewById(id)
+                .orElseThrow(() -> new IllegalArgumentException("SOP entry not found with id: " + id));
+    }
+
+    /**
+     * The entry's current identity, plus its new one if the update renames
+     * it or moves it to another brand.
+     */
+    private List<DocumentLocks.Key> updateLockKeys(SopEntryRepository.SopEntryView view,
+            SopEntryUpdateRequest request) {
+        String brand = request.getBrand() != null && !request.getBrand().isBlank()
+                ? request.getBrand().toLowerCase(Locale.ROOT).trim()
+                : view.getBrand();
+        String fileName = view.getFileName();
+        MultipartFile file = request.getFile();
+        if (file != null && !file.isEmpty() && file.getOriginalFilename() != null) {
+            fileName = beautifyFileNameForDb(StringUtils.cleanPath(file.getOriginalFilename()));
+        }
+        DocumentLocks.Key current = lockKey(view.getBrand(), view.getFileName());
+        DocumentLocks.Key target = lockKey(brand, fileName);
+        return current.equals(target) ? List.of(current) : List.of(current, target);
+    }
+
+    /**
+     * Lock key of the SOP with the given DB file name.
+     */
+    static DocumentLocks.Key lockKey(String brand, String dbFileName) {
+        return new DocumentLocks.Key(brand, beautifyForDisk(dbFileName));
+    }
+
+    private static StagedUpload stageUpload(MultipartFile file, Path baseDir) {
+        try (InputStream in = file.getInputStream()) {
+            return StagedUpload.stage(in, baseDir);
+        } catch (IOException e) {
+            log.error("Failed to write uploaded file to disk: {}", baseDir, e);
+            throw new RuntimeException("Failed to write uploaded file to disk", e);
+        }
+    }
+
+    private static void discard(StagedUpload staged) {
+        try {
+            staged.close();
+        } catch (IOException e) {
+            log.warn("Failed to delete staged upload: {}", staged.getPath(), e);
+        }
+    }
+
+    /**
+     * Whether the entry's current file is at {@code targetPath} and has the
+     * given SHA-256. Entries stored before hashes were recorded are hashed
+     * from disk.
+     */
+    static boolean isCurrentContent(SopEntry entry, Path targetPath, String sha256) {
+        if (entry.getFilePath() == null || !entry.getFilePath().equals(targetPath.toString())) {
+            return false;
+        }
+        String current = entry.getContentHash();
+        if (current == null) {
+            if (!Files.isRegularFile(targetPath)) {
+                return false;
+            }
+            try {
+                current = StagedUpload.sha256Of(targetPath);
+            } catch (IOException e) {
+                log.warn("Could not hash current file: {}", targetPath, e);
+                return false;
+            }
+        }
+        return current.equals(sha256);
+    }
+
+    /**
+     * If a file exists at {@code targetPath}, move it to
+     * basePath/backups/&lt;name&gt;_ts.ext.
+     */
+    static void backupExistingFile(Path targetPath, String diskBaseName, String extension) {
+        if (!Files.exists(targetPath)) {
+            return;
+        }
+        try {
+            Path backupDir = targetPath.resolveSibling("backups");
+            Files.createDirectories(backupDir);
+            String ts = LocalDateTime.now().format(BACKUP_TS_FORMAT); // dd-MM-yyyy_HH-mm-ss
+            String backupName = diskBaseName + "_" + ts + extension; // e.g. testing_app_now_25-11-2025_12-00-00.pdf
+            Path backupPath = backupDir.resolve(backupName).normalize();
+            Files.move(targetPath, backupPath, StandardCopyOption.REPLACE_EXISTING);
+            log.info("Backed up existing file '{}' to '{}'", targetPath, backupPath);
+        } catch (IOException e) {
+            log.error("Failed to backup existing file: {}", targetPath, e);
+            throw new RuntimeException("Failed to backup existing file: " + targetPath, e);
+        }
+    }
+
     private static String getExtensionWithDot(String filename) {
         if (filename == null)
             return "";
@@ -447,7 +722,7 @@ public class SopEntryService {
      * - "v1.0" + MAJOR -> "v2.0"
      * - "v1.5" + MAJOR -> "v2.0"
      */
-    private static String getNextVersion(String currentVersion, String updateType) {
+    static String getNextVersion(String currentVersion, String updateType) {
         if (currentVersion == null || currentVersion.isEmpty()) {
             return "v1.0";
         }
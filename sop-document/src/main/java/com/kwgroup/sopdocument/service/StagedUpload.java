@@ -0,0 +1,125 @@
+package com.kwgroup.sopdocument.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * An uploaded file streamed into a staging directory, with its SHA-256
+ * computed on the way. The staging directory lives next to the final
+ * location so {@link #moveTo} is an atomic rename; a staged file that is
+ * never moved is deleted on {@link #close()}.
+ */
+public final class StagedUpload implements AutoCloseable {
+
+    static final String STAGING_DIR = ".staging";
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final Path path;
+    private final String sha256;
+    private final long size;
+    private boolean moved;
+
+    private StagedUpload(Path path, String sha256, long size) {
+        this.path = path;
+        this.sha256 = sha256;
+        this.size = size;
+    }
+
+    /**
+     * Stream {@code in} to a temp file under {@code baseDir/.staging}.
+     */
+    public static StagedUpload stage(InputStream in, Path baseDir) throws IOException {
+        return stage(in, baseDir, 0);
+    }
+
+    /**
+     * Stream {@code in} to a temp file under {@code baseDir/.staging}, giving
+     * up once more than {@code maxBytes} have arrived.
+     *
+     * @param maxBytes size limit, 0 for none
+     * @throws IllegalArgumentException if the stream exceeds the limit
+     */
+    public static StagedUpload stage(InputStream in, Path baseDir, long maxBytes) throws IOException {
+        Path stagingDir = baseDir.resolve(STAGING_DIR);
+        Files.createDirectories(stagingDir);
+        Path tmp = Files.createTempFile(stagingDir, "upload-", ".part");
+        try (DigestInputStream digestIn = new DigestInputStream(in, sha256Digest());
+                OutputStream out = Files.newOutputStream(tmp)) {
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            long size = 0;
+            for (int n = digestIn.read(buffer); n >= 0; n = digestIn.read(buffer)) {
+                size += n;
+                if (maxBytes > 0 && size > maxBytes) {
+                    throw new IllegalArgumentException("File exceeds maximum allowed size: " + maxBytes);
+                }
+                out.write(buffer, 0, n);
+            }
+            return new StagedUpload(tmp, HexFormat.of().formatHex(digestIn.getMessageDigest().digest()), size);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+    }
+
+    /**
+     * Adopt a file already written next to the final location (e.g. an
+     * assembled resumable upload), hashing it from disk.
+     */
+    public static StagedUpload of(Path file) throws IOException {
+        return new StagedUpload(file, sha256Of(file), Files.size(file));
+    }
+
+    /**
+     * SHA-256 (hex) of a file already on disk.
+     */
+    public static String sha256Of(Path file) throws IOException {
+        try (DigestInputStream in = new DigestInputStream(Files.newInputStream(file), sha256Digest())) {
+            in.transferTo(OutputStream.nullOutputStream());
+            return HexFormat.of().formatHex(in.getMessageDigest().digest());
+        }
+    }
+
+    static MessageDigest sha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Atomically move the staged file to its final location, replacing any
+     * file there.
+     */
+    public void moveTo(Path target) throws IOException {
+        Files.move(path, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        moved = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!moved) {
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.kwgroup.sopdocument.service;
+
+import com.kwgroup.sopdocument.dto.SopSuggestions;
+import com.kwgroup.sopdocument.repository.SopEntryRepository;
+import com.kwgroup.sopdocument.search.PrefixDictionary;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Autocomplete for the search box.
+ *
+ * Term completions come from the content index's term dictionary; file name
+ * completions from a {@link PrefixDictionary} over all file names, built
+ * from the database on first use and rebuilt lazily after an entry is
+ * created, renamed or deleted. Lookups never touch the database or PDF text.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SuggestionService {
+
+    private final SopEntryRepository sopEntryRepository;
+    private final InvertedIndexService invertedIndexService;
+
+    private volatile PrefixDictionary fileNameDictionary;
+
+    /**
+     * @param prefix the text typed so far
+     * @param limit  maximum number of suggestions per kind
+     * @return content terms and file names starting with the prefix, most
+     *         frequent first
+     */
+    public SopSuggestions suggest(String prefix, int limit) {
+        String trimmed = prefix == null ? "" : prefix.trim();
+        if (trimmed.isEmpty()) {
+            return SopSuggestions.builder().terms(List.of()).fileNames(List.of()).build();
+        }
+        return SopSuggestions.builder()
+                .terms(invertedIndexService.suggestTerms(trimmed, limit))
+                .fileNames(fileNames().complete(trimmed, limit))
+                .build();
+    }
+
+    /**
+     * Drop the file name dictionary once the current transaction commits.
+     */
+    public void fileNamesChanged() {
+        TransactionHooks.afterCommit(() -> fileNameDictionary = null);
+    }
+
+    private PrefixDictionary fileNames() {
+        PrefixDictionary dictionary = fileNameDictionary;
+        if (dictionary == null) {
+            Map<String, Integer> counts = new HashMap<>();
+            for (String fileName : sopEntryRepository.findAllFileNames()) {
+                if (fileName != null && !fileName.isBlank()) {
+                    counts.merge(fileName, 1, Integer::sum);
+                }
+            }
+            dictionary = PrefixDictionary.ofPhrases(counts);
+            fileNameDictionary = dictionary;
+            log.debug("Built file name suggestions for {} names", dictionary.size());
+        }
+        return dictionary;
+    }
+}
@@ -0,0 +1,106 @@
+package com.kwgroup.sopdocument.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Deadlines for background PDF work nobody waits on (web view rewrites,
+ * thumbnail renders): the worker thread is interrupted once the task has
+ * run for too long, so one pathological file cannot hold a small pool.
+ * The clock starts when the task starts running, not when it is queued.
+ *
+ * Tasks must stop on interruption: PDFBox reads files through interruptible
+ * channels, and long loops should check {@link Thread#isInterrupted()}.
+ */
+@Service
+public class TaskDeadlines {
+
+    /**
+     * Work that may be interrupted.
+     */
+    @FunctionalInterface
+    public interface Task<T> {
+        T run() throws IOException;
+    }
+
+    private ScheduledThreadPoolExecutor watchdog;
+
+    @PostConstruct
+    public void init() {
+        watchdog = new ScheduledThreadPoolExecutor(1, new CustomizableThreadFactory("Task-Deadline-"));
+        watchdog.setRemoveOnCancelPolicy(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdownNow();
+    }
+
+    /**
+     * Run {@code task} on the current thread, interrupting it after
+     * {@code timeoutSeconds}.
+     *
+     * @throws TimeoutException if the task failed after being interrupted
+     *                          by its deadline
+     */
+    public <T> T run(long timeoutSeconds, Task<T> task) throws IOException, TimeoutException {
+        Watch watch = new Watch(Thread.currentThread());
+        ScheduledFuture<?> timer = watchdog.schedule(watch::expire, timeoutSeconds, TimeUnit.SECONDS);
+        boolean expired = false;
+        try {
+            return task.run();
+        } catch (IOException | RuntimeException e) {
+            expired = watch.finish();
+            if (expired) {
+                TimeoutException timeout = new TimeoutException("Exceeded " + timeoutSeconds + " s");
+                timeout.initCause(e);
+                throw timeout;
+            }
+            throw e;
+        } finally {
+            timer.cancel(false);
+            expired |= watch.finish();
+            if (expired) {
+                // the pool thread goes on with other tasks
+                Thread.interrupted();
+            }
+        }
+    }
+
+    /**
+     * Interrupts the worker unless the task finished first.
+     */
+    private static final class Watch {
+
+        private final Thread worker;
+        private boolean finished;
+        private boolean expired;
+
+        Watch(Thread worker) {
+            this.worker = worker;
+        }
+
+        synchronized void expire() {
+            if (!finished) {
+                expired = true;
+                worker.interrupt();
+            }
+        }
+
+        /**
+         * @return whether the deadline interrupted the worker
+         */
+        synchronized boolean finish() {
+            finished = true;
+            return expired;
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.kwgroup.sopdocument.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.kwgroup.sopdocument.model.SopEntry;
+import com.kwgroup.sopdocument.repository.SopEntryRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * First-page thumbnails of SOP files for the listing.
+ *
+ * Page 1 is rendered once at the largest {@link Size} and halved for the
+ * smaller ones, on a bounded background pool ("PDF-Thumbnail-") after an
+ * upload commits. Images are stored as PNG in
+ * {@code <brand base>/.thumbnails/<sha256>-<width>.png}, keyed by content so
+ * they are never stale. Entries uploaded before thumbnails existed are
+ * rendered on first request, waiting up to
+ * {@code sop.thumbnails.timeout-seconds}.
+ *
+ * Very tall pages are scaled to at most {@link #MAX_ASPECT} times the width
+ * in height rather than to the full width. A render is interrupted after
+ * {@code sop.thumbnails.render-timeout-seconds} (see {@link TaskDeadlines});
+ * files that time out are not tried again until the process restarts.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ThumbnailService {
+
+    static final String THUMBNAIL_DIR = ".thumbnails";
+
+    // largest height of a thumbnail, in widths
+    static final int MAX_ASPECT = 2;
+
+    /**
+     * Thumbnail widths (narrower for very tall pages); each is half the next.
+     */
+    public enum Size {
+        SMALL(160),
+        MEDIUM(320),
+        LARGE(640);
+
+        private final int width;
+
+        Size(int width) {
+            this.width = width;
+        }
+
+        public int width() {
+            return width;
+        }
+
+        public static Size fromKey(String key) {
+            try {
+                return valueOf(key.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(
+                        "Unsupported thumbnail size: " + key + " (use small, medium or large)");
+            }
+        }
+    }
+
+    /**
+     * The thumbnail could not be produced in time (pool busy or slow render).
+     */
+    public static class ThumbnailUnavailableException extends Exception {
+
+        ThumbnailUnavailableException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    @Value("${sop.thumbnails.threads:1}")
+    private int threads;
+
+    @Value("${sop.thumbnails.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Value("${sop.thumbnails.timeout-seconds:10}")
+    private long timeoutSeconds;
+
+    @Value("${sop.thumbnails.render-timeout-seconds:30}")
+    private long renderTimeoutSeconds;
+
+    @Value("${sop.thumbnails.memory-budget-mb:64}")
+    private long memoryBudgetMb;
+
+    private final SopEntryRepository sopEntryRepository;
+    private final TaskDeadlines taskDeadlines;
+
+    // content hashes whose render timed out
+    private final Cache<String, Boolean> quarantined = Caffeine.newBuilder().maximumSize(10_000).build();
+
+    private ThreadPoolExecutor pool;
+
+    @PostConstruct
+    public void init() {
+        pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("PDF-Thumbnail-"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * The thumbnail of a file, rendering it first if needed.
+     *
+     * @return empty if the file has no content hash yet or cannot be rendered
+     */
+    public Optional<Path> thumbnail(String filePath, String contentHash, Size size)
+            throws ThumbnailUnavailableException {
+        if (filePath == null || contentHash == null) {
+            return Optional.empty();
+        }
+        Path source = Paths.get(filePath);
+        Path target = thumbnailPath(source, contentHash, size);
+        if (Files.isRegularFile(target)) {
+            return Optional.of(target);
+        }
+        if (quarantined.getIfPresent(contentHash) != null) {
+            return Optional.empty();
+        }
+
+        Future<Boolean> future;
+        try {
+            future = pool.submit(() -> renderWithDeadline(source, contentHash));
+        } catch (RejectedExecutionException e) {
+            throw new ThumbnailUnavailableException("Thumbnail queue is full", e);
+        }
+        try {
+            return future.get(timeoutSeconds, TimeUnit.SECONDS) ? Optional.of(target) : Optional.empty();
+        } catch (TimeoutException e) {
+            // keeps rendering until its own deadline; a later request finds the file
+            throw new ThumbnailUnavailableException("Thumbnail not ready after " + timeoutSeconds + " s", e);
+        } catch (ExecutionException e) {
+            log.warn("Could not render thumbnail of {}: {}", source.getFileName(), e.getCause().getMessage());
+            return Optional.empty();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ThumbnailUnavailableException("Interrupted while waiting for thumbnail", e);
+        }
+    }
+
+    /**
+     * Render the thumbnails of the entry's file once the current transaction
+     * has committed.
+     */
+    public void generateAfterCommit(SopEntry entry) {
+        if (entry.getContentHash() == null || entry.getFilePath() == null) {
+            return;
+        }
+        Path source = Paths.get(entry.getFilePath());
+        String contentHash = entry.getContentHash();
+        TransactionHooks.afterCommit(() -> {
+            try {
+                pool.execute(() -> {
+                    try {
+                        renderWithDeadline(source, contentHash);
+                    } catch (IOException | RuntimeException e) {
+                        log.warn("Could not render thumbnail of {}: {}", source.getFileName(), e.getMessage());
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                log.warn("Thumbnail queue is full; {} is rendered on first request", source.getFileName());
+            }
+        });
+    }
+
+    /**
+     * Delete the thumbnails of a file that is being replaced or deleted, once
+     * the current transaction has committed and unless another entry of the
+     * same content still uses them, i.e. has its file in the same directory.
+     */
+    public void discard(String filePath, String contentHash) {
+        if (filePath == null || contentHash == null) {
+            return;
+        }
+        TransactionHooks.afterCommit(() -> {
+            Path directory = thumbnailDir(Paths.get(filePath));
+            if (sopEntryRepository.findFilePathsByContentHash(contentHash).stream()
+                    .anyMatch(other -> thumbnailDir(Paths.get(other)).equals(directory))) {
+                return;
+            }
+            for (Size size : Size.values()) {
+                Path path = thumbnailPath(Paths.get(filePath), contentHash, size);
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    log.warn("Failed to delete thumbnail {}", path, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * {@link #render} on the current pool thread, interrupted after
+     * {@code sop.thumbnails.render-timeout-seconds}.
+     *
+     * @return false if the document has no pages or timed out
+     */
+    private boolean renderWithDeadline(Path source, String contentHash) throws IOException {
+        try {
+            return taskDeadlines.run(renderTimeoutSeconds, () -> render(source, contentHash));
+        } catch (TimeoutException e) {
+            quarantined.put(contentHash, true);
+            log.warn("Thumbnail of {} exceeded {} s, cancelled", source.getFileName(), renderTimeoutSeconds);
+            return false;
+        }
+    }
+
+    /**
+     * @return false if the document has no pages
+     */
+    private boolean render(Path source, String contentHash) throws IOException {
+        Size[] sizes = Size.values();
+        if (Files.isRegularFile(thumbnailPath(source, contentHash, sizes[0]))) {
+            // rendered meanwhile by another request or the upload
+            return true;
+        }
+        MemoryUsageSetting memory = MemoryUsageSetting.setupMixed(memoryBudgetMb * 1024L * 1024L);
+        BufferedImage image;
+        try (PDDocument document = Loader.loadPDF(source.toFile(), memory.streamCache)) {
+            if (document.getNumberOfPages() == 0) {
+                return false;
+            }
+            PDPage page = document.getPage(0);
+            PDRectangle box = page.getCropBox();
+            boolean rotated = page.getRotation() % 180 != 0;
+            float pageWidth = rotated ? box.getHeight() : box.getWidth();
+            float pageHeight = rotated ? box.getWidth() : box.getHeight();
+            int width = sizes[sizes.length - 1].width();
+            // full width, unless that makes a very tall page too high
+            float scale = Math.min(width / pageWidth, width * MAX_ASPECT / pageHeight);
+            image = new PDFRenderer(document).renderImage(0, scale, ImageType.RGB);
+        }
+
+        // largest first; each smaller size is the previous one halved
+        for (int i = sizes.length - 1; i >= 0; i--) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Thumbnail render cancelled");
+            }
+            if (i < sizes.length - 1) {
+                image = halve(image);
+            }
+            write(image, thumbnailPath(source, contentHash, sizes[i]));
+        }
+        log.info("Rendered thumbnails of {}", source.getFileName());
+        return true;
+    }
+
+    private static BufferedImage halve(BufferedImage image) {
+        int width = Math.max(1, image.getWidth() / 2);
+        int height = Math.max(1, image.getHeight() / 2);
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return scaled;
+    }
+
+    private static void write(BufferedImage image, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path tmp = Files.createTempFile(target.getParent(), "thumb-", ".part");
+        try {
+            if (!ImageIO.write(image, "png", tmp.toFile())) {
+                throw new IOException("No PNG writer available");
+            }
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static Path thumbnailPath(Path file, String contentHash, Size size) {
+        return thumbnailDir(file).resolve(contentHash + "-" + size.width() + ".png");
+    }
+
+    private static Path thumbnailDir(Path file) {
+        return file.toAbsolutePath().normalize().resolveSibling(THUMBNAIL_DIR);
+    }
+}
@@ -0,0 +1,105 @@
+package com.kwgroup.sopdocument.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Creates the unique constraint on (brand, file_name) of
+ * {@code sop_documents} in databases written by older versions. Schema
+ * updates (ddl-auto) only log a warning when the constraint cannot be added,
+ * which is the case as long as concurrent uploads left duplicate entries of
+ * the same SOP behind.
+ *
+ * Duplicates are merged into the most recently modified entry, whose row
+ * describes the file now at the SOP's path; the others are deleted with
+ * their content, index jobs and quarantine records (files are left alone).
+ * If the constraint still cannot be created, startup fails: without it,
+ * writes from several instances could create duplicates again.
+ *
+ * Runs while the context starts, after {@link ContentTableMigration} and
+ * before the web server takes uploads, so no concurrent save can add a
+ * duplicate between the clean-up and the ALTER. The catalog (see
+ * {@link SopCatalogService}) depends on this bean and so never sees the
+ * deleted entries; the startup indexing (see {@link BulkIndexService}) drops
+ * them from the content index. Safe to re-run: does nothing once the
+ * constraint exists.
+ */
+@Service
+@DependsOn({ "entityManagerFactory", "contentTableMigration" })
+@RequiredArgsConstructor
+@Slf4j
+public class UniqueSopMigration {
+
+    static final String CONSTRAINT = "UK_SOP_BRAND_FILE_NAME";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+
+    @PostConstruct
+    public void migrate() {
+        Integer existing = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLE_CONSTRAINTS "
+                        + "WHERE TABLE_NAME = 'SOP_DOCUMENTS' AND CONSTRAINT_NAME = ?",
+                Integer.class, CONSTRAINT);
+        if (existing != null && existing > 0) {
+            return;
+        }
+
+        List<String> removed = new TransactionTemplate(transactionManager).execute(status -> {
+            List<String> duplicates = duplicateIds();
+            for (String id : duplicates) {
+                jdbcTemplate.update("DELETE FROM sop_document_contents WHERE sop_id = ?", id);
+                jdbcTemplate.update("DELETE FROM index_jobs WHERE sop_id = ?", id);
+                jdbcTemplate.update("DELETE FROM extraction_quarantine WHERE sop_id = ?", id);
+                jdbcTemplate.update("DELETE FROM sop_documents WHERE id = ?", id);
+            }
+            try {
+                jdbcTemplate.execute("ALTER TABLE sop_documents ADD CONSTRAINT " + CONSTRAINT
+                        + " UNIQUE (brand, file_name)");
+            } catch (RuntimeException e) {
+                throw new IllegalStateException("Could not create unique constraint " + CONSTRAINT
+                        + " on sop_documents (brand, file_name)", e);
+            }
+            return duplicates;
+        });
+
+        if (!removed.isEmpty()) {
+            log.warn("Merged duplicate SOP entries: removed {} older entries {}", removed.size(), removed);
+        }
+        log.info("Created unique constraint {} on sop_documents (brand, file_name)", CONSTRAINT);
+    }
+
+    /**
+     * Ids of all entries but the most recently modified one of every
+     * (brand, file_name) that has more than one.
+     */
+    private List<String> duplicateIds() {
+        List<String> ids = new ArrayList<>();
+        String previousBrand = null;
+        String previousFileName = null;
+        for (Map<String, Object> row : jdbcTemplate.queryForList(
+                "SELECT d.id, d.brand, d.file_name FROM sop_documents d "
+                        + "WHERE EXISTS (SELECT 1 FROM sop_documents o WHERE o.brand = d.brand "
+                        + "AND o.file_name = d.file_name AND o.id <> d.id) "
+                        + "ORDER BY d.brand, d.file_name, d.modified_at DESC NULLS LAST, d.id")) {
+            String brand = (String) row.get("BRAND");
+            String fileName = (String) row.get("FILE_NAME");
+            if (brand.equals(previousBrand) && fileName.equals(previousFileName)) {
+                ids.add((String) row.get("ID"));
+            }
+            previousBrand = brand;
+            previousFileName = fileName;
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,255 @@
+package com.kwgroup.sopdocument.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.kwgroup.sopdocument.model.SopEntry;
+import com.kwgroup.sopdocument.repository.SopEntryRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObjectKey;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdfwriter.compress.CompressParameters;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Compacted "web view" copies of uploaded PDFs, served by
+ * {@code /api/sops/view/{id}} in place of the original.
+ *
+ * After an upload commits, the file is rewritten on a small background pool:
+ * only objects reachable from the trailer are written (unused objects are
+ * dropped), uncompressed streams are Flate-compressed and objects are packed
+ * into compressed object streams with a compressed xref. The copy is stored
+ * as {@code <brand base>/.web/<sha256>.pdf}, so it is keyed by content and
+ * never stale; it is kept only if smaller than the original. Encrypted and
+ * signed files are served as they are: rewriting would break signatures.
+ *
+ * A rewrite is interrupted after {@code sop.web-view.timeout-seconds} (see
+ * {@link TaskDeadlines}); files that time out or fail are not tried again
+ * until the process restarts, so one bad PDF cannot keep the pool busy.
+ *
+ * PDFBox cannot write linearized files, so pages are not reordered for
+ * first-page rendering; viewers use byte ranges for that instead.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class WebViewPdfService {
+
+    static final String WEB_VIEW_DIR = ".web";
+
+    // larger streams are left as they are rather than buffered for recompression
+    private static final int MAX_RECOMPRESS_BYTES = 16 * 1024 * 1024;
+
+    @Value("${sop.web-view.enabled:true}")
+    private boolean enabled;
+
+    @Value("${sop.web-view.threads:1}")
+    private int threads;
+
+    @Value("${sop.web-view.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Value("${sop.web-view.memory-budget-mb:64}")
+    private long memoryBudgetMb;
+
+    @Value("${sop.web-view.timeout-seconds:60}")
+    private long timeoutSeconds;
+
+    private final TaskDeadlines taskDeadlines;
+    private final SopEntryRepository sopEntryRepository;
+
+    // whether a web view file exists, by path
+    private final Cache<Path, Boolean> existing = Caffeine.newBuilder().maximumSize(10_000).build();
+    // content hashes whose rewrite timed out or failed
+    private final Cache<String, Boolean> quarantined = Caffeine.newBuilder().maximumSize(10_000).build();
+    private ThreadPoolExecutor pool;
+
+    @PostConstruct
+    public void init() {
+        pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("PDF-WebView-"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * The web view copy of the entry's current file, if one has been built.
+     */
+    public Optional<Path> webViewOf(String filePath, String contentHash) {
+        if (!enabled || filePath == null || contentHash == null) {
+            return Optional.empty();
+        }
+        Path path = webViewPath(Paths.get(filePath), contentHash);
+        return existing.get(path, Files::isRegularFile) ? Optional.of(path) : Optional.empty();
+    }
+
+    /**
+     * Build the web view copy of the entry's file once the current
+     * transaction has committed.
+     */
+    public void generateAfterCommit(SopEntry entry) {
+        if (!enabled || entry.getContentHash() == null || entry.getFilePath() == null) {
+            return;
+        }
+        Path source = Paths.get(entry.getFilePath());
+        String contentHash = entry.getContentHash();
+        TransactionHooks.afterCommit(() -> {
+            try {
+                pool.execute(() -> generate(source, contentHash));
+            } catch (RejectedExecutionException e) {
+                log.warn("Web view queue is full; serving the original of {}", source.getFileName());
+            }
+        });
+    }
+
+    /**
+     * Delete the web view copy of a file that is being replaced or deleted,
+     * once the current transaction has committed and unless another entry
+     * of the same content still uses it, i.e. has its file in the same
+     * directory.
+     */
+    public void discard(String filePath, String contentHash) {
+        if (filePath == null || contentHash == null) {
+            return;
+        }
+        TransactionHooks.afterCommit(() -> {
+            Path path = webViewPath(Paths.get(filePath), contentHash);
+            if (sopEntryRepository.findFilePathsByContentHash(contentHash).stream()
+                    .anyMatch(other -> webViewPath(Paths.get(other), contentHash).equals(path))) {
+                return;
+            }
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.warn("Failed to delete web view copy {}", path, e);
+            }
+            existing.invalidate(path);
+        });
+    }
+
+    private void generate(Path source, String contentHash) {
+        Path target = webViewPath(source, contentHash);
+        if (Files.isRegularFile(target)) {
+            existing.put(target, true);
+            return;
+        }
+        if (quarantined.getIfPresent(contentHash) != null) {
+            return;
+        }
+        Path tmp = null;
+        try {
+            Files.createDirectories(target.getParent());
+            Path part = Files.createTempFile(target.getParent(), "web-", ".part");
+            tmp = part;
+            long originalSize = Files.size(source);
+            if (!taskDeadlines.run(timeoutSeconds, () -> writeCompacted(source, part))) {
+                return;
+            }
+            long compactedSize = Files.size(tmp);
+            if (compactedSize >= originalSize) {
+                log.info("Web view of {} would not be smaller ({} vs {} bytes); serving the original",
+                        source.getFileName(), compactedSize, originalSize);
+                return;
+            }
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            tmp = null;
+            existing.put(target, true);
+            log.info("Built web view of {}: {} -> {} bytes", source.getFileName(), originalSize, compactedSize);
+        } catch (TimeoutException e) {
+            quarantined.put(contentHash, true);
+            log.warn("Web view of {} exceeded {} s, cancelled; serving the original", source.getFileName(),
+                    timeoutSeconds);
+        } catch (IOException | RuntimeException e) {
+            quarantined.put(contentHash, true);
+            log.warn("Could not build web view of {}: {}", source.getFileName(), e.getMessage());
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException e) {
+                    log.warn("Failed to delete {}", tmp, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return false if the file must not be rewritten (encrypted or signed)
+     */
+    private boolean writeCompacted(Path source, Path target) throws IOException {
+        MemoryUsageSetting memory = MemoryUsageSetting.setupMixed(memoryBudgetMb * 1024L * 1024L);
+        try (PDDocument document = Loader.loadPDF(source.toFile(), memory.streamCache)) {
+            if (document.isEncrypted()) {
+                log.info("Not building web view of encrypted PDF {}", source.getFileName());
+                return false;
+            }
+            if (!document.getSignatureDictionaries().isEmpty()) {
+                log.info("Not building web view of signed PDF {}", source.getFileName());
+                return false;
+            }
+            List<COSObjectKey> keys = new ArrayList<>(document.getDocument().getXrefTable().keySet());
+            for (COSObjectKey key : keys) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Web view rewrite cancelled");
+                }
+                COSBase object = document.getDocument().getObjectFromPool(key).getObject();
+                if (object instanceof COSStream stream) {
+                    compress(stream);
+                }
+            }
+            document.save(target.toFile(), CompressParameters.DEFAULT_COMPRESSION);
+            return true;
+        }
+    }
+
+    /**
+     * Flate-compress a stream stored without filters. XMP metadata stays
+     * uncompressed so tools can still find it.
+     */
+    private static void compress(COSStream stream) throws IOException {
+        if (stream.getFilters() != null || COSName.METADATA.equals(stream.getCOSName(COSName.TYPE))
+                || stream.getLength() > MAX_RECOMPRESS_BYTES) {
+            return;
+        }
+        byte[] data;
+        try (InputStream in = stream.createRawInputStream()) {
+            data = in.readAllBytes();
+        }
+        try (OutputStream out = stream.createOutputStream(COSName.FLATE_DECODE)) {
+            out.write(data);
+        }
+    }
+
+    private static Path webViewPath(Path file, String contentHash) {
+        return file.toAbsolutePath().normalize().resolveSibling(WEB_VIEW_DIR).resolve(contentHash + ".pdf");
+    }
+}
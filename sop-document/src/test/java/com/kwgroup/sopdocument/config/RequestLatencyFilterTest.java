@@ -0,0 +1,32 @@
+package com.kwgroup.sopdocument.config;
+
+import com.kwgroup.sopdocument.service.RequestLatencyMonitor;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class RequestLatencyFilterTest {
+
+    private final RequestLatencyFilter filter = new RequestLatencyFilter(mock(RequestLatencyMonitor.class));
+
+    @Test
+    void shouldNotFilter_shouldTimeJsonEndpointsOnly() {
+        assertFalse(filter.shouldNotFilter(get("/api/sops")));
+        assertFalse(filter.shouldNotFilter(get("/api/sops/search")));
+        assertFalse(filter.shouldNotFilter(get("/api/sops/sop-1")));
+
+        assertTrue(filter.shouldNotFilter(get("/index.html")));
+        assertTrue(filter.shouldNotFilter(get("/api/sops/download/sop-1")));
+        assertTrue(filter.shouldNotFilter(get("/api/sops/view/sop-1/returns.pdf")));
+        assertTrue(filter.shouldNotFilter(get("/api/sops/sop-1/thumbnail")));
+        assertTrue(filter.shouldNotFilter(get("/api/sops/upload/bulk")));
+        assertTrue(filter.shouldNotFilter(get("/api/sops/uploads/u-1/finish")));
+    }
+
+    private static MockHttpServletRequest get(String uri) {
+        return new MockHttpServletRequest("GET", uri);
+    }
+}
@@ -0,0 +1,61 @@
+package com.kwgroup.sopdocument.controller;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ByteRangeRequestTest {
+
+    private static final String ETAG = "\"abc-1000\"";
+    // Thu, 01 Jan 2026 00:00:00 GMT plus some millis
+    private static final long LAST_MODIFIED = 1767225600123L;
+
+    @Test
+    void evaluate_shouldClampSingleAndSuffixRanges() {
+        ByteRangeRequest single = ByteRangeRequest.evaluate("bytes=900-2000", null, ETAG, LAST_MODIFIED, 1000);
+        ByteRangeRequest suffix = ByteRangeRequest.evaluate("bytes=-100", null, ETAG, LAST_MODIFIED, 1000);
+
+        assertEquals(ByteRangeRequest.Outcome.PARTIAL, single.outcome());
+        assertArrayEquals(new long[] { 900, 999 }, single.ranges().get(0));
+        assertArrayEquals(new long[] { 900, 999 }, suffix.ranges().get(0));
+    }
+
+    @Test
+    void evaluate_shouldKeepEverySatisfiableRangeOfAMultiRangeRequest() {
+        ByteRangeRequest ranges = ByteRangeRequest.evaluate("bytes=0-99, 500-599, 5000-6000", null, ETAG,
+                LAST_MODIFIED, 1000);
+
+        assertEquals(ByteRangeRequest.Outcome.PARTIAL, ranges.outcome());
+        assertEquals(2, ranges.ranges().size());
+        assertArrayEquals(new long[] { 500, 599 }, ranges.ranges().get(1));
+    }
+
+    @Test
+    void evaluate_shouldRejectRangesPastTheEndAndIgnoreMalformedOnes() {
+        assertEquals(ByteRangeRequest.Outcome.UNSATISFIABLE,
+                ByteRangeRequest.evaluate("bytes=1000-", null, ETAG, LAST_MODIFIED, 1000).outcome());
+        assertEquals(ByteRangeRequest.Outcome.FULL,
+                ByteRangeRequest.evaluate("pages=1-2", null, ETAG, LAST_MODIFIED, 1000).outcome());
+        assertEquals(ByteRangeRequest.Outcome.FULL,
+                ByteRangeRequest.evaluate("bytes=0-999, 0-999", null, ETAG, LAST_MODIFIED, 1000).outcome());
+    }
+
+    @Test
+    void evaluate_shouldServeWholeFileWhenIfRangeIsStale() {
+        String range = "bytes=0-99";
+
+        assertEquals(ByteRangeRequest.Outcome.PARTIAL,
+                ByteRangeRequest.evaluate(range, ETAG, ETAG, LAST_MODIFIED, 1000).outcome());
+        assertEquals(ByteRangeRequest.Outcome.PARTIAL,
+                ByteRangeRequest.evaluate(range, "Thu, 01 Jan 2026 00:00:00 GMT", ETAG, LAST_MODIFIED, 1000)
+                        .outcome());
+        assertEquals(ByteRangeRequest.Outcome.FULL,
+                ByteRangeRequest.evaluate(range, "\"other-1000\"", ETAG, LAST_MODIFIED, 1000).outcome());
+        assertEquals(ByteRangeRequest.Outcome.FULL,
+                ByteRangeRequest.evaluate(range, "W/" + ETAG, ETAG, LAST_MODIFIED, 1000).outcome());
+        assertEquals(ByteRangeRequest.Outcome.FULL,
+                ByteRangeRequest.evaluate(range, "Wed, 31 Dec 2025 00:00:00 GMT", ETAG, LAST_MODIFIED, 1000)
+                        .outcome());
+    }
+}
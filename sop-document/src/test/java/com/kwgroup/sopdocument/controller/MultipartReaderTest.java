@@ -0,0 +1,101 @@
+package com.kwgroup.sopdocument.controller;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MultipartReaderTest {
+
+    private static final String BOUNDARY = "----boundary42";
+
+    @Test
+    void next_shouldReadFieldsAndFileBodyInOrder() throws IOException {
+        // file content contains CRLF and a near-miss of the delimiter
+        byte[] file = "%PDF-1.7\r\n--not-the-boundary\r\n------boundary4\r\n%%EOF"
+                .getBytes(StandardCharsets.ISO_8859_1);
+        MultipartReader reader = new MultipartReader(trickle(body(file)), BOUNDARY);
+
+        MultipartReader.Part brand = reader.next();
+        assertEquals("brand", brand.name());
+        assertNull(brand.filename());
+        assertEquals("knitwell", brand.text(100));
+
+        MultipartReader.Part upload = reader.next();
+        assertEquals("file", upload.name());
+        assertEquals("Store Opening.pdf", upload.filename());
+        assertEquals("application/pdf", upload.header("Content-Type"));
+        assertArrayEquals(file, upload.body().readAllBytes());
+
+        assertNull(reader.next());
+        assertNull(reader.next());
+    }
+
+    @Test
+    void next_shouldSkipUnreadPartsAndPreamble() throws IOException {
+        byte[] body = ("preamble\r\n" + new String(body(new byte[] { 1, 2, 3 }), StandardCharsets.ISO_8859_1))
+                .getBytes(StandardCharsets.ISO_8859_1);
+        MultipartReader reader = new MultipartReader(new ByteArrayInputStream(body), BOUNDARY);
+
+        assertEquals("brand", reader.next().name());
+        assertEquals("file", reader.next().name());
+        assertNull(reader.next());
+    }
+
+    @Test
+    void next_shouldFailOnTruncatedBody() throws IOException {
+        byte[] body = body("truncated".getBytes(StandardCharsets.US_ASCII));
+        byte[] truncated = Arrays.copyOf(body, body.length - BOUNDARY.length() - 10);
+        MultipartReader reader = new MultipartReader(new ByteArrayInputStream(truncated), BOUNDARY);
+
+        reader.next();
+        MultipartReader.Part upload = reader.next();
+        assertThrows(EOFException.class, () -> upload.body().readAllBytes());
+    }
+
+    @Test
+    void boundaryOf_shouldRequireMultipartFormData() {
+        assertEquals("abc", MultipartReader.boundaryOf("multipart/form-data; boundary=\"abc\""));
+        assertThrows(IllegalArgumentException.class, () -> MultipartReader.boundaryOf("application/pdf"));
+        assertThrows(IllegalArgumentException.class, () -> MultipartReader.boundaryOf("multipart/form-data"));
+    }
+
+    private static byte[] body(byte[] file) {
+        String head = "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"brand\"\r\n\r\n"
+                + "knitwell\r\n"
+                + "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"Store Opening.pdf\"\r\n"
+                + "Content-Type: application/pdf\r\n\r\n";
+        String tail = "\r\n--" + BOUNDARY + "--\r\n";
+        byte[] headBytes = head.getBytes(StandardCharsets.ISO_8859_1);
+        byte[] tailBytes = tail.getBytes(StandardCharsets.ISO_8859_1);
+        byte[] all = new byte[headBytes.length + file.length + tailBytes.length];
+        System.arraycopy(headBytes, 0, all, 0, headBytes.length);
+        System.arraycopy(file, 0, all, headBytes.length, file.length);
+        System.arraycopy(tailBytes, 0, all, headBytes.length + file.length, tailBytes.length);
+        return all;
+    }
+
+    /**
+     * Returns at most 3 bytes per read, so delimiters straddle reads.
+     */
+    private static InputStream trickle(byte[] bytes) {
+        return new FilterInputStream(new ByteArrayInputStream(bytes)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 3));
+            }
+        };
+    }
+}
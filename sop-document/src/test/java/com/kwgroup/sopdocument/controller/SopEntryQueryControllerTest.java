@@ -0,0 +1,95 @@
+package com.kwgroup.sopdocument.controller;
+
+import com.kwgroup.sopdocument.mapper.SopMapper;
+import com.kwgroup.sopdocument.repository.SopEntryRepository;
+import com.kwgroup.sopdocument.service.BulkIndexService;
+import com.kwgroup.sopdocument.service.PdfFileService;
+import com.kwgroup.sopdocument.service.PdfSearchService;
+import com.kwgroup.sopdocument.service.SopCatalogService;
+import com.kwgroup.sopdocument.service.SuggestionService;
+import com.kwgroup.sopdocument.service.ThumbnailService;
+import com.kwgroup.sopdocument.service.WebViewPdfService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+class SopEntryQueryControllerTest {
+
+    private static final String CONTENT = "%PDF-1.7 0123456789 abcdefghijklmnopqrstuvwxyz %%EOF";
+
+    @TempDir
+    Path directory;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Path file = directory.resolve("returns.pdf");
+        Files.writeString(file, CONTENT, StandardCharsets.US_ASCII);
+
+        SopEntryRepository.SopEntryView entry = mock(SopEntryRepository.SopEntryView.class);
+        when(entry.getId()).thenReturn("sop-1");
+        when(entry.getFileName()).thenReturn("returns");
+        when(entry.getFilePath()).thenReturn(file.toString());
+        when(entry.getFileSize()).thenReturn((long) CONTENT.length());
+        when(entry.getContentHash()).thenReturn("abc");
+        when(entry.getModifiedAt()).thenReturn(LocalDateTime.of(2026, 1, 1, 0, 0));
+        SopCatalogService catalog = mock(SopCatalogService.class);
+        when(catalog.find("sop-1")).thenReturn(Optional.of(entry));
+
+        SopEntryQueryController controller = new SopEntryQueryController(catalog, mock(SopMapper.class),
+                mock(PdfSearchService.class), mock(SuggestionService.class), mock(BulkIndexService.class),
+                new PdfFileService(10, 30, Long.MAX_VALUE), mock(WebViewPdfService.class),
+                mock(ThumbnailService.class));
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @Test
+    void download_shouldAnswerSingleRangeWithPartialContent() throws Exception {
+        MockHttpServletResponse response = mockMvc.perform(get("/api/sops/download/sop-1")
+                .header(HttpHeaders.RANGE, "bytes=9-18")).andReturn().getResponse();
+
+        assertEquals(206, response.getStatus(), response.getContentAsString());
+        assertEquals("application/pdf", response.getContentType());
+        assertEquals("bytes 9-18/" + CONTENT.length(), response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals("0123456789", response.getContentAsString());
+    }
+
+    @Test
+    void download_shouldAnswerMultipleRangesWithMultipartBody() throws Exception {
+        MockHttpServletResponse response = mockMvc.perform(get("/api/sops/download/sop-1")
+                .header(HttpHeaders.RANGE, "bytes=0-7, 20-25")).andReturn().getResponse();
+
+        assertEquals(206, response.getStatus(), response.getContentAsString());
+        String contentType = response.getContentType();
+        assertTrue(contentType.startsWith("multipart/byteranges; boundary="), contentType);
+        String boundary = contentType.substring(contentType.indexOf('=') + 1);
+        String body = response.getContentAsString();
+        assertEquals(body.length(), response.getContentLengthLong());
+        assertEquals("\r\n--" + boundary + "\r\n"
+                + "Content-Type: application/pdf\r\n"
+                + "Content-Range: bytes 0-7/" + CONTENT.length() + "\r\n\r\n"
+                + "%PDF-1.7"
+                + "\r\n--" + boundary + "\r\n"
+                + "Content-Type: application/pdf\r\n"
+                + "Content-Range: bytes 20-25/" + CONTENT.length() + "\r\n\r\n"
+                + "abcdef"
+                + "\r\n--" + boundary + "--\r\n", body);
+    }
+}
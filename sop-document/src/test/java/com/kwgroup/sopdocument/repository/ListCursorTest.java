@@ -0,0 +1,24 @@
+package com.kwgroup.sopdocument.repository;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ListCursorTest {
+
+    @Test
+    void decode_shouldRestoreEncodedPosition() {
+        ListCursor cursor = new ListCursor(ListCursor.Sort.FILE_NAME, "Store Opening", "id-1");
+
+        assertEquals(cursor, ListCursor.decode(cursor.encode(), ListCursor.Sort.FILE_NAME));
+    }
+
+    @Test
+    void decode_shouldRejectTokenIssuedForOtherSortOrGarbage() {
+        String token = new ListCursor(ListCursor.Sort.MODIFIED_AT, "2026-01-02T03:04:05", "id-1").encode();
+
+        assertThrows(IllegalArgumentException.class, () -> ListCursor.decode(token, ListCursor.Sort.FILE_NAME));
+        assertThrows(IllegalArgumentException.class, () -> ListCursor.decode("%%%", ListCursor.Sort.MODIFIED_AT));
+    }
+}
@@ -0,0 +1,26 @@
+package com.kwgroup.sopdocument.search;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EditDistanceTest {
+
+    @Test
+    void within_shouldCountInsertDeleteAndSubstitute() {
+        assertTrue(EditDistance.within("store", "store", 0));
+        assertTrue(EditDistance.within("store", "stores", 1));
+        assertTrue(EditDistance.within("store", "stor", 1));
+        assertTrue(EditDistance.within("store", "stare", 1));
+        assertTrue(EditDistance.within("recieving", "receiving", 2));
+        assertFalse(EditDistance.within("recieving", "receiving", 1));
+    }
+
+    @Test
+    void within_shouldRejectDistantStrings() {
+        assertFalse(EditDistance.within("store", "stockroom", 2));
+        assertFalse(EditDistance.within("abc", "xyz", 2));
+        assertFalse(EditDistance.within("a", "abcd", 2));
+    }
+}
@@ -0,0 +1,190 @@
+package com.kwgroup.sopdocument.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InvertedIndexTest {
+
+    private InvertedIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new InvertedIndex();
+        index.add(IndexedDocument.of("a", "knitwell", "store", "Store opening checklist. Open the safe."));
+        index.add(IndexedDocument.of("b", "talbots", "store", "Returns at the store counter"));
+        index.add(IndexedDocument.of("c", "knitwell", "hr", "Store returns policy for HR"));
+    }
+
+    @Test
+    void search_shouldMatchSingleTermCaseInsensitively() {
+        assertEquals(List.of("a", "b", "c"), ids(index.search("STORE", null, null)));
+    }
+
+    @Test
+    void search_shouldRequireConsecutiveTermsForQuotedPhrase() {
+        assertEquals(List.of("c"), ids(index.search("\"store returns\"", null, null)));
+        assertTrue(index.search("\"returns store\"", null, null).isEmpty());
+        assertEquals(List.of("b", "c"), ids(index.search("returns store", null, null)));
+    }
+
+    @Test
+    void search_shouldSupportBooleanOperatorsAndFields() {
+        assertEquals(List.of("a", "b"), ids(index.search("safe OR counter", null, null)));
+        assertEquals(List.of("a", "b"), ids(index.search("store NOT policy", null, null)));
+        assertEquals(List.of("a", "b"), ids(index.search("store -hr", null, null)));
+        assertEquals(List.of("c"), ids(index.search("store brand:knitwell category:hr", null, null)));
+        assertEquals(List.of("b"), ids(index.search("(counter OR safe) brand:talbots", null, null)));
+        assertEquals(List.of("a", "c"), ids(index.search("brand:knitwell", null, null)));
+    }
+
+    @Test
+    void suggest_shouldCompletePrefixByDocumentFrequency() {
+        assertEquals(List.of(new PrefixDictionary.Suggestion("store", 3), new PrefixDictionary.Suggestion("safe", 1)),
+                index.suggest("s", 2));
+
+        index.remove("b");
+        assertEquals(List.of(new PrefixDictionary.Suggestion("returns", 1)), index.suggest("ret", 10));
+    }
+
+    @Test
+    void suggest_shouldServePreviousSnapshotUntilRefreshIsDue() {
+        InvertedIndex throttled = new InvertedIndex(60_000);
+        throttled.add(IndexedDocument.of("a", "knitwell", "store", "Returns at the store counter"));
+        assertEquals(List.of(new PrefixDictionary.Suggestion("returns", 1)), throttled.suggest("ret", 10));
+
+        throttled.add(IndexedDocument.of("b", "talbots", "store", "Returns policy"));
+
+        assertEquals(List.of(new PrefixDictionary.Suggestion("returns", 1)), throttled.suggest("ret", 10));
+    }
+
+    @Test
+    void suggest_shouldRebuildStaleSnapshotInBackground() throws InterruptedException {
+        InvertedIndex throttled = new InvertedIndex(1);
+        throttled.add(IndexedDocument.of("a", "knitwell", "store", "Returns at the store counter"));
+        throttled.suggest("ret", 10);
+        throttled.add(IndexedDocument.of("b", "talbots", "store", "Returns policy"));
+        Thread.sleep(5);
+
+        List<PrefixDictionary.Suggestion> expected = List.of(new PrefixDictionary.Suggestion("returns", 2));
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (!expected.equals(throttled.suggest("ret", 10)) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, throttled.suggest("ret", 10));
+    }
+
+    @Test
+    void search_shouldMatchPartialWords() {
+        assertEquals(List.of("a", "b", "c"), ids(index.search("tor", null, null)));
+        assertEquals(List.of("a"), ids(index.search("checkl", null, null)));
+        assertEquals(List.of("c"), ids(index.search("\"ore retur\"", null, null)));
+    }
+
+    @Test
+    void search_shouldNotTruncateManyExpansions() {
+        for (int i = 0; i < 300; i++) {
+            String word = "store" + (char) ('a' + i / 26) + (char) ('a' + i % 26);
+            index.add(IndexedDocument.of("doc" + i, "knitwell", "store", "Open the " + word + " early"));
+        }
+
+        assertEquals(303, index.search("store", null, null).size());
+        assertEquals(303, index.rank("store", null, null, 1000).size());
+    }
+
+    @Test
+    void search_shouldTolerateTypos() {
+        index.add(IndexedDocument.of("r", "chicos", "dc", "Receiving dock procedure"));
+
+        assertEquals(List.of("r"), ids(index.search("recieving", null, null)));
+        assertEquals(List.of("r"), ids(index.search("procedrue", null, null)));
+        assertTrue(index.search("xylophone", null, null).isEmpty());
+    }
+
+    @Test
+    void search_shouldApplyBrandAndCategoryFilters() {
+        assertEquals(List.of("a", "c"), ids(index.search("store", "knitwell", null)));
+        assertEquals(List.of("a", "b"), ids(index.search("store", null, "store")));
+    }
+
+    @Test
+    void add_shouldReplaceExistingDocument() {
+        index.add(IndexedDocument.of("a", "knitwell", "store", "Closing procedure"));
+
+        assertEquals(List.of("b", "c"), ids(index.search("store", null, null)));
+        assertEquals(List.of("a"), ids(index.search("closing", null, null)));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void remove_shouldDropPostings() {
+        assertTrue(index.remove("b"));
+        assertFalse(index.remove("b"));
+
+        assertEquals(List.of("a", "c"), ids(index.search("store", null, null)));
+        assertTrue(index.search("counter", null, null).isEmpty());
+    }
+
+    @Test
+    void add_shouldReuseDocNumbersOfRemovedDocuments() {
+        for (int i = 0; i < 1000; i++) {
+            index.add(IndexedDocument.of("a", "knitwell", "store", "Store opening checklist " + i));
+        }
+        assertTrue(index.remove("a"));
+        // takes the freed slot before "b" and "c" in every posting list
+        index.add(IndexedDocument.of("d", "chicos", "store", "Store returns desk\fstore returns"));
+
+        assertEquals(List.of("d", "b", "c"), ids(index.search("store", null, null)));
+        assertEquals(List.of("d", "c"), ids(index.search("\"store returns\"", null, null)));
+        assertArrayEquals(new int[] { 1, 2 }, index.search("returns desk", "chicos", null).get(0).getPages());
+        assertEquals(List.of("d", "b", "c"), ids(index.rank("returns", null, null, 10)));
+        assertTrue(index.search("checklist", null, null).isEmpty());
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void search_shouldReportPagesOfMatches() {
+        index.add(IndexedDocument.of("p", "chicos", "hr", "Intro\fSafety rules\fMore safety\fEnd"));
+
+        List<SearchHit> hits = index.search("safety", null, null);
+
+        assertEquals(1, hits.size());
+        assertArrayEquals(new int[] { 2, 3 }, hits.get(0).getPages());
+    }
+
+    @Test
+    void rank_shouldOrderByBm25Score() {
+        index.add(IndexedDocument.of("d", "chicos", "store", "Returns returns returns"));
+
+        List<SearchHit> hits = index.rank("returns", null, null, 10);
+
+        assertEquals(List.of("d", "b", "c"), hits.stream().map(SearchHit::getSopId).toList());
+        assertTrue(hits.get(0).getScore() > hits.get(1).getScore());
+        assertEquals(3, hits.get(0).getHitOffsets().length);
+    }
+
+    @Test
+    void rank_shouldHonourLimitAndFilters() {
+        List<SearchHit> hits = index.rank("store OR returns", "knitwell", null, 1);
+
+        assertEquals(1, hits.size());
+        assertEquals("c", hits.get(0).getSopId());
+    }
+
+    @Test
+    void updateMetadata_shouldAffectFilters() {
+        index.updateMetadata("b", "knitwell", "store");
+
+        assertEquals(List.of("a", "b", "c"), ids(index.search("store", "knitwell", null)));
+    }
+
+    private static List<String> ids(List<SearchHit> hits) {
+        return hits.stream().map(SearchHit::getSopId).toList();
+    }
+}
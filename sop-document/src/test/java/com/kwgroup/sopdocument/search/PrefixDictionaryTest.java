@@ -0,0 +1,47 @@
+package com.kwgroup.sopdocument.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PrefixDictionaryTest {
+
+    @Test
+    void complete_shouldReturnTopWeightsWithinPrefixRange() {
+        PrefixDictionary dictionary = PrefixDictionary.ofTerms(Map.of(
+                "store", 9, "stock", 4, "stop", 4, "safe", 20, "tore", 30));
+
+        assertEquals(List.of(new PrefixDictionary.Suggestion("store", 9),
+                        new PrefixDictionary.Suggestion("stock", 4)),
+                dictionary.complete("St", 2));
+        assertEquals(List.of(new PrefixDictionary.Suggestion("stop", 4)), dictionary.complete("stop", 5));
+        assertTrue(dictionary.complete("x", 5).isEmpty());
+    }
+
+    @Test
+    void complete_shouldMatchPrecomputedAndScannedPrefixesAlike() {
+        PrefixDictionary dictionary = PrefixDictionary.ofTerms(Map.of("aa", 1, "ab", 3, "abc", 2));
+
+        // "a" is served from the precomputed table, "a" with a large limit by a scan
+        assertEquals(dictionary.complete("a", 3), dictionary.complete("a", 100));
+    }
+
+    @Test
+    void complete_shouldMatchPhrasesFromAnyWordStartOnce() {
+        PrefixDictionary dictionary = PrefixDictionary.ofPhrases(Map.of(
+                "Store Opening Checklist", 1, "Opening Hours", 2, "Re-open Store", 1));
+
+        assertEquals(List.of(new PrefixDictionary.Suggestion("Opening Hours", 2),
+                        new PrefixDictionary.Suggestion("Re-open Store", 1),
+                        new PrefixDictionary.Suggestion("Store Opening Checklist", 1)),
+                dictionary.complete("open", 10));
+        assertEquals(List.of(new PrefixDictionary.Suggestion("Re-open Store", 1),
+                        new PrefixDictionary.Suggestion("Store Opening Checklist", 1)),
+                dictionary.complete("sto", 10));
+        assertTrue(dictionary.complete("pening", 10).isEmpty());
+    }
+}
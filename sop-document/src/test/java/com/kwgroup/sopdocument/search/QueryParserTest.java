@@ -0,0 +1,54 @@
+package com.kwgroup.sopdocument.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class QueryParserTest {
+
+    @Test
+    void parse_shouldAndAdjacentWords() {
+        assertEquals(new QueryNode.And(List.of(terms("store"), terms("returns"))),
+                QueryParser.parse("Store returns"));
+    }
+
+    @Test
+    void parse_shouldBindAndTighterThanOr() {
+        assertEquals(new QueryNode.Or(List.of(
+                        new QueryNode.And(List.of(terms("a1"), terms("b2"))),
+                        terms("c3"))),
+                QueryParser.parse("a1 AND b2 OR c3"));
+    }
+
+    @Test
+    void parse_shouldHandlePhrasesFieldsAndNegation() {
+        assertEquals(new QueryNode.And(List.of(
+                        new QueryNode.Terms(List.of("cash", "count"), true),
+                        new QueryNode.Field("brand", "talbots"),
+                        new QueryNode.Not(terms("draft")),
+                        new QueryNode.Field("category", "store ops"))),
+                QueryParser.parse("\"cash count\" brand:Talbots -draft category:\"store ops\""));
+    }
+
+    @Test
+    void parse_shouldTreatLowerCaseOperatorsAndUnknownFieldsAsText() {
+        assertEquals(new QueryNode.And(List.of(terms("cats"), terms("and"), terms("dogs"))),
+                QueryParser.parse("cats and dogs"));
+        assertEquals(new QueryNode.Terms(List.of("owner", "bob"), true), QueryParser.parse("owner:bob"));
+    }
+
+    @Test
+    void parse_shouldBeLenientWithUnbalancedInput() {
+        assertEquals(new QueryNode.Or(List.of(terms("a1"), terms("b2"))), QueryParser.parse("(a1 OR b2"));
+        assertEquals(new QueryNode.Terms(List.of("open", "safe"), true), QueryParser.parse("\"open safe"));
+        assertNull(QueryParser.parse("NOT"));
+        assertNull(QueryParser.parse("  "));
+    }
+
+    private static QueryNode terms(String term) {
+        return new QueryNode.Terms(List.of(term), false);
+    }
+}
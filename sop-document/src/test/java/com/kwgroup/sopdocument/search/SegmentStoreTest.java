@@ -0,0 +1,119 @@
+package com.kwgroup.sopdocument.search;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SegmentStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void load_shouldReplaySegmentsInOrder() throws IOException {
+        SegmentStore store = new SegmentStore(directory);
+        store.append(List.of(
+                put("a", "knitwell", "Store opening\fchecklist", 1),
+                put("b", "talbots", "Returns at the counter", 1)));
+        store.append(List.of(
+                new IndexChange.Metadata("a", "chicos", "ops", 2),
+                new IndexChange.Delete("b"),
+                put("c", "knitwell", "Cash count", 3)));
+
+        Map<String, StoredDocument> loaded = new SegmentStore(directory).load();
+
+        assertEquals(List.of("a", "c"), List.copyOf(loaded.keySet()));
+        StoredDocument a = loaded.get("a");
+        assertEquals(2, a.fingerprint());
+        assertEquals("chicos", a.document().getBrand());
+        assertEquals("ops", a.document().getCategory());
+        assertArrayEquals(new int[] { 0, 14 }, a.document().getPageStarts());
+        IndexedDocument.Occurrences checklist = a.document().getTerms().get("checklist");
+        assertEquals(1, checklist.count());
+        assertEquals(2, checklist.position(0));
+        assertEquals(14, checklist.offset(0));
+    }
+
+    @Test
+    void merge_shouldFoldSegmentsIntoOneWithSameContent() throws IOException {
+        SegmentStore store = new SegmentStore(directory);
+        store.append(List.of(put("a", "knitwell", "first", 1)));
+        store.append(List.of(put("a", "knitwell", "second edition", 2), put("b", null, "other", 1)));
+        store.append(List.of(new IndexChange.Delete("b")));
+        Map<String, StoredDocument> before = new SegmentStore(directory).load();
+
+        assertEquals(1, store.merge());
+
+        assertEquals(1, store.segmentCount());
+        Map<String, StoredDocument> after = new SegmentStore(directory).load();
+        assertEquals(before.keySet(), after.keySet());
+        assertEquals(2, after.get("a").fingerprint());
+        assertEquals(before.get("a").document().getTerms().keySet(), after.get("a").document().getTerms().keySet());
+    }
+
+    @Test
+    void mergeTier_shouldFoldSmallSegmentsWithSameContent() throws IOException {
+        SegmentStore store = new SegmentStore(directory);
+        store.append(List.of(put("a", "knitwell", "first", 1), put("b", "talbots", "other", 1)));
+        store.append(List.of(new IndexChange.Metadata("a", "chicos", "ops", 2), new IndexChange.Delete("b")));
+        assertEquals(0, store.mergeTier(3));
+
+        store.append(List.of(put("c", "knitwell", "Cash count", 3), new IndexChange.Metadata("d", null, null, 4)));
+        Map<String, StoredDocument> before = new SegmentStore(directory).load();
+
+        assertEquals(3, store.mergeTier(3));
+
+        assertEquals(1, store.segmentCount());
+        Map<String, StoredDocument> after = new SegmentStore(directory).load();
+        assertEquals(List.copyOf(before.keySet()), List.copyOf(after.keySet()));
+        assertEquals(2, after.get("a").fingerprint());
+        assertEquals("chicos", after.get("a").document().getBrand());
+    }
+
+    @Test
+    void mergeTier_shouldKeepDeletesOfOlderSegments() throws IOException {
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 200_000; i++) {
+            large.append("word").append(i).append(' ');
+        }
+        SegmentStore store = new SegmentStore(directory);
+        // large enough to be in a higher tier than the segments below
+        store.append(List.of(put("a", "knitwell", large.toString(), 1), put("b", "talbots", "other", 1)));
+        store.append(List.of(new IndexChange.Delete("b")));
+        store.append(List.of(new IndexChange.Metadata("a", "chicos", "ops", 2)));
+        store.append(List.of(put("c", "knitwell", "Cash count", 3)));
+
+        assertEquals(3, store.mergeTier(3));
+
+        assertEquals(2, store.segmentCount());
+        Map<String, StoredDocument> after = new SegmentStore(directory).load();
+        assertEquals(List.of("a", "c"), List.copyOf(after.keySet()));
+        assertEquals("chicos", after.get("a").document().getBrand());
+    }
+
+    @Test
+    void load_shouldRejectCorruptSegment() throws IOException {
+        SegmentStore store = new SegmentStore(directory);
+        store.append(List.of(put("a", "knitwell", "Store opening checklist", 1)));
+        try (var files = Files.list(directory)) {
+            Path segment = files.findFirst().orElseThrow();
+            Files.write(segment, new byte[] { 0x42 }, StandardOpenOption.APPEND);
+        }
+
+        assertThrows(IOException.class, () -> new SegmentStore(directory).load());
+    }
+
+    private static IndexChange put(String id, String brand, String text, long fingerprint) {
+        return new IndexChange.Put(IndexedDocument.of(id, brand, "store", text), fingerprint);
+    }
+}
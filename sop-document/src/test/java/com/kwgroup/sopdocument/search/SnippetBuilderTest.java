@@ -0,0 +1,34 @@
+package com.kwgroup.sopdocument.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnippetBuilderTest {
+
+    @Test
+    void build_shouldHighlightHitsAndEscapeHtml() {
+        String text = "Check <all> doors before\n\nclosing the store.";
+
+        List<String> snippets = SnippetBuilder.build(text, new int[] { 38 }, 3, 200);
+
+        assertEquals(List.of("Check &lt;all&gt; doors before closing the <mark>store</mark>."), snippets);
+    }
+
+    @Test
+    void build_shouldMergeNearbyHitsAndAddEllipsis() {
+        String text = "x ".repeat(100) + "store returns desk" + " y".repeat(100);
+        int store = 200;
+        int returns = 206;
+
+        List<String> snippets = SnippetBuilder.build(text, new int[] { store, returns }, 3, 40);
+
+        assertEquals(1, snippets.size());
+        assertTrue(snippets.get(0).startsWith("…"));
+        assertTrue(snippets.get(0).endsWith("…"));
+        assertTrue(snippets.get(0).contains("<mark>store</mark> <mark>returns</mark>"));
+    }
+}
@@ -0,0 +1,55 @@
+package com.kwgroup.sopdocument.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AdaptiveThrottleTest {
+
+    @Test
+    void release_shouldHalveLimitAboveTargetAndGrowBackBelowIt() throws InterruptedException {
+        AtomicReference<Double> latency = new AtomicReference<>(50.0);
+        AdaptiveThrottle throttle = new AdaptiveThrottle(8, 300, latency::get);
+        assertEquals(8, throttle.limit());
+
+        latency.set(900.0);
+        throttle.acquire();
+        throttle.release();
+        assertEquals(4, throttle.limit());
+        throttle.acquire();
+        throttle.release();
+        throttle.acquire();
+        throttle.release();
+        throttle.acquire();
+        throttle.release();
+        assertEquals(1, throttle.limit());
+
+        latency.set(100.0);
+        throttle.acquire();
+        throttle.release();
+        assertEquals(2, throttle.limit());
+    }
+
+    @Test
+    void acquire_shouldBlockAtLimit() throws InterruptedException {
+        AdaptiveThrottle throttle = new AdaptiveThrottle(1, 300, () -> 0);
+        throttle.acquire();
+
+        Thread waiter = new Thread(() -> {
+            try {
+                throttle.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiter.start();
+        waiter.join(200);
+        assertEquals(Thread.State.WAITING, waiter.getState());
+
+        throttle.release();
+        waiter.join(1000);
+        assertEquals(Thread.State.TERMINATED, waiter.getState());
+    }
+}
@@ -0,0 +1,192 @@
+package com.kwgroup.sopdocument.service;
+
+import com.kwgroup.sopdocument.dto.BulkUploadResponse;
+import com.kwgroup.sopdocument.dto.SopEntryRequest;
+import com.kwgroup.sopdocument.model.SopEntry;
+import com.kwgroup.sopdocument.repository.SopEntryRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BulkUploadServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private final SopEntryService sopEntryService = mock(SopEntryService.class);
+    private final SopEntryRepository sopEntryRepository = mock(SopEntryRepository.class);
+    private final PdfContentIndexService pdfContentIndexService = mock(PdfContentIndexService.class);
+    private final IndexJobService indexJobService = mock(IndexJobService.class);
+    private final InvertedIndexService invertedIndexService = mock(InvertedIndexService.class);
+    private final DocumentLocks documentLocks = new DocumentLocks(16, 1, new SimpleMeterRegistry());
+    private BulkUploadService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(sopEntryService.resolveBaseDir(any())).thenReturn(dir);
+        when(sopEntryService.resolveUploadTarget(any(), anyString())).thenAnswer(invocation -> {
+            String fileName = invocation.getArgument(1);
+            String baseName = fileName.substring(0, fileName.lastIndexOf('.'));
+            return new SopEntryService.UploadTarget(dir, dir.resolve(fileName), baseName, baseName, ".pdf",
+                    "talbots", "Stores", "tester");
+        });
+        when(pdfContentIndexService.extractFile(any())).thenAnswer(invocation ->
+                "text of " + Files.readString(invocation.getArgument(0)));
+
+        service = new BulkUploadService(sopEntryService, sopEntryRepository, pdfContentIndexService,
+                indexJobService, mock(ExtractionQuarantineService.class), mock(SopCatalogService.class),
+                invertedIndexService, mock(SuggestionService.class), mock(WebViewPdfService.class),
+                mock(ThumbnailService.class), mock(EmailService.class), documentLocks, mock(JdbcTemplate.class),
+                mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(service, "maxFiles", 10);
+        ReflectionTestUtils.setField(service, "maxUploadSize", 1024L);
+        service.init();
+    }
+
+    @Test
+    void ingest_shouldSkipSameNameAndSameContentWithinBatch() throws Exception {
+        BulkUploadResponse response = ingest(batch -> {
+            batch.add("returns.pdf", stream("returns"));
+            batch.add("returns-copy.pdf", stream("returns"));
+            batch.add("returns.pdf", stream("returns v2"));
+        });
+
+        assertEquals(List.of(BulkUploadResponse.Status.CREATED, BulkUploadResponse.Status.DUPLICATE,
+                BulkUploadResponse.Status.DUPLICATE), statuses(response));
+        assertEquals("Same content as returns.pdf", response.getFiles().get(1).getMessage());
+        assertEquals("Same name as returns.pdf", response.getFiles().get(2).getMessage());
+        assertEquals("returns", Files.readString(dir.resolve("returns.pdf")));
+        verify(pdfContentIndexService, times(1)).extractFile(any());
+    }
+
+    @Test
+    void ingest_shouldSkipFilesIdenticalToCurrentVersionWithoutExtracting() throws Exception {
+        Path current = dir.resolve("returns.pdf");
+        Files.writeString(current, "returns");
+        SopEntry existing = SopEntry.builder().id("sop-1").fileName("returns").filePath(current.toString())
+                .contentHash(StagedUpload.sha256Of(current)).version("v1.0").build();
+        when(sopEntryRepository.findByBrandAndFileNameIn(eq("talbots"), anyCollection()))
+                .thenReturn(List.of(existing));
+
+        BulkUploadResponse response = ingest(batch -> batch.add("returns.pdf", stream("returns")));
+
+        assertEquals(List.of(BulkUploadResponse.Status.UNCHANGED), statuses(response));
+        assertEquals("sop-1", response.getFiles().get(0).getId());
+        verify(pdfContentIndexService, never()).extractFile(any());
+    }
+
+    @Test
+    void ingest_shouldExtractBeforeTakingLocks() throws Exception {
+        DocumentLocks.Key key = new DocumentLocks.Key("talbots", "returns");
+        doAnswer(invocation ->
+                // would time out if the batch held the lock of the SOP
+                CompletableFuture.supplyAsync(() -> documentLocks.withLock(key, () -> "returns")).join())
+                .when(pdfContentIndexService).extractFile(any());
+
+        BulkUploadResponse response = ingest(batch -> batch.add("returns.pdf", stream("returns")));
+
+        assertEquals(List.of(BulkUploadResponse.Status.CREATED), statuses(response));
+        verify(invertedIndexService).indexDocument(any(SopEntry.class), eq("returns"));
+    }
+
+    @Test
+    void ingest_shouldLeaveFailedExtractionsToIndexJobs() throws Exception {
+        doThrow(new PdfContentIndexService.ExtractionException("Broken PDF",
+                PdfContentIndexService.ExtractionException.Reason.FAILED, null))
+                .when(pdfContentIndexService).extractFile(any());
+
+        BulkUploadResponse response = ingest(batch -> batch.add("returns.pdf", stream("returns")));
+
+        BulkUploadResponse.FileResult result = response.getFiles().get(0);
+        assertEquals(BulkUploadResponse.Status.CREATED, result.getStatus());
+        assertTrue(result.getMessage().contains("Broken PDF"), result.getMessage());
+        verify(indexJobService).enqueue(result.getId());
+        verify(invertedIndexService, never()).indexDocument(any(), anyString());
+    }
+
+    @Test
+    void addArchive_shouldStageFilesAndSkipFoldersAndHiddenEntries() throws IOException {
+        ByteArrayOutputStream zipBytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(zipBytes)) {
+            zip.putNextEntry(new ZipEntry("stores/"));
+            zip.putNextEntry(new ZipEntry("stores/returns.pdf"));
+            zip.write("returns".getBytes(StandardCharsets.US_ASCII));
+            zip.putNextEntry(new ZipEntry("__MACOSX/stores/._returns.pdf"));
+            zip.write("resource fork".getBytes(StandardCharsets.US_ASCII));
+            zip.putNextEntry(new ZipEntry(".DS_Store"));
+            zip.write("finder".getBytes(StandardCharsets.US_ASCII));
+            zip.putNextEntry(new ZipEntry("stores\\opening.pdf"));
+            zip.write("opening".getBytes(StandardCharsets.US_ASCII));
+        }
+
+        BulkUploadResponse response = ingest(
+                batch -> batch.addArchive(new ByteArrayInputStream(zipBytes.toByteArray())));
+
+        assertEquals(List.of("returns.pdf", "opening.pdf"),
+                response.getFiles().stream().map(BulkUploadResponse.FileResult::getFileName).toList());
+        assertEquals(List.of(BulkUploadResponse.Status.CREATED, BulkUploadResponse.Status.CREATED),
+                statuses(response));
+        assertEquals("opening", Files.readString(dir.resolve("opening.pdf")));
+        verify(invertedIndexService).indexDocument(any(SopEntry.class), eq("text of opening"));
+    }
+
+    @Test
+    void add_shouldRecordEmptyFilesAsFailed() throws IOException {
+        BulkUploadResponse response = ingest(batch -> batch.add("empty.pdf", stream("")));
+
+        assertEquals(List.of(BulkUploadResponse.Status.FAILED), statuses(response));
+        verify(sopEntryRepository, never()).findByBrandAndFileNameIn(anyString(), anyCollection());
+    }
+
+    private interface BatchFiles {
+        void addTo(BulkUploadService.Batch batch) throws IOException;
+    }
+
+    private BulkUploadResponse ingest(BatchFiles files) throws IOException {
+        SopEntryRequest request = new SopEntryRequest();
+        request.setBrand("talbots");
+        request.setFileCategory("Stores");
+        request.setUploadedBy("tester");
+        try (BulkUploadService.Batch batch = service.begin(request)) {
+            files.addTo(batch);
+            return service.ingest(batch);
+        }
+    }
+
+    private static ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static List<BulkUploadResponse.Status> statuses(BulkUploadResponse response) {
+        return response.getFiles().stream().map(BulkUploadResponse.FileResult::getStatus).toList();
+    }
+}
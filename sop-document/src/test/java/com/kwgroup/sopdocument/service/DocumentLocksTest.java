@@ -0,0 +1,147 @@
+package com.kwgroup.sopdocument.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DocumentLocksTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void constructor_shouldRoundStripesUpToPowerOfTwo() {
+        assertEquals(1024, new DocumentLocks(1000, 1, meterRegistry).stripeCount());
+        assertEquals(64, new DocumentLocks(64, 1, new SimpleMeterRegistry()).stripeCount());
+    }
+
+    @Test
+    void key_shouldIgnoreBrandCase() {
+        DocumentLocks.Key key = new DocumentLocks.Key("knitwell", "safety_sop");
+        assertEquals(key, new DocumentLocks.Key(" Knitwell", "safety_sop"));
+        assertNotEquals(key, new DocumentLocks.Key("talbots", "safety_sop"));
+    }
+
+    @Test
+    void withLock_shouldSerializeWritesToSameSop() throws InterruptedException {
+        DocumentLocks locks = new DocumentLocks(1024, 5, meterRegistry);
+        DocumentLocks.Key key = new DocumentLocks.Key("knitwell", "safety_sop");
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean overlapped = new AtomicBoolean();
+        AtomicBoolean inside = new AtomicBoolean();
+
+        Thread holder = new Thread(() -> locks.withLock(key, () -> {
+            inside.set(true);
+            holding.countDown();
+            await(release);
+            inside.set(false);
+            return null;
+        }));
+        holder.start();
+        assertTrue(holding.await(5, TimeUnit.SECONDS));
+
+        Thread waiter = new Thread(() -> locks.withLock(key, () -> {
+            overlapped.set(inside.get());
+            return null;
+        }));
+        waiter.start();
+        waitForWaiters(1);
+        release.countDown();
+        holder.join(5000);
+        waiter.join(5000);
+
+        assertFalse(overlapped.get());
+        assertEquals(1.0, meterRegistry.get("sop.document.lock.contended").counter().count());
+        assertEquals(2, meterRegistry.get("sop.document.lock.wait").timer().count());
+        assertEquals(0.0, meterRegistry.get("sop.document.lock.waiting").gauge().value());
+    }
+
+    @Test
+    void withLock_shouldNotBlockOtherSops() throws InterruptedException {
+        DocumentLocks locks = new DocumentLocks(1024, 5, meterRegistry);
+        DocumentLocks.Key held = new DocumentLocks.Key("knitwell", "safety_sop");
+        DocumentLocks.Key other = otherStripe(locks, held);
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Thread holder = new Thread(() -> locks.withLock(held, () -> {
+            holding.countDown();
+            await(release);
+            return null;
+        }));
+        holder.start();
+        assertTrue(holding.await(5, TimeUnit.SECONDS));
+
+        assertEquals("done", locks.withLock(other, () -> "done"));
+        assertEquals(0.0, meterRegistry.get("sop.document.lock.contended").counter().count());
+        release.countDown();
+        holder.join(5000);
+    }
+
+    @Test
+    void withLocks_shouldGiveUpAfterTimeout() throws InterruptedException {
+        DocumentLocks locks = new DocumentLocks(1024, 1, meterRegistry);
+        DocumentLocks.Key key = new DocumentLocks.Key("knitwell", "safety_sop");
+        DocumentLocks.Key other = otherStripe(locks, key);
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Thread holder = new Thread(() -> locks.withLock(key, () -> {
+            holding.countDown();
+            await(release);
+            return null;
+        }));
+        holder.start();
+        assertTrue(holding.await(5, TimeUnit.SECONDS));
+
+        AtomicReference<String> ran = new AtomicReference<>();
+        assertThrows(DocumentLocks.LockTimeoutException.class,
+                () -> locks.withLocks(List.of(other, key), () -> {
+                    ran.set("ran");
+                    return null;
+                }));
+        assertNull(ran.get());
+        release.countDown();
+        holder.join(5000);
+
+        // the stripe taken before the timeout was released again
+        assertEquals("done", locks.withLock(other, () -> "done"));
+    }
+
+    private static DocumentLocks.Key otherStripe(DocumentLocks locks, DocumentLocks.Key key) {
+        for (int i = 0;; i++) {
+            DocumentLocks.Key candidate = new DocumentLocks.Key("knitwell", "other_sop_" + i);
+            if (locks.stripeOf(candidate) != locks.stripeOf(key)) {
+                return candidate;
+            }
+        }
+    }
+
+    private void waitForWaiters(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("sop.document.lock.waiting").gauge().value() < count) {
+            assertTrue(System.nanoTime() < deadline, "no thread started waiting");
+            Thread.sleep(5);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.kwgroup.sopdocument.service;
+
+import com.kwgroup.sopdocument.model.ExtractionQuarantine;
+import com.kwgroup.sopdocument.model.SopEntry;
+import com.kwgroup.sopdocument.repository.ExtractionQuarantineRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ExtractionQuarantineServiceTest {
+
+    private final Map<String, ExtractionQuarantine> records = new HashMap<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ExtractionQuarantineService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ExtractionQuarantineRepository repository = mock(ExtractionQuarantineRepository.class);
+        when(repository.findById(anyString())).thenAnswer(i -> Optional.ofNullable(records.get(i.getArgument(0))));
+        when(repository.findAllById(anyIterable())).thenAnswer(i -> {
+            List<ExtractionQuarantine> found = new ArrayList<>();
+            ((Iterable<String>) i.getArgument(0)).forEach(id -> {
+                if (records.containsKey(id)) {
+                    found.add(records.get(id));
+                }
+            });
+            return found;
+        });
+        when(repository.save(any())).thenAnswer(i -> {
+            ExtractionQuarantine record = i.getArgument(0);
+            records.put(record.getSopId(), record);
+            return record;
+        });
+        when(repository.countByQuarantinedTrue())
+                .thenAnswer(i -> records.values().stream().filter(ExtractionQuarantine::isQuarantined).count());
+
+        service = new ExtractionQuarantineService(repository, meterRegistry);
+        ReflectionTestUtils.setField(service, "maxFailures", 3);
+        service.init();
+    }
+
+    @Test
+    void recordFailure_shouldQuarantineAfterRepeatedFailures() {
+        SopEntry entry = entry("a", "hash-1");
+
+        service.recordFailure(entry, "broken xref", false);
+        service.recordFailure(entry, "broken xref", false);
+        assertFalse(service.isQuarantined(entry));
+
+        service.recordFailure(entry, "broken xref", false);
+        assertTrue(service.isQuarantined(entry));
+        assertEquals(1.0, meterRegistry.get("sop.extraction.quarantined").gauge().value());
+        assertEquals(3.0, meterRegistry.get("sop.extraction.failures").tag("reason", "error").counter().count());
+    }
+
+    @Test
+    void recordFailure_shouldQuarantineTimeoutsRightAwayUntilFileIsReplaced() {
+        service.recordFailure(entry("a", "hash-1"), "Extraction exceeded 120 s", true);
+
+        assertTrue(service.isQuarantined(entry("a", "hash-1")));
+        assertFalse(service.isQuarantined(entry("a", "hash-2")));
+    }
+
+    private static SopEntry entry(String id, String hash) {
+        return SopEntry.builder().id(id).filePath("data/sops/knitwell/" + id + ".pdf").contentHash(hash).build();
+    }
+}
@@ -0,0 +1,185 @@
+package com.kwgroup.sopdocument.service;
+
+import com.kwgroup.sopdocument.model.IndexJob;
+import com.kwgroup.sopdocument.model.IndexStatus;
+import com.kwgroup.sopdocument.model.SopContent;
+import com.kwgroup.sopdocument.model.SopEntry;
+import com.kwgroup.sopdocument.repository.IndexJobRepository;
+import com.kwgroup.sopdocument.repository.SopContentRepository;
+import com.kwgroup.sopdocument.repository.SopEntryRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IndexJobServiceTest {
+
+    private final IndexJobRepository indexJobRepository = mock(IndexJobRepository.class);
+    private final SopEntryRepository sopEntryRepository = mock(SopEntryRepository.class);
+    private final SopContentRepository sopContentRepository = mock(SopContentRepository.class);
+    private final PdfContentIndexService pdfContentIndexService = mock(PdfContentIndexService.class);
+    private final InvertedIndexService invertedIndexService = mock(InvertedIndexService.class);
+    private final SopEntry entry = SopEntry.builder().id("sop-1").fileName("returns").build();
+    private IndexJobService service;
+
+    @BeforeEach
+    void setUp() {
+        when(sopEntryRepository.findById("sop-1")).thenReturn(Optional.of(entry));
+        service = new IndexJobService(indexJobRepository, sopEntryRepository, sopContentRepository,
+                mock(SopCatalogService.class), pdfContentIndexService, invertedIndexService,
+                mock(ExtractionQuarantineService.class), mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(service, "threads", 1);
+        ReflectionTestUtils.setField(service, "maxAttempts", 5);
+        ReflectionTestUtils.setField(service, "retryBaseSeconds", 30L);
+        ReflectionTestUtils.setField(service, "retryMaxSeconds", 100L);
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void run_shouldStoreContentWhileTokenIsCurrent() throws Exception {
+        IndexJob job = job(0);
+        when(pdfContentIndexService.extractPdfContent(entry)).thenReturn("returns");
+        when(indexJobRepository.deleteIfCurrent("sop-1", job.getToken())).thenReturn(1);
+
+        runJob(job);
+
+        verify(sopContentRepository).save(any(SopContent.class));
+        verify(sopEntryRepository).updateIndexStatus("sop-1", IndexStatus.INDEXED);
+        verify(invertedIndexService).indexDocument(entry, "returns");
+    }
+
+    @Test
+    void run_shouldDropResultOfJobEnqueuedAgainMeanwhile() throws Exception {
+        IndexJob job = job(0);
+        when(pdfContentIndexService.extractPdfContent(entry)).thenReturn("old returns");
+        when(indexJobRepository.deleteIfCurrent("sop-1", job.getToken())).thenReturn(0);
+
+        runJob(job);
+
+        verify(sopContentRepository, never()).save(any());
+        verify(invertedIndexService, never()).indexDocument(any(), anyString());
+    }
+
+    @Test
+    void run_shouldRetryFailedExtractionWithExponentialBackoff() throws Exception {
+        IndexJob job = job(1);
+        IndexJob stored = job(1);
+        stored.setToken(job.getToken());
+        when(indexJobRepository.findById("sop-1")).thenReturn(Optional.of(stored));
+        failExtraction(PdfContentIndexService.ExtractionException.Reason.FAILED);
+
+        LocalDateTime before = LocalDateTime.now();
+        runJob(job);
+
+        assertEquals(2, stored.getAttempts());
+        assertDelay(before, 60, stored.getNotBefore());
+        assertEquals("Broken PDF", stored.getLastError());
+    }
+
+    @Test
+    void run_shouldCapBackoffAtRetryMax() throws Exception {
+        IndexJob job = job(3);
+        IndexJob stored = job(3);
+        stored.setToken(job.getToken());
+        when(indexJobRepository.findById("sop-1")).thenReturn(Optional.of(stored));
+        failExtraction(PdfContentIndexService.ExtractionException.Reason.TIMED_OUT);
+
+        LocalDateTime before = LocalDateTime.now();
+        runJob(job);
+
+        assertEquals(4, stored.getAttempts());
+        assertDelay(before, 100, stored.getNotBefore());
+    }
+
+    @Test
+    void run_shouldRetryRejectedExtractionSoonWithoutCountingAttempt() throws Exception {
+        IndexJob job = job(1);
+        IndexJob stored = job(1);
+        stored.setToken(job.getToken());
+        when(indexJobRepository.findById("sop-1")).thenReturn(Optional.of(stored));
+        failExtraction(PdfContentIndexService.ExtractionException.Reason.REJECTED);
+
+        LocalDateTime before = LocalDateTime.now();
+        runJob(job);
+
+        assertEquals(1, stored.getAttempts());
+        assertDelay(before, 5, stored.getNotBefore());
+    }
+
+    @Test
+    void run_shouldNotRescheduleJobEnqueuedAgainMeanwhile() throws Exception {
+        IndexJob job = job(1);
+        IndexJob requeued = job(0);
+        LocalDateTime due = requeued.getNotBefore();
+        when(indexJobRepository.findById("sop-1")).thenReturn(Optional.of(requeued));
+        failExtraction(PdfContentIndexService.ExtractionException.Reason.FAILED);
+
+        runJob(job);
+
+        assertEquals(0, requeued.getAttempts());
+        assertEquals(due, requeued.getNotBefore());
+    }
+
+    @Test
+    void run_shouldGiveUpAfterMaxAttempts() throws Exception {
+        IndexJob job = job(4);
+        when(indexJobRepository.deleteIfCurrent("sop-1", job.getToken())).thenReturn(1);
+        failExtraction(PdfContentIndexService.ExtractionException.Reason.FAILED);
+
+        runJob(job);
+
+        verify(sopEntryRepository).updateIndexStatus("sop-1", IndexStatus.FAILED);
+    }
+
+    private static IndexJob job(int attempts) {
+        LocalDateTime now = LocalDateTime.now();
+        return IndexJob.builder().sopId("sop-1").token(UUID.randomUUID().toString())
+                .attempts(attempts).notBefore(now).enqueuedAt(now).build();
+    }
+
+    private void failExtraction(PdfContentIndexService.ExtractionException.Reason reason) throws Exception {
+        doThrow(new PdfContentIndexService.ExtractionException("Broken PDF", reason, null))
+                .when(pdfContentIndexService).extractPdfContent(entry);
+    }
+
+    /**
+     * Dispatch the job and wait for the worker to finish it.
+     */
+    private void runJob(IndexJob job) throws InterruptedException {
+        when(indexJobRepository.findByNotBeforeLessThanEqualOrderByNotBefore(any(), any()))
+                .thenReturn(List.of(job));
+        service.dispatchDueJobs();
+        ExecutorService workers = (ExecutorService) ReflectionTestUtils.getField(service, "workers");
+        workers.shutdown();
+        assertTrue(workers.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    private static void assertDelay(LocalDateTime before, long seconds, LocalDateTime notBefore) {
+        Duration delay = Duration.between(before, notBefore);
+        assertTrue(delay.getSeconds() >= seconds && delay.getSeconds() <= seconds + 5, delay.toString());
+    }
+}
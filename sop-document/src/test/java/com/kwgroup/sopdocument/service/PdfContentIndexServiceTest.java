@@ -0,0 +1,165 @@
+package com.kwgroup.sopdocument.service;
+
+import com.kwgroup.sopdocument.model.SopEntry;
+import com.kwgroup.sopdocument.search.IndexedDocument;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class PdfContentIndexServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private PdfContentIndexService service;
+    private Path pdf;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        service = new PdfContentIndexService(null, null);
+        ReflectionTestUtils.setField(service, "memoryBudgetMb", 1L);
+        ReflectionTestUtils.setField(service, "pagesPerChunk", 1);
+
+        pdf = dir.resolve("manual.pdf");
+        try (PDDocument document = new PDDocument()) {
+            for (String text : new String[] { "first page", "second page", "third page" }) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), 12);
+                    content.newLineAtOffset(72, 700);
+                    content.showText(text);
+                    content.endText();
+                }
+            }
+            document.save(pdf.toFile());
+        }
+    }
+
+    @Test
+    void extractText_shouldStreamAllPagesInChunks() throws IOException {
+        StringWriter out = new StringWriter();
+
+        assertEquals(3, service.extractText(pdf, out));
+
+        String[] pages = out.toString().split(String.valueOf(IndexedDocument.PAGE_SEPARATOR));
+        assertEquals(3, pages.length);
+        assertTrue(pages[0].contains("first page"));
+        assertTrue(pages[2].contains("third page"));
+    }
+
+    @Test
+    void extractText_shouldStopOnceBudgetIsFull() throws IOException {
+        BoundedTextWriter out = new BoundedTextWriter(5);
+
+        service.extractText(pdf, out);
+
+        assertTrue(out.isFull());
+        assertEquals("first", out.toString());
+        assertFalse(out.toString().contains("second"));
+    }
+
+    @Test
+    void extract_shouldKeepPageNumbersAfterBlankPages() throws Exception {
+        Path scanned = dir.resolve("scanned.pdf");
+        try (PDDocument document = new PDDocument()) {
+            // scanned cover: drawn, but without text
+            PDPage cover = new PDPage();
+            document.addPage(cover);
+            try (PDPageContentStream content = new PDPageContentStream(document, cover)) {
+                content.addRect(72, 72, 400, 600);
+                content.fill();
+            }
+            // blank page without any content stream
+            document.addPage(new PDPage());
+            PDPage page = new PDPage();
+            document.addPage(page);
+            try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                content.beginText();
+                content.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), 12);
+                content.newLineAtOffset(72, 700);
+                content.showText("returns policy");
+                content.endText();
+            }
+            document.save(scanned.toFile());
+        }
+        PdfContentIndexService extractor = new PdfContentIndexService(null, mock(ExtractionQuarantineService.class));
+        ReflectionTestUtils.setField(extractor, "memoryBudgetMb", 1L);
+        ReflectionTestUtils.setField(extractor, "pagesPerChunk", 1);
+        ReflectionTestUtils.setField(extractor, "timeoutSeconds", 30L);
+        ReflectionTestUtils.setField(extractor, "threads", 1);
+        ReflectionTestUtils.setField(extractor, "queueCapacity", 1);
+        extractor.init();
+        try {
+            SopEntry entry = new SopEntry();
+            entry.setId("sop-2");
+            entry.setFilePath(scanned.toString());
+
+            String text = extractor.extract(entry);
+
+            assertTrue(text.startsWith("\f\f"), text);
+            int[] pageStarts = IndexedDocument.of("sop-2", null, null, text).getPageStarts();
+            assertEquals(3, pageStarts.length);
+            assertTrue(text.indexOf("returns") >= pageStarts[2]);
+        } finally {
+            extractor.shutdown();
+        }
+    }
+
+    @Test
+    void extract_shouldNotCountQueueTimeAgainstDeadline() throws Exception {
+        ExtractionQuarantineService quarantine = mock(ExtractionQuarantineService.class);
+        PdfContentIndexService saturated = new PdfContentIndexService(null, quarantine);
+        ReflectionTestUtils.setField(saturated, "memoryBudgetMb", 1L);
+        ReflectionTestUtils.setField(saturated, "pagesPerChunk", 1);
+        ReflectionTestUtils.setField(saturated, "timeoutSeconds", 1L);
+        ReflectionTestUtils.setField(saturated, "threads", 1);
+        ReflectionTestUtils.setField(saturated, "queueCapacity", 10);
+        saturated.init();
+        try {
+            // the only worker is busy for longer than the deadline
+            ExecutorService pool = (ExecutorService) ReflectionTestUtils.getField(saturated, "extractionPool");
+            CountDownLatch busy = new CountDownLatch(1);
+            pool.submit(() -> {
+                busy.countDown();
+                Thread.sleep(1500);
+                return null;
+            });
+            assertTrue(busy.await(5, TimeUnit.SECONDS));
+
+            SopEntry entry = new SopEntry();
+            entry.setId("sop-1");
+            entry.setFilePath(pdf.toString());
+
+            assertTrue(saturated.extract(entry).contains("third page"));
+            verify(quarantine, never()).recordFailure(any(), anyString(), anyBoolean());
+            verify(quarantine).clear("sop-1");
+        } finally {
+            saturated.shutdown();
+        }
+    }
+}
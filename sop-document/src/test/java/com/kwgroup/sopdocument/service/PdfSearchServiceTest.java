@@ -0,0 +1,109 @@
+package com.kwgroup.sopdocument.service;
+
+import com.kwgroup.sopdocument.mapper.SopMapper;
+import com.kwgroup.sopdocument.model.SopEntry;
+import com.kwgroup.sopdocument.repository.SopContentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringJUnitConfig
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class PdfSearchServiceTest {
+
+    @Configuration
+    @EnableCaching
+    static class Config {
+
+        @Bean
+        CacheManager cacheManager() {
+            return new CaffeineCacheManager(SearchResultCache.CACHE_NAME);
+        }
+
+        @Bean
+        SearchResultCache searchResultCache(CacheManager cacheManager) {
+            return new SearchResultCache(cacheManager);
+        }
+
+        @Bean
+        InvertedIndexService invertedIndexService(SearchResultCache searchResultCache) {
+            return new InvertedIndexService(searchResultCache, mock(IndexPersistenceService.class));
+        }
+
+        @Bean
+        SopContentRepository sopContentRepository() {
+            return mock(SopContentRepository.class);
+        }
+
+        @Bean
+        SopCatalogService sopCatalogService() {
+            return mock(SopCatalogService.class);
+        }
+
+        @Bean
+        PdfSearchService pdfSearchService(SopCatalogService sopCatalogService,
+                SopContentRepository sopContentRepository, InvertedIndexService invertedIndexService) {
+            return new PdfSearchService(sopCatalogService, sopContentRepository, mock(SopMapper.class),
+                    invertedIndexService);
+        }
+    }
+
+    @Autowired
+    private PdfSearchService pdfSearchService;
+
+    @Autowired
+    private InvertedIndexService invertedIndexService;
+
+    @Autowired
+    private SopContentRepository sopContentRepository;
+
+    @Autowired
+    private SopCatalogService sopCatalogService;
+
+    @BeforeEach
+    void setUp() {
+        reset(sopContentRepository, sopCatalogService);
+        when(sopContentRepository.searchIds(anyString())).thenReturn(List.of());
+        when(sopCatalogService.findAll(List.of())).thenReturn(List.of());
+    }
+
+    @Test
+    void searchByContent_shouldNotCacheDatabaseFallback() {
+        pdfSearchService.searchByContent("store OR returns");
+        pdfSearchService.searchByContent("store OR returns");
+
+        verify(sopContentRepository, times(2)).searchIds(anyString());
+    }
+
+    @Test
+    void searchByContent_shouldCacheIndexResultsOnceReady() {
+        SopEntry entry = new SopEntry();
+        entry.setId("sop-1");
+        invertedIndexService.indexDocument(entry, "Store returns at the counter");
+        when(sopCatalogService.findAll(List.of("sop-1"))).thenReturn(List.of());
+        pdfSearchService.searchByContent("store OR returns");
+
+        invertedIndexService.markReady();
+        pdfSearchService.searchByContent("store OR returns");
+        pdfSearchService.searchByContent("store OR returns");
+
+        verify(sopContentRepository, times(1)).searchIds(anyString());
+        verify(sopCatalogService, times(1)).findAll(List.of("sop-1"));
+    }
+}
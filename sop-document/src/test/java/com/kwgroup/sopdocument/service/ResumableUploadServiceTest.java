@@ -0,0 +1,184 @@
+package com.kwgroup.sopdocument.service;
+
+import com.kwgroup.sopdocument.dto.SopEntryRequest;
+import com.kwgroup.sopdocument.dto.SopEntryResponse;
+import com.kwgroup.sopdocument.model.UploadSession;
+import com.kwgroup.sopdocument.repository.UploadSessionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ResumableUploadServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private final Map<String, UploadSession> sessions = new HashMap<>();
+    private final UploadSessionRepository repository = mock(UploadSessionRepository.class);
+    private final SopEntryService sopEntryService = mock(SopEntryService.class);
+    private ResumableUploadService service;
+
+    @BeforeEach
+    void setUp() {
+        when(repository.save(any())).thenAnswer(invocation -> {
+            UploadSession session = invocation.getArgument(0);
+            sessions.put(session.getId(), session);
+            return session;
+        });
+        when(repository.findById(anyString())).thenAnswer(invocation ->
+                Optional.ofNullable(sessions.get(invocation.<String>getArgument(0))));
+        doAnswer(invocation -> sessions.remove(invocation.<UploadSession>getArgument(0).getId()))
+                .when(repository).delete(any());
+        when(repository.findByUpdatedAtBefore(any())).thenAnswer(invocation -> sessions.values().stream()
+                .filter(session -> session.getUpdatedAt().isBefore(invocation.getArgument(0)))
+                .toList());
+        when(sopEntryService.uploadBaseDir(any(), anyString())).thenReturn(dir);
+
+        service = new ResumableUploadService(repository, sopEntryService);
+        ReflectionTestUtils.setField(service, "maxChunkBytes", 4L);
+        ReflectionTestUtils.setField(service, "expireHours", 24L);
+        ReflectionTestUtils.setField(service, "maxUploadSize", 1024L);
+    }
+
+    @Test
+    void append_shouldContinueAtReportedOffset() throws IOException {
+        UploadSession session = service.create(request(), "returns.pdf", 7L);
+
+        assertEquals(4, service.append(session.getId(), 0, stream("%PDF")).getBytesReceived());
+        ResumableUploadService.OffsetMismatchException resent = assertThrows(
+                ResumableUploadService.OffsetMismatchException.class,
+                () -> service.append(session.getId(), 0, stream("%PDF")));
+        assertEquals(4, resent.getSession().getBytesReceived());
+        assertEquals(7, service.append(session.getId(), 4, stream("-1.")).getBytesReceived());
+
+        assertEquals("%PDF-1.", Files.readString(Paths.get(session.getFilePath())));
+    }
+
+    @Test
+    void append_shouldDropBytesOfInterruptedChunk() throws IOException {
+        UploadSession session = service.create(request(), "returns.pdf", 7L);
+        service.append(session.getId(), 0, stream("%PDF"));
+        // a chunk that was written but never acknowledged
+        Files.writeString(Paths.get(session.getFilePath()), "%PDFxx");
+
+        service.append(session.getId(), 4, stream("-1."));
+
+        assertEquals("%PDF-1.", Files.readString(Paths.get(session.getFilePath())));
+    }
+
+    @Test
+    void append_shouldRejectChunksOverTheLimitOrPastTheTotalSize() throws IOException {
+        UploadSession session = service.create(request(), "returns.pdf", 6L);
+
+        IllegalArgumentException tooLarge = assertThrows(IllegalArgumentException.class,
+                () -> service.append(session.getId(), 0, stream("%PDF-")));
+        assertEquals("Chunk exceeds 4 bytes", tooLarge.getMessage());
+        service.append(session.getId(), 0, stream("%PDF"));
+        IllegalArgumentException pastEnd = assertThrows(IllegalArgumentException.class,
+                () -> service.append(session.getId(), 4, stream("-1.")));
+        assertEquals("Chunk runs past the upload's size", pastEnd.getMessage());
+
+        assertEquals(4, sessions.get(session.getId()).getBytesReceived());
+    }
+
+    @Test
+    void finish_shouldRejectIncompleteUpload() throws IOException {
+        UploadSession session = service.create(request(), "returns.pdf", 7L);
+        service.append(session.getId(), 0, stream("%PDF"));
+
+        assertThrows(IllegalArgumentException.class, () -> service.finish(session.getId()));
+        verify(sopEntryService, never()).save(any(), anyString(), any(StagedUpload.class));
+        assertTrue(sessions.containsKey(session.getId()));
+    }
+
+    @Test
+    void finish_shouldSaveAssembledFileAndCloseSession() throws IOException {
+        UploadSession session = service.create(request(), "returns.pdf", 7L);
+        service.append(session.getId(), 0, stream("%PDF"));
+        service.append(session.getId(), 4, stream("-1."));
+        SopEntryResponse saved = SopEntryResponse.builder().id("sop-1").build();
+        when(sopEntryService.save(any(), eq("returns.pdf"), any(StagedUpload.class))).thenAnswer(invocation -> {
+            StagedUpload staged = invocation.getArgument(2);
+            assertEquals(7, staged.getSize());
+            assertEquals("%PDF-1.", Files.readString(staged.getPath()));
+            return saved;
+        });
+
+        assertSame(saved, service.finish(session.getId()));
+
+        assertFalse(sessions.containsKey(session.getId()));
+        assertFalse(Files.exists(Paths.get(session.getFilePath())));
+    }
+
+    @Test
+    void expireIdleSessions_shouldDeleteIdleSessionsAndTheirFiles() throws IOException {
+        UploadSession idle = service.create(request(), "returns.pdf", 7L);
+        idle.setUpdatedAt(LocalDateTime.now().minusHours(25));
+        UploadSession active = service.create(request(), "opening.pdf", 7L);
+
+        service.expireIdleSessions();
+
+        assertEquals(List.of(active.getId()), List.copyOf(sessions.keySet()));
+        assertFalse(Files.exists(Paths.get(idle.getFilePath())));
+        assertTrue(Files.exists(Paths.get(active.getFilePath())));
+    }
+
+    @Test
+    void expireIdleSessions_shouldSkipSessionWithChunkInProgress() throws IOException {
+        UploadSession session = service.create(request(), "returns.pdf", 7L);
+        session.setUpdatedAt(LocalDateTime.now().minusHours(25));
+        InputStream chunk = new ByteArrayInputStream("%PDF".getBytes(StandardCharsets.US_ASCII)) {
+            @Override
+            public int read(byte[] b, int off, int len) {
+                // the cleanup runs while the chunk is being written
+                service.expireIdleSessions();
+                return super.read(b, off, len);
+            }
+        };
+
+        assertEquals(4, service.append(session.getId(), 0, chunk).getBytesReceived());
+
+        assertTrue(sessions.containsKey(session.getId()));
+        assertEquals("%PDF", Files.readString(Paths.get(session.getFilePath())));
+    }
+
+    private static SopEntryRequest request() {
+        SopEntryRequest request = new SopEntryRequest();
+        request.setBrand("talbots");
+        request.setFileCategory("Stores");
+        request.setUploadedBy("tester");
+        return request;
+    }
+
+    private static ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.US_ASCII));
+    }
+}
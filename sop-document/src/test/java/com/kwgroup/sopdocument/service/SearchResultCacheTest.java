@@ -0,0 +1,86 @@
+package com.kwgroup.sopdocument.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SearchResultCacheTest {
+
+    private SearchResultCache searchResultCache;
+    private Cache cache;
+
+    @BeforeEach
+    void setUp() {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager(SearchResultCache.CACHE_NAME);
+        searchResultCache = new SearchResultCache(cacheManager);
+        cache = cacheManager.getCache(SearchResultCache.CACHE_NAME);
+    }
+
+    @Test
+    void key_shouldNormalizeQueryAndFilters() {
+        assertEquals(searchResultCache.key("content", " store ", "Knitwell", null, 0),
+                searchResultCache.key("content", "store", "knitwell", "", 0));
+    }
+
+    @Test
+    void key_shouldKeepOperatorCase() {
+        assertNotEquals(searchResultCache.key("content", "store OR payroll", null, null, 0),
+                searchResultCache.key("content", "store or payroll", null, null, 0));
+        assertNotEquals(searchResultCache.key("ranked", "store NOT payroll", null, null, 10),
+                searchResultCache.key("ranked", "store not payroll", null, null, 10));
+    }
+
+    @Test
+    void invalidate_shouldTreatLowerCaseNotAsWord() {
+        SearchResultCache.Key notPayroll = searchResultCache.key("content", "store NOT payroll", null, null, 0);
+        SearchResultCache.Key notWord = searchResultCache.key("content", "store not payroll", null, null, 0);
+        cache.put(notPayroll, List.of());
+        cache.put(notWord, List.of());
+
+        searchResultCache.invalidate(Set.of("not"), Set.of("knitwell"), Set.of("ops"));
+
+        assertNotNull(cache.get(notPayroll));
+        assertNull(cache.get(notWord));
+    }
+
+    @Test
+    void invalidate_shouldOnlyEvictOverlappingQueriesForAffectedBrands() {
+        SearchResultCache.Key storeAll = searchResultCache.key("content", "store", null, null, 0);
+        SearchResultCache.Key storeKnitwell = searchResultCache.key("content", "store", "knitwell", null, 0);
+        SearchResultCache.Key storeTalbots = searchResultCache.key("content", "store", "talbots", null, 0);
+        SearchResultCache.Key payroll = searchResultCache.key("content", "payroll", null, null, 0);
+        for (SearchResultCache.Key key : List.of(storeAll, storeKnitwell, storeTalbots, payroll)) {
+            cache.put(key, List.of());
+        }
+
+        int evicted = searchResultCache.invalidate(Set.of("store", "opening"), Set.of("knitwell"), Set.of("ops"));
+
+        assertEquals(2, evicted);
+        assertNull(cache.get(storeAll));
+        assertNull(cache.get(storeKnitwell));
+        assertNotNull(cache.get(storeTalbots));
+        assertNotNull(cache.get(payroll));
+    }
+
+    @Test
+    void invalidate_shouldEvictFieldQueriesOnAnyChange() {
+        SearchResultCache.Key byBrand = searchResultCache.key("content", "brand:knitwell", null, null, 0);
+        SearchResultCache.Key storeNotPolicy = searchResultCache.key("content", "store -policy", null, null, 0);
+        cache.put(byBrand, List.of());
+        cache.put(storeNotPolicy, List.of());
+
+        searchResultCache.invalidate(Set.of("opening"), Set.of("knitwell"), Set.of("ops"));
+
+        assertNull(cache.get(byBrand));
+        assertNotNull(cache.get(storeNotPolicy));
+    }
+}
@@ -0,0 +1,77 @@
+package com.kwgroup.sopdocument.service;
+
+import com.kwgroup.sopdocument.repository.ListCursor;
+import com.kwgroup.sopdocument.repository.SopEntryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SopCatalogServiceTest {
+
+    private static final LocalDateTime NOON = LocalDateTime.of(2026, 1, 1, 12, 0);
+
+    private final List<SopEntryRepository.SopEntryView> rows = new ArrayList<>();
+    private SopCatalogService catalog;
+
+    @BeforeEach
+    void setUp() {
+        rows.add(entry("a", "returns", "knitwell", "ops", NOON));
+        rows.add(entry("b", "opening", "knitwell", "hr", NOON));
+        rows.add(entry("c", "closing", "talbots", "ops", NOON.plusHours(1)));
+        rows.add(entry("d", "audit", "knitwell", "ops", NOON.minusHours(1)));
+
+        SopEntryRepository repository = mock(SopEntryRepository.class);
+        when(repository.findAllViews()).thenAnswer(i -> List.copyOf(rows));
+        when(repository.findViewsByIdIn(anyCollection())).thenAnswer(i -> rows.stream()
+                .filter(row -> i.<Collection<String>>getArgument(0).contains(row.getId()))
+                .toList());
+        catalog = new SopCatalogService(repository);
+        catalog.init();
+    }
+
+    @Test
+    void page_shouldContinueAfterCursorWithinBrandAndCategory() {
+        List<SopEntryRepository.SopEntryView> first = catalog.page("knitwell", null, ListCursor.Sort.MODIFIED_AT,
+                null, 2);
+        assertEquals(List.of("b", "a"), ids(first));
+
+        ListCursor after = ListCursor.after(ListCursor.Sort.MODIFIED_AT, first.get(1));
+        assertEquals(List.of("d"), ids(catalog.page("knitwell", null, ListCursor.Sort.MODIFIED_AT, after, 2)));
+
+        assertEquals(List.of("d", "a"), ids(catalog.page("knitwell", "ops", ListCursor.Sort.FILE_NAME, null, 5)));
+        assertEquals(List.of("c", "a", "d"), ids(catalog.page(null, "ops", ListCursor.Sort.MODIFIED_AT, null, 5)));
+    }
+
+    @Test
+    void refresh_shouldPublishChangedAndDropDeletedEntries() {
+        rows.removeIf(row -> row.getId().equals("c"));
+        rows.add(entry("e", "zebra", "chicos", "ops", NOON.plusHours(2)));
+
+        catalog.refresh(List.of("c", "e"));
+
+        assertTrue(catalog.find("c").isEmpty());
+        assertEquals("zebra", catalog.find("e").orElseThrow().getFileName());
+        assertEquals(List.of("e", "b", "a", "d"),
+                ids(catalog.page(null, null, ListCursor.Sort.MODIFIED_AT, null, 10)));
+    }
+
+    private static SopEntryRepository.SopEntryView entry(String id, String name, String brand, String category,
+            LocalDateTime modifiedAt) {
+        return SopCatalogService.Entry.builder().id(id).fileName(name).brand(brand).fileCategory(category)
+                .modifiedAt(modifiedAt).build();
+    }
+
+    private static List<String> ids(List<SopEntryRepository.SopEntryView> page) {
+        return page.stream().map(SopEntryRepository.SopEntryView::getId).toList();
+    }
+}
@@ -0,0 +1,51 @@
+package com.kwgroup.sopdocument.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StagedUploadTest {
+
+    private static final byte[] CONTENT = "abc".getBytes(StandardCharsets.US_ASCII);
+    private static final String ABC_SHA256 = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void stage_shouldHashWhileWritingAndMoveAtomically() throws IOException {
+        Path target = dir.resolve("doc.pdf");
+        Files.writeString(target, "old");
+
+        try (StagedUpload staged = StagedUpload.stage(new ByteArrayInputStream(CONTENT), dir)) {
+            assertEquals(ABC_SHA256, staged.getSha256());
+            assertEquals(3, staged.getSize());
+            staged.moveTo(target);
+        }
+
+        assertEquals("abc", Files.readString(target));
+        assertEquals(ABC_SHA256, StagedUpload.sha256Of(target));
+        try (var staging = Files.list(dir.resolve(StagedUpload.STAGING_DIR))) {
+            assertEquals(0, staging.count());
+        }
+    }
+
+    @Test
+    void close_shouldDeleteFileThatWasNotMoved() throws IOException {
+        Path staged;
+        try (StagedUpload upload = StagedUpload.stage(new ByteArrayInputStream(CONTENT), dir)) {
+            staged = upload.getPath();
+            assertTrue(Files.exists(staged));
+        }
+        assertFalse(Files.exists(staged));
+    }
+}
@@ -0,0 +1,56 @@
+package com.kwgroup.sopdocument.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TaskDeadlinesTest {
+
+    private final TaskDeadlines taskDeadlines = new TaskDeadlines();
+
+    @BeforeEach
+    void setUp() {
+        taskDeadlines.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        taskDeadlines.shutdown();
+    }
+
+    @Test
+    void run_shouldReturnResultOfTaskWithinDeadline() throws Exception {
+        assertEquals("done", taskDeadlines.run(5, () -> "done"));
+        assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    @Test
+    void run_shouldInterruptTaskPastDeadline() {
+        TimeoutException e = assertThrows(TimeoutException.class, () -> taskDeadlines.run(1, () -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                Thread.onSpinWait();
+            }
+            throw new InterruptedIOException("cancelled");
+        }));
+
+        assertInstanceOf(InterruptedIOException.class, e.getCause());
+        // the worker thread is usable for the next task
+        assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    @Test
+    void run_shouldPassOnFailuresWithinDeadline() {
+        assertThrows(IOException.class, () -> taskDeadlines.run(5, () -> {
+            throw new IOException("corrupt");
+        }));
+    }
+}
@@ -1,4 +1,4 @@
-import { useState } from 'react';
+import { useEffect, useState } from 'react';
 import { Dialog, DialogContent, DialogHeader, DialogTitle } from '@/components/ui/dialog';
 import { Button } from '@/components/ui/button';
 import { ChevronLeft, ChevronRight, ZoomIn, ZoomOut, Download, X, Loader2 } from 'lucide-react';
@@ -17,6 +17,11 @@ export function PDFPreviewModal({ open, onClose, file, onDownload }: PDFPreviewM
   const [currentPage, setCurrentPage] = useState(1);
   const [zoom, setZoom] = useState(100);
 
+  // Content search results carry the pages that matched; open at the first one
+  useEffect(() => {
+    setCurrentPage(file?.matchedPages?.[0] ?? 1);
+  }, [file]);
+
   const handleClose = () => {
     setCurrentPage(1);
     setZoom(100);
@@ -1,5 +1,5 @@
 import { useState, useEffect } from 'react';
-import { Brand, BrandFilter, SOPFile } from '@/types/sop';
+import { Brand, BrandFilter, SOPFile, SOPSuggestions } from '@/types/sop';
 import { BrandSidebar } from '@/components/BrandSidebar';
 import { SOPTable } from '@/components/SOPTable';
 import { StatisticsBar } from '@/components/StatisticsBar';
@@ -22,9 +22,12 @@ import { AboutDialog } from '@/components/AboutDialog';
 const Index = () => {
   const [selectedBrand, setSelectedBrand] = useState<BrandFilter>('home');
   const [files, setFiles] = useState<SOPFile[]>([]);
+  const [nextCursor, setNextCursor] = useState<string | undefined>();
+  const [loadingMore, setLoadingMore] = useState(false);
   const [searchQuery, setSearchQuery] = useState('');
   const [searchMode, setSearchMode] = useState<'filename' | 'content'>('filename');
   const [searching, setSearching] = useState(false);
+  const [suggestions, setSuggestions] = useState<SOPSuggestions | null>(null);
   const [loading, setLoading] = useState(false);
   const [uploading, setUploading] = useState(false);
   const [updating, setUpdating] = useState(false);
@@ -46,13 +49,9 @@ const Index = () => {
   const loadFiles = async () => {
     setLoading(true);
     try {
-      const data = await sopApi.getSOPs(selectedBrand === 'home' ? 'knitwell' : selectedBrand);
-
-      let filteredData = data;
-      if (selectedBrand !== 'home') {
-        filteredData = data.filter(file => file.brand === selectedBrand);
-      }
-      setFiles(filteredData);
+      const page = await sopApi.getSOPs(selectedBrand === 'home' ? undefined : selectedBrand);
+      setFiles(page.items);
+      setNextCursor(page.nextCursor);
     } catch (error) {
       toast.error(error instanceof Error ? error.message : 'Failed to load SOPs');
     } finally {
@@ -60,6 +59,20 @@ const Index = () => {
     }
   };
 
+  const loadMoreFiles = async () => {
+    if (!nextCursor) return;
+    setLoadingMore(true);
+    try {
+      const page = await sopApi.getSOPs(selectedBrand === 'home' ? undefined : selectedBrand, nextCursor);
+      setFiles(prev => [...prev, ...page.items]);
+      setNextCursor(page.nextCursor);
+    } catch (error) {
+      toast.error(error instanceof Error ? error.message : 'Failed to load SOPs');
+    } finally {
+      setLoadingMore(false);
+    }
+  };
+
   const handleSearch = async (query: string) => {
     if (!query || query.trim().length === 0) {
       loadFiles();
@@ -72,10 +85,12 @@ const Index = () => {
         const brand = selectedBrand === 'home' ? undefined : selectedBrand;
         const results = await sopApi.searchSOPsByContent(query, brand);
         setFiles(results);
+        setNextCursor(undefined);
         toast.success(`Found ${results.length} document${results.length !== 1 ? 's' : ''}`);
       } catch (error) {
         toast.error(error instanceof Error ? error.message : 'Failed to search SOPs');
         setFiles([]);
+        setNextCursor(undefined);
       } finally {
         setSearching(false);
       }
@@ -85,20 +100,56 @@ const Index = () => {
     }
   };
 
-  // Debounce content search and handle empty query
+  // Keystrokes only fetch cheap prefix suggestions for the word being typed;
+  // the full content search runs on Enter or when a suggestion is picked.
   useEffect(() => {
-    if (searchMode === 'content') {
-      if (!searchQuery) {
-        loadFiles();
-      } else {
-        const timer = setTimeout(() => {
-          handleSearch(searchQuery);
-        }, 500);
-        return () => clearTimeout(timer);
-      }
+    if (searchMode !== 'content') {
+      return;
+    }
+    if (!searchQuery) {
+      setSuggestions(null);
+      loadFiles();
+      return;
+    }
+    const prefix = lastWord(searchQuery);
+    if (!prefix) {
+      setSuggestions(null);
+      return;
     }
+    let cancelled = false;
+    const timer = setTimeout(async () => {
+      try {
+        const result = await sopApi.suggest(prefix);
+        if (!cancelled) setSuggestions(result);
+      } catch {
+        if (!cancelled) setSuggestions(null);
+      }
+    }, 150);
+    return () => {
+      cancelled = true;
+      clearTimeout(timer);
+    };
   }, [searchQuery]);
 
+  const lastWord = (query: string) => query.match(/[\p{L}\p{N}]+$/u)?.[0] ?? '';
+
+  const submitContentSearch = (query: string) => {
+    setSuggestions(null);
+    handleSearch(query);
+  };
+
+  const pickTerm = (term: string) => {
+    const query = searchQuery.slice(0, searchQuery.length - lastWord(searchQuery).length) + term;
+    setSearchQuery(query);
+    submitContentSearch(query);
+  };
+
+  const pickFileName = (fileName: string) => {
+    setSuggestions(null);
+    setSearchMode('filename');
+    setSearchQuery(fileName);
+  };
+
   // Reload files when switching search modes to ensure consistent state
   useEffect(() => {
     loadFiles();
@@ -231,12 +282,42 @@ const Index = () => {
                       <Search className="absolute left-3 top-1/2 -translate-y-1/2 h-4 w-4 text-muted-foreground" />
                     )}
                     <Input
-                      placeholder={searchMode === 'content' ? 'Search PDF content...' : 'Search documents...'}
+                      placeholder={searchMode === 'content' ? 'Search PDF content (Enter)...' : 'Search documents...'}
                       value={searchQuery}
                       onChange={(e) => setSearchQuery(e.target.value)}
+                      onKeyDown={(e) => {
+                        if (e.key === 'Enter' && searchMode === 'content') submitContentSearch(searchQuery);
+                        if (e.key === 'Escape') setSuggestions(null);
+                      }}
+                      onBlur={() => setTimeout(() => setSuggestions(null), 150)}
                       className="pl-9 pr-9 h-10 bg-background border-border shadow-sm"
                       disabled={searching}
                     />
+                    {searchMode === 'content' && suggestions
+                      && (suggestions.terms.length > 0 || suggestions.fileNames.length > 0) && (
+                      <div className="absolute z-50 mt-1 w-full rounded-md border border-border bg-popover shadow-md py-1 text-sm">
+                        {suggestions.terms.map(s => (
+                          <button
+                            key={`term-${s.text}`}
+                            onMouseDown={(e) => { e.preventDefault(); pickTerm(s.text); }}
+                            className="flex w-full items-center justify-between px-3 py-1.5 hover:bg-accent text-left"
+                          >
+                            <span>{s.text}</span>
+                            <span className="text-xs text-muted-foreground">{s.count}</span>
+                          </button>
+                        ))}
+                        {suggestions.fileNames.map(s => (
+                          <button
+                            key={`file-${s.text}`}
+                            onMouseDown={(e) => { e.preventDefault(); pickFileName(s.text); }}
+                            className="flex w-full items-center gap-2 px-3 py-1.5 hover:bg-accent text-left"
+                          >
+                            <FileText className="h-3.5 w-3.5 text-muted-foreground shrink-0" />
+                            <span className="truncate">{s.text}</span>
+                          </button>
+                        ))}
+                      </div>
+                    )}
                     {searchQuery && (
                       <button
                         onClick={() => setSearchQuery('')}
@@ -341,6 +422,14 @@ const Index = () => {
                 }}
               />
             )}
+
+            {!loading && nextCursor && (
+              <div className="flex justify-center mt-6">
+                <Button variant="outline" onClick={loadMoreFiles} disabled={loadingMore}>
+                  {loadingMore ? 'Loading...' : 'Load more'}
+                </Button>
+              </div>
+            )}
           </div>
         </div>
 
@@ -1,7 +1,9 @@
-import { Brand, SOPFile } from '@/types/sop';
+import { Brand, SOPFile, SOPPage, SOPSuggestions } from '@/types/sop';
 
 export const API_BASE_URL = window.RUNTIME_CONFIG?.API_BASE_URL || import.meta.env.VITE_API_BASE_URL || 'http://l02plappmon01.corp.local:8080/api';
 
+const SOP_PAGE_SIZE = 200;
+
 const handleResponse = async (response: Response, defaultMessage: string) => {
   if (!response.ok) {
     const errorText = await response.text();
@@ -18,10 +20,16 @@ const handleResponse = async (response: Response, defaultMessage: string) => {
 };
 
 export const sopApi = {
-  // GET /api/sops?brand=xyz
-  async getSOPs(brand: Brand): Promise<SOPFile[]> {
-    const response = await fetch(`${API_BASE_URL}/sops?brand=${brand}`);
-    return handleResponse(response, 'Failed to fetch SOPs');
+  // GET /api/sops?brand=xyz&limit=n&cursor=token
+  // Paged, newest first; nextCursor is set when more entries follow.
+  async getSOPs(brand?: Brand, cursor?: string): Promise<SOPPage> {
+    const params = new URLSearchParams({ limit: String(SOP_PAGE_SIZE) });
+    if (brand) params.append('brand', brand);
+    if (cursor) params.append('cursor', cursor);
+
+    const response = await fetch(`${API_BASE_URL}/sops?${params.toString()}`);
+    const items: SOPFile[] = await handleResponse(response, 'Failed to fetch SOPs');
+    return { items, nextCursor: response.headers.get('X-Next-Cursor') ?? undefined };
   },
 
   // POST /api/sops/upload
@@ -85,4 +93,11 @@ export const sopApi = {
     const response = await fetch(`${API_BASE_URL}/sops/search?${params.toString()}`);
     return handleResponse(response, 'Failed to search SOPs by content');
   },
+
+  // GET /api/sops/suggest?prefix=ret&limit=8
+  async suggest(prefix: string, limit = 8): Promise<SOPSuggestions> {
+    const params = new URLSearchParams({ prefix, limit: String(limit) });
+    const response = await fetch(`${API_BASE_URL}/sops/suggest?${params.toString()}`);
+    return handleResponse(response, 'Failed to load suggestions');
+  },
 };
@@ -12,4 +12,21 @@ export interface SOPFile {
   createdAt: string;
   modifiedAt: string;
   version?: string; // e.g., "v1", "v2", "v3"
+  indexStatus?: 'PENDING' | 'INDEXED' | 'FAILED'; // content searchable yet?
+  matchedPages?: number[]; // set on content search results
+}
+
+export interface SOPPage {
+  items: SOPFile[];
+  nextCursor?: string; // pass back to getSOPs for the next page
+}
+
+export interface Suggestion {
+  text: string;
+  count: number; // documents containing the term / entries with the file name
+}
+
+export interface SOPSuggestions {
+  terms: Suggestion[];
+  fileNames: Suggestion[];
 }